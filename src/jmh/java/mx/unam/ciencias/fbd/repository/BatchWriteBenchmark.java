@@ -0,0 +1,115 @@
+package mx.unam.ciencias.fbd.repository;
+
+import mx.unam.ciencias.fbd.domain.Staff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to update a batch of entities with a single {@code saveAll} against one {@code save} per entity, by batch size.
+ * Divide the scores by the batch size to compare the cost per entity: with {@link FsyncPolicy#ALWAYS} a batch pays a
+ * single force of the write-ahead log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BatchWriteBenchmark {
+    /**
+     * Number of rows in the file.
+     */
+    private static final int ROWS = 10000;
+    /**
+     * Number of entities per batch.
+     */
+    @Param({"1", "10", "100", "1000"})
+    private int batchSize;
+    /**
+     * How the repository reaches its rows.
+     */
+    @Param({"CACHE", "INDEX"})
+    private BenchmarkData.Access access;
+    /**
+     * How the repository applies updates.
+     */
+    @Param({"IN_PLACE", "LOG"})
+    private StorageMode storage;
+    /**
+     * When the write-ahead log is forced.
+     */
+    @Param({"ALWAYS", "INTERVAL", "OS"})
+    private FsyncPolicy fsync;
+    /**
+     * The repository's directory.
+     */
+    private Path directory;
+    /**
+     * The repository under test.
+     */
+    private StaffRepository repository;
+    /**
+     * Consecutive batches of persisted entities.
+     */
+    private List<List<Staff>> batches;
+    /**
+     * Position of the next batch.
+     */
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("fbd-jmh");
+        repository = BenchmarkData.staffRepository(directory, ROWS, access, storage);
+        repository.setFsyncPolicy(fsync);
+        List<Staff> staff = BenchmarkData.all(repository);
+        batches = new ArrayList<>();
+        for (int i = 0; i + batchSize <= ROWS; i += batchSize)
+            batches.add(staff.subList(i, i + batchSize));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public List<Staff> saveAll() {
+        return repository.saveAll(pick());
+    }
+
+    @Benchmark
+    public int saveEach() {
+        int saved = 0;
+        for (Staff entity : pick())
+            if (repository.save(entity) != null)
+                saved++;
+        return saved;
+    }
+
+    /**
+     * @return the next batch.
+     */
+    private List<Staff> pick() {
+        next = (next + 1) % batches.size();
+        return batches.get(next);
+    }
+}
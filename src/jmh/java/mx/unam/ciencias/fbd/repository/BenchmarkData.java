@@ -0,0 +1,101 @@
+package mx.unam.ciencias.fbd.repository;
+
+import mx.unam.ciencias.fbd.tools.DatasetGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Data sets shared by the repository benchmarks.
+ */
+final class BenchmarkData {
+    /**
+     * Seed of every generated data set, so that runs are comparable.
+     */
+    private static final long SEED = 42;
+    /**
+     * Name of the staff repository's file.
+     */
+    static final String STAFF_FILE = "staff.csv";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Generates a data set with the given number of staff elements and creates a staff repository over it.
+     *
+     * @param directory the repository's directory.
+     * @param rows      the number of staff elements.
+     * @param access    how the repository reaches its rows.
+     * @param mode      the storage mode.
+     * @return the repository.
+     * @throws IOException if the data set cannot be written.
+     */
+    static StaffRepository staffRepository(Path directory, int rows, Access access, StorageMode mode)
+            throws IOException {
+        DatasetGenerator generator = new DatasetGenerator(SEED);
+        generator.setStaff(rows);
+        generator.generate(directory);
+        StaffRepository repository = StaffRepository.at(directory);
+        access.configure(repository);
+        repository.setStorageMode(mode);
+        return repository;
+    }
+
+    /**
+     * @param repository a repository.
+     * @param <S>        the type of its entities.
+     * @return every entity of the repository.
+     */
+    static <S> List<S> all(AbstractCSVCrudRepository<S, ?> repository) {
+        try (Stream<S> all = repository.findAll()) {
+            return all.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Deletes a temporary directory and its contents.
+     *
+     * @param directory the directory.
+     * @throws IOException if a file cannot be deleted.
+     */
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(file);
+        }
+    }
+
+    /**
+     * How a repository reaches its rows.
+     */
+    enum Access {
+        /**
+         * Through the resident cache.
+         */
+        CACHE,
+        /**
+         * Through the primary key index.
+         */
+        INDEX,
+        /**
+         * Scanning the file. In {@link StorageMode#LOG} mode the primary key index is used anyway.
+         */
+        SCAN;
+
+        /**
+         * Configures a repository for this kind of access.
+         *
+         * @param repository the repository.
+         */
+        void configure(AbstractCSVCrudRepository<?, ?> repository) {
+            repository.setCacheEnabled(this == CACHE);
+            repository.setIndexEnabled(this == INDEX);
+        }
+    }
+}
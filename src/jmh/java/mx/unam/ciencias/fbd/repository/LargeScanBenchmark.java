@@ -0,0 +1,96 @@
+package mx.unam.ciencias.fbd.repository;
+
+import mx.unam.ciencias.fbd.domain.Staff;
+import mx.unam.ciencias.fbd.tools.DatasetGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The scans of {@link ScanBenchmark} over a staff file larger than 2 GiB, which the memory mapped reader walks through
+ * several 1 GiB windows. Generating the file takes minutes and a few GiB of disk, so the benchmark is excluded from
+ * {@code ./gradlew jmh} unless named: {@code ./gradlew jmh -Pbenchmarks=LargeScanBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class LargeScanBenchmark {
+    /**
+     * Number of rows in the file, about 2.5 GiB.
+     */
+    @Param({"20000000"})
+    private int rows;
+    /**
+     * How the raw rows are read.
+     */
+    @Param({"STREAM", "MAPPED"})
+    private ReadMode read;
+    /**
+     * The repository's directory.
+     */
+    private Path directory;
+    /**
+     * The repository under test, with neither cache nor index.
+     */
+    private StaffRepository repository;
+    /**
+     * Id of the entity in the last row, the worst case for a scan.
+     */
+    private UUID last;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("fbd-jmh");
+        // only the staff file, weapons and vehicles would add gigabytes
+        DatasetGenerator generator = new DatasetGenerator(42);
+        generator.setStaff(rows);
+        generator.setWeapons(0);
+        generator.setVehicles(0);
+        generator.generate(directory);
+        repository = StaffRepository.at(directory);
+        BenchmarkData.Access.SCAN.configure(repository);
+        repository.setReadMode(read);
+        try (Stream<String[]> ids = repository.findAllColumns(StaffRepository.Schema.ID)) {
+            last = UUID.fromString(ids.reduce((first, second) -> second).get()[0]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public Optional<Staff> findLast() {
+        return repository.findById(last);
+    }
+
+    @Benchmark
+    public void findAll(Blackhole blackhole) {
+        try (Stream<Staff> all = repository.findAll()) {
+            all.forEach(blackhole::consume);
+        }
+    }
+}
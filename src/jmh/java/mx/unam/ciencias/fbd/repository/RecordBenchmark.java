@@ -0,0 +1,94 @@
+package mx.unam.ciencias.fbd.repository;
+
+import mx.unam.ciencias.fbd.domain.Staff;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a staff row into an entity and back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RecordBenchmark {
+    /**
+     * Repository providing the transformations, its file is never touched.
+     */
+    private final StaffRepository repository = StaffRepository.getInstance();
+    /**
+     * A parsed row.
+     */
+    private CSVRecord record;
+    /**
+     * An entity.
+     */
+    private Staff entity;
+    /**
+     * Format used to parse a row.
+     */
+    private CSVFormat format;
+    /**
+     * A raw row.
+     */
+    private String line;
+
+    @Setup
+    public void setUp() throws IOException {
+        entity = new Staff("Carla Aragón", Staff.Sex.FEMALE, LocalDate.of(1990, 2, 14), LocalDate.of(2015, 3, 31),
+                Staff.Role.OFFICER);
+        entity.setSupervisorID(UUID.randomUUID());
+        format = CSVFormat.DEFAULT.withHeader(StaffRepository.Schema.class).withIgnoreHeaderCase().withTrim();
+        line = CSVFormat.DEFAULT.format(repository.asRecord(entity).toArray());
+        try (CSVParser parser = CSVParser.parse(line, format)) {
+            record = parser.getRecords().get(0);
+        }
+    }
+
+    @Benchmark
+    public Staff ofRecord() {
+        return repository.ofRecord(record);
+    }
+
+    @Benchmark
+    public List<String> asRecord() {
+        return repository.asRecord(entity);
+    }
+
+    /**
+     * Parses and decodes a raw row, the work done per row by a full read.
+     */
+    @Benchmark
+    public Staff parseAndDecode() throws IOException {
+        try (CSVParser parser = CSVParser.parse(line, format)) {
+            return repository.ofRecord(parser.iterator().next());
+        }
+    }
+
+    /**
+     * Encodes an entity into a raw row, the work done per row by a write.
+     */
+    @Benchmark
+    public String encodeAndFormat() {
+        return CSVFormat.DEFAULT.format(repository.asRecord(entity).toArray());
+    }
+}
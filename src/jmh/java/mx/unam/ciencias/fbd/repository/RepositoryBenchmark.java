@@ -0,0 +1,216 @@
+package mx.unam.ciencias.fbd.repository;
+
+import mx.unam.ciencias.fbd.domain.Staff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of the basic CRUD operations of a staff repository, by file size, access path and storage mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RepositoryBenchmark {
+    /**
+     * Step between consecutive picked entities, a prime so that every entity is eventually picked.
+     */
+    private static final int STRIDE = 7919;
+    /**
+     * Filter matching the lieutenants.
+     */
+    private static final EnumFilter LIEUTENANTS = EnumFilter.is(StaffRepository.Schema.ROLE, Staff.Role.LIEUTENANT);
+    /**
+     * Filter matching the women.
+     */
+    private static final EnumFilter FEMALE = EnumFilter.is(StaffRepository.Schema.SEX, Staff.Sex.FEMALE);
+    /**
+     * First date of birth of the selective scans, about one in fifty entities was born within the decade.
+     */
+    private static final LocalDate FROM = LocalDate.of(1970, 1, 1);
+    /**
+     * Last date of birth of the selective scans.
+     */
+    private static final LocalDate TO = LocalDate.of(1979, 12, 31);
+    /**
+     * Filter matching the female lieutenants born within the decade, tested on the raw columns.
+     */
+    private static final ColumnFilter BORN_IN_DECADE = ColumnFilter.between(StaffRepository.Schema.DOB, FROM, TO)
+            .and(ColumnFilter.equalTo(StaffRepository.Schema.ROLE, Staff.Role.LIEUTENANT))
+            .and(ColumnFilter.equalTo(StaffRepository.Schema.SEX, Staff.Sex.FEMALE));
+    /**
+     * Number of rows in the file.
+     */
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+    /**
+     * How the repository reaches its rows.
+     */
+    @Param({"CACHE", "INDEX", "SCAN"})
+    private BenchmarkData.Access access;
+    /**
+     * How the repository applies updates.
+     */
+    @Param({"IN_PLACE", "LOG"})
+    private StorageMode storage;
+    /**
+     * The repository's directory.
+     */
+    private Path directory;
+    /**
+     * The repository under test.
+     */
+    private StaffRepository repository;
+    /**
+     * The persisted entities.
+     */
+    private List<Staff> staff;
+    /**
+     * Position of the next picked entity.
+     */
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("fbd-jmh");
+        repository = BenchmarkData.staffRepository(directory, rows, access, storage);
+        staff = BenchmarkData.all(repository);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public Optional<Staff> findById() {
+        return repository.findById(pick().getId());
+    }
+
+    @Benchmark
+    public Staff save() {
+        return repository.save(pick());
+    }
+
+    /**
+     * Deletes an entity and saves it back, so that the file keeps its size.
+     */
+    @Benchmark
+    public Staff deleteById() {
+        Staff entity = pick();
+        repository.deleteById(entity.getId());
+        return repository.save(entity);
+    }
+
+    @Benchmark
+    public void findAll(Blackhole blackhole) {
+        try (Stream<Staff> all = repository.findAll()) {
+            all.forEach(blackhole::consume);
+        }
+    }
+
+    /**
+     * Counts the lieutenants through the bitmap index.
+     */
+    @Benchmark
+    public long countByRole() {
+        return repository.count(LIEUTENANTS);
+    }
+
+    /**
+     * Counts the lieutenants by building and filtering every entity, the only way before the bitmap index.
+     */
+    @Benchmark
+    public long countByRoleScan() {
+        try (Stream<Staff> all = repository.findAll()) {
+            return all.filter(entity -> entity.getRole() == Staff.Role.LIEUTENANT).count();
+        }
+    }
+
+    /**
+     * Lists the female lieutenants through the bitmap index.
+     */
+    @Benchmark
+    public void findAllByRoleAndSex(Blackhole blackhole) {
+        try (Stream<Staff> matching = repository.findAll(LIEUTENANTS.and(FEMALE))) {
+            matching.forEach(blackhole::consume);
+        }
+    }
+
+    /**
+     * Lists the female lieutenants born within a decade, testing the raw columns before building any entity.
+     */
+    @Benchmark
+    public void findAllByColumns(Blackhole blackhole) {
+        try (Stream<Staff> matching = repository.findAll(BORN_IN_DECADE)) {
+            matching.forEach(blackhole::consume);
+        }
+    }
+
+    /**
+     * Lists the same entities as {@link #findAllByColumns(Blackhole)} by building and filtering every entity.
+     */
+    @Benchmark
+    public void findAllByColumnsScan(Blackhole blackhole) {
+        try (Stream<Staff> all = repository.findAll()) {
+            all.filter(entity -> !entity.getDob().isBefore(FROM) && !entity.getDob().isAfter(TO)
+                    && entity.getRole() == Staff.Role.LIEUTENANT && entity.getSex() == Staff.Sex.FEMALE)
+                    .forEach(blackhole::consume);
+        }
+    }
+
+    /**
+     * Reads the id and role of every entity, like the supervisor picker, decoding only those columns.
+     */
+    @Benchmark
+    public void findAllColumns(Blackhole blackhole) {
+        try (Stream<String[]> all = repository.findAllColumns(StaffRepository.Schema.ID,
+                StaffRepository.Schema.ROLE)) {
+            all.forEach(blackhole::consume);
+        }
+    }
+
+    /**
+     * Reads the same columns as {@link #findAllColumns(Blackhole)} out of fully built entities.
+     */
+    @Benchmark
+    public void findAllColumnsScan(Blackhole blackhole) {
+        try (Stream<Staff> all = repository.findAll()) {
+            all.forEach(entity -> {
+                blackhole.consume(entity.getId().toString());
+                blackhole.consume(entity.getRole());
+            });
+        }
+    }
+
+    /**
+     * @return the next entity, spread over the whole file.
+     */
+    private Staff pick() {
+        next = (next + STRIDE) % rows;
+        return staff.get(next);
+    }
+}
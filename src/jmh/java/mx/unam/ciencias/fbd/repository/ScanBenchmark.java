@@ -0,0 +1,103 @@
+package mx.unam.ciencias.fbd.repository;
+
+import mx.unam.ciencias.fbd.domain.Staff;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reads that go to the file, through the buffered stream or the memory mapped reader, against parsing the whole file
+ * with commons-csv. {@link LargeScanBenchmark} runs the same scans over a file larger than 2 GiB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ScanBenchmark {
+    /**
+     * Number of rows in the file.
+     */
+    @Param({"100000", "1000000"})
+    private int rows;
+    /**
+     * How the raw rows are read.
+     */
+    @Param({"STREAM", "MAPPED"})
+    private ReadMode read;
+    /**
+     * The repository's directory.
+     */
+    private Path directory;
+    /**
+     * The repository under test, with neither cache nor index.
+     */
+    private StaffRepository repository;
+    /**
+     * Entity in the last row, the worst case for a scan.
+     */
+    private Staff last;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("fbd-jmh");
+        repository = BenchmarkData.staffRepository(directory, rows, BenchmarkData.Access.SCAN, StorageMode.IN_PLACE);
+        repository.setReadMode(read);
+        List<Staff> staff = BenchmarkData.all(repository);
+        last = staff.get(rows - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public Optional<Staff> findLast() {
+        return repository.findById(last.getId());
+    }
+
+    @Benchmark
+    public void findAll(Blackhole blackhole) {
+        try (Stream<Staff> all = repository.findAll()) {
+            all.forEach(blackhole::consume);
+        }
+    }
+
+    /**
+     * Baseline: parses every row of the file with commons-csv without decoding entities.
+     */
+    @Benchmark
+    public void parseAll(Blackhole blackhole) throws IOException {
+        try (Reader in = Files.newBufferedReader(directory.resolve(BenchmarkData.STAFF_FILE), StandardCharsets.UTF_8);
+             CSVParser parser = CSVFormat.DEFAULT.parse(in)) {
+            for (CSVRecord record : parser)
+                blackhole.consume(record);
+        }
+    }
+}
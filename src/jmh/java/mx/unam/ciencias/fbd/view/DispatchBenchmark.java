@@ -0,0 +1,173 @@
+package mx.unam.ciencias.fbd.view;
+
+import mx.unam.ciencias.fbd.common.IRegex;
+import mx.unam.ciencias.fbd.common.IdOperation;
+import mx.unam.ciencias.fbd.common.StaffOperation;
+import mx.unam.ciencias.fbd.common.TableOperation;
+import mx.unam.ciencias.fbd.util.ConsoleUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Cost of recognizing and parsing staff panel commands: the compiled parser and dispatch table of {@link Panel}
+ * against the regex matching the panels and the handlers in {@code App} used to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DispatchBenchmark {
+    /**
+     * Number of commands in the panel script.
+     */
+    private static final int COMMANDS = 100;
+    /**
+     * Table commands, built like {@code App} used to.
+     */
+    private static final String TABLE_COMMANDS = Arrays.stream(TableOperation.values())
+            .map(IRegex::regex).collect(Collectors.joining("|"));
+    /**
+     * Id commands, built like {@code App} used to.
+     */
+    private static final String ID_COMMANDS = "(" + Arrays.stream(IdOperation.values())
+            .map(Objects::toString).collect(Collectors.joining("|")) + ")" + "\\s+\"(.+)\"";
+    /**
+     * Staff commands, built like {@code App} used to.
+     */
+    private static final String STAFF_COMMANDS = "(" + Arrays.stream(StaffOperation.values())
+            .map(Objects::toString).collect(Collectors.joining("|")) + ")" + "\\s+\"([^\"]+)\"(?:\\s+\"([^\"]+)\")?";
+    /**
+     * A typical staff command.
+     */
+    private static final String COMMAND = "SUBORDINATES \"4a6ea932-3792-438a-a773-2038a08da83e\"";
+    /**
+     * A mix of commands.
+     */
+    private String[] mix;
+    /**
+     * Panel input: a mix of commands followed by the exit command.
+     */
+    private String script;
+    /**
+     * A staff panel whose handlers only consume the commands.
+     */
+    private Panel panel;
+    /**
+     * Standard out, restored after the run.
+     */
+    private PrintStream out;
+
+    @Setup
+    public void setUp() {
+        mix = new String[]{"LIST", "GET \"4a6ea932-3792-438a-a773-2038a08da83e\"", COMMAND,
+                "REPORTS_TO \"4a6ea932-3792-438a-a773-2038a08da83e\" \"8e6f4c94-acf5-40f3-bed4-4cf90d082a10\""};
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < COMMANDS; i++)
+            builder.append(mix[i % mix.length]).append('\n');
+        script = builder.append(Panel.EOE).append('\n').toString();
+        panel = staffPanel(new Scanner(""), null);
+        // the panel prints its prompt before every command
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    /**
+     * Extracts the operation and the id of a command, like the staff panel handler used to.
+     */
+    @Benchmark
+    public void getGroup(Blackhole blackhole) {
+        blackhole.consume(ConsoleUtils.getGroup(STAFF_COMMANDS, COMMAND, 1));
+        blackhole.consume(ConsoleUtils.getGroup(STAFF_COMMANDS, COMMAND, 2));
+    }
+
+    /**
+     * Recognizes and parses a mix of commands with regular expressions, like the handlers in {@code App} used to.
+     */
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public void regexParse(Blackhole blackhole) {
+        for (String command : mix) {
+            if (command.matches(TABLE_COMMANDS)) {
+                blackhole.consume(TableOperation.valueOf(command.trim()));
+            } else if (command.matches(ID_COMMANDS)) {
+                blackhole.consume(ConsoleUtils.getGroup(ID_COMMANDS, command, 1));
+                blackhole.consume(ConsoleUtils.getGroup(ID_COMMANDS, command, 2));
+            } else if (command.matches(STAFF_COMMANDS)) {
+                blackhole.consume(ConsoleUtils.getGroup(STAFF_COMMANDS, command, 1));
+                blackhole.consume(ConsoleUtils.getGroup(STAFF_COMMANDS, command, 2));
+            }
+        }
+    }
+
+    /**
+     * Parses the same mix of commands with the panel's compiled parser.
+     */
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public void compiledParse(Blackhole blackhole) {
+        for (String command : mix)
+            blackhole.consume(panel.parse(command));
+    }
+
+    /**
+     * Runs a staff panel over a script, the handlers only consume every command.
+     */
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public void panelRun(Blackhole blackhole) {
+        staffPanel(new Scanner(script), blackhole).run();
+    }
+
+    /**
+     * @param scanner   the panel's input.
+     * @param blackhole consumes the handled commands.
+     * @return a panel accepting the staff panel's operations.
+     */
+    private static Panel staffPanel(Scanner scanner, Blackhole blackhole) {
+        Panel panel = new Panel("STAFF", scanner);
+        panel.setHelp(() -> {
+        });
+        CommandHandler handler = (command, ignored) -> blackhole.consume(command);
+        for (TableOperation operation : TableOperation.values())
+            panel.on(operation, operation.arguments(), handler);
+        for (IdOperation operation : IdOperation.values())
+            panel.on(operation, operation.arguments(), handler);
+        for (StaffOperation operation : StaffOperation.values())
+            panel.on(operation, operation.arguments(), operation.isQuoted(), handler);
+        return panel;
+    }
+}
@@ -4,25 +4,39 @@ import mx.unam.ciencias.fbd.common.*;
 import mx.unam.ciencias.fbd.domain.Staff;
 import mx.unam.ciencias.fbd.domain.Vehicle;
 import mx.unam.ciencias.fbd.domain.Weapon;
+import mx.unam.ciencias.fbd.repository.AbstractCSVCrudRepository;
+import mx.unam.ciencias.fbd.repository.EnumFilter;
+import mx.unam.ciencias.fbd.repository.RepositoryMetrics;
+import mx.unam.ciencias.fbd.repository.StaffRepository;
+import mx.unam.ciencias.fbd.repository.VehicleRepository;
+import mx.unam.ciencias.fbd.repository.WeaponRepository;
+import mx.unam.ciencias.fbd.service.AbstractResourceService;
 import mx.unam.ciencias.fbd.service.StaffService;
 import mx.unam.ciencias.fbd.service.VehicleService;
 import mx.unam.ciencias.fbd.service.WeaponService;
 import mx.unam.ciencias.fbd.util.ConsoleUtils;
 import mx.unam.ciencias.fbd.view.*;
 
-import java.nio.file.FileSystems;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 public class App {
     /**
      * App's root directory.
      */
-    public final static Path ROOT = FileSystems.getDefault().getPath("data").toAbsolutePath();
+    public final static Path ROOT = AbstractCSVCrudRepository.DEFAULT_HOME;
     /**
      * Regex that matches all table names.
      *
@@ -47,33 +61,22 @@ public class App {
      */
     private static final Scanner SCANNER = new Scanner(System.in);
     /**
-     * Regex that matches all basic commands.
-     *
-     * @see BasicOperation
+     * Names of all tables, the arguments of {@code USE}.
      */
-    private static final String BASIC_COMMANDS = Arrays.stream(BasicOperation.values())
-            .map(IRegex::regex).collect(Collectors.joining("|"));
+    private static final List<String> TABLE_NAMES = Arrays.stream(Table.values())
+            .map(Enum::name).collect(Collectors.toList());
     /**
-     * Regex that matches all table commands.
-     *
-     * @see TableOperation
+     * Option of {@code LIST} limiting the number of listed entities.
      */
-    private static final String TABLE_COMMANDS = Arrays.stream(TableOperation.values())
-            .map(IRegex::regex).collect(Collectors.joining("|"));
+    private static final String LIMIT = "LIMIT";
     /**
-     * Regex that matches all basic commands that require an ID.
-     *
-     * @see IdOperation
+     * Option of {@code LIST} resuming the listing after the entity with the given id.
      */
-    private static final String ID_COMMANDS = "(" + Arrays.stream(IdOperation.values())
-            .map(Objects::toString).collect(Collectors.joining("|")) + ")" + "\\s+\"(.+)\"";
+    private static final String AFTER = "AFTER";
     /**
-     * Regex that matches all advanced commands for the staff table.
-     *
-     * @see StaffOperation
+     * Option of {@code LIST} listing only the entities matching a filter.
      */
-    private static final String STAFF_COMMANDS = "(" + Arrays.stream(StaffOperation.values())
-            .map(Objects::toString).collect(Collectors.joining("|")) + ")" + "\\s+\"(.+)\"";
+    private static final String WHERE = "WHERE";
     /**
      * Application's name.
      */
@@ -109,16 +112,134 @@ public class App {
     private static Wizard<Weapon> WEAPON_WIZARD = new WeaponWizard(SCANNER);
 
     /**
-     * Initializes the app and runs the main panel.
+     * Initializes the app and runs the main panel, or the commands of a script with {@code --script FILE} or of the
+     * standard input with {@code --batch}. {@code --pipeline} runs the read only commands of a script in parallel, one
+     * per processor, and {@code --threads N} sets the number of parallel commands.
      *
      * @param args console arguments.
      */
     public static void main(String[] args) {
         Logger logger = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
         logger.setLevel(Level.SEVERE);
-        System.out.println(APP_NAME + " @Version alpha0.0.1");
+        Path script = null;
+        boolean batch = false;
+        int threads = 1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--script":
+                        if (++i == args.length)
+                            throw new IllegalArgumentException("Falta el archivo de --script");
+                        script = Paths.get(args[i]);
+                        batch = true;
+                        break;
+                    case "--batch":
+                        batch = true;
+                        break;
+                    case "--pipeline":
+                        threads = Runtime.getRuntime().availableProcessors();
+                        break;
+                    case "--threads":
+                        if (++i == args.length)
+                            throw new IllegalArgumentException("Falta el número de --threads");
+                        threads = Integer.parseInt(args[i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Opción desconocida " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Uso: " + APP_NAME + " [--script FILE | --batch] [--pipeline] [--threads N]");
+            System.exit(2);
+        }
         init();
-        MAIN_PANEL.run();
+        if (!batch) {
+            System.out.println(APP_NAME + " @Version alpha0.0.1");
+            MAIN_PANEL.run();
+            return;
+        }
+        try (BufferedReader reader = script == null
+                ? new BufferedReader(new InputStreamReader(System.in))
+                : Files.newBufferedReader(script)) {
+            runBatch(reader, threads);
+        } catch (IOException e) {
+            System.err.println("No se pudo leer el script: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs every command of a script without prompts or help. Commands are the same the panels accept, {@code USE}
+     * selects a table, {@code EXIT} goes back to the main panel or ends the script, and empty lines or lines starting
+     * with {@code #} are skipped. Commands that need user input are rejected.
+     *
+     * @param script  the script.
+     * @param threads number of read only commands that may run in parallel.
+     * @throws IOException if the script can't be read.
+     */
+    private static void runBatch(BufferedReader script, int threads) throws IOException {
+        Panel panel = MAIN_PANEL;
+        int number = 0;
+        String line;
+        try (CommandPipeline pipeline = new CommandPipeline(System.out, threads)) {
+            while ((line = script.readLine()) != null) {
+                number++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#"))
+                    continue;
+                Panel current = panel;
+                Command command = current.parse(trimmed);
+                Enum<?> operation = command == null ? null : command.getOperation();
+                if (command == null) {
+                    String error = String.format("línea %d: comando inválido: %s", number, trimmed);
+                    pipeline.read(out -> ConsoleUtils.error(out, error));
+                } else if (operation == BasicOperation.EXIT) {
+                    if (current == MAIN_PANEL)
+                        break;
+                    panel = MAIN_PANEL;
+                } else if (operation == BasicOperation.USE) {
+                    panel = panelOf(Table.valueOf(command.getArgument(0)));
+                } else if (operation == TableOperation.NEW || operation == IdOperation.EDIT) {
+                    String error = String.format("línea %d: %s requiere interacción", number, trimmed);
+                    pipeline.read(out -> ConsoleUtils.error(out, error));
+                } else if (isReadOnly(operation)) {
+                    pipeline.read(out -> current.handle(command, out));
+                } else {
+                    pipeline.write(out -> current.handle(command, out));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param operation an operation of a table panel or {@code STATS}.
+     * @return whether the operation leaves every table untouched and can run in parallel with other such operations.
+     */
+    private static boolean isReadOnly(Enum<?> operation) {
+        if (operation instanceof StaffOperation)
+            return true;
+        if (operation instanceof TableOperation)
+            return ((TableOperation) operation).isReadOnly();
+        if (operation instanceof IdOperation)
+            return ((IdOperation) operation).isReadOnly();
+        // STATS reports the commands before it
+        return false;
+    }
+
+    /**
+     * @param table a table.
+     * @return the table's panel.
+     */
+    private static Panel panelOf(Table table) {
+        switch (table) {
+            case STAFF:
+                return STAFF_PANEL;
+            case VEHICLE:
+                return VEHICLE_PANEL;
+            default:
+                return WEAPON_PANEL;
+        }
     }
 
     private static void init() {
@@ -132,208 +253,272 @@ public class App {
      * Correctly initializes the Main panel.
      */
     private static void initMainPanel() {
-        MAIN_PANEL = new Panel(APP_NAME, SCANNER, BASIC_COMMANDS);
+        MAIN_PANEL = new Panel(APP_NAME, SCANNER);
         MAIN_PANEL.setHelp(() -> {
             usage();
             basicOperationsUsage();
         });
-        MAIN_PANEL.setHandler(command -> {
-            String selection = ConsoleUtils.getGroup(BASIC_COMMANDS, command, 1);
-            Table table = Table.valueOf(selection);
-            switch (table) {
-                case STAFF:
-                    STAFF_PANEL.run();
-                    break;
-                case VEHICLE:
-                    VEHICLE_PANEL.run();
-                    break;
-                case WEAPON:
-                    WEAPON_PANEL.run();
-                    break;
-            }
+        MAIN_PANEL.on(BasicOperation.STATS, (command, out) -> {
+            printStats(out, StaffRepository.getInstance().getMetrics().snapshot());
+            printStats(out, VehicleRepository.getInstance().getMetrics().snapshot());
+            printStats(out, WeaponRepository.getInstance().getMetrics().snapshot());
         });
+        MAIN_PANEL.on(BasicOperation.USE, TABLE_NAMES, (command, out) ->
+                panelOf(Table.valueOf(command.getArgument(0))).run());
     }
 
     /**
      * Correctly initializes the Weapon panel.
      */
     private static void initWeaponPanel() {
-        WEAPON_PANEL = new Panel("WEAPON", SCANNER, TABLE_COMMANDS, ID_COMMANDS);
+        WEAPON_PANEL = new Panel("WEAPON", SCANNER);
         WEAPON_PANEL.setHelp(() -> {
             usage();
             crudUsage();
         });
-
-        WEAPON_PANEL.setHandler(command -> {
-            if (command.matches(TABLE_COMMANDS)) {
-                TableOperation tableOperation = TableOperation.valueOf(command.trim());
-                switch (tableOperation) {
-                    case NEW:
-                        WEAPON_WIZARD.create().ifPresent(WEAPON_SERVICE::save);
-                        break;
-                    case LIST:
-                        WEAPON_SERVICE.findAll().forEach(System.out::println);
-                }
-            } else if (command.matches(ID_COMMANDS)) {
-                // Parse command and id
-                String operationStr = ConsoleUtils.getGroup(ID_COMMANDS, command, 1);
-                String idStr = ConsoleUtils.getGroup(ID_COMMANDS, command, 2);
-                IdOperation operation = IdOperation.valueOf(operationStr);
-                Optional<Weapon> result = Optional.empty();
-                // Attempt to get element by ID
-                try {
-                    UUID id = UUID.fromString(idStr);
-                    result = WEAPON_SERVICE.findById(id);
-                } catch (IllegalArgumentException ignored) {
-                }
-                // Handle operation if element is present
-                if (result.isPresent()) {
-                    Weapon weapon = result.get();
-                    switch (operation) {
-                        case GET:
-                            System.out.println(weapon);
-                            break;
-                        case EDIT:
-                            WEAPON_WIZARD.edit(weapon).ifPresent(WEAPON_SERVICE::save);
-                            break;
-                        case DELETE:
-                            WEAPON_SERVICE.deleteById(weapon.getId());
-                            break;
-                    }
-                } else {
-                    System.out.println("No se encontró el registro con id " + idStr);
-                }
-            }
-        });
+        initCrudOperations(WEAPON_PANEL, WEAPON_SERVICE, WEAPON_WIZARD, App::findWeapon, Weapon::getId);
     }
 
     /**
      * Correctly initializes the Vehicle panel.
      */
     private static void initVehiclePanel() {
-        VEHICLE_PANEL = new Panel("VEHICLE", SCANNER, TABLE_COMMANDS, ID_COMMANDS);
+        VEHICLE_PANEL = new Panel("VEHICLE", SCANNER);
         VEHICLE_PANEL.setHelp(() -> {
             usage();
             crudUsage();
         });
-
-        VEHICLE_PANEL.setHandler(command -> {
-            if (command.matches(TABLE_COMMANDS)) {
-                TableOperation tableOperation = TableOperation.valueOf(command.trim());
-                switch (tableOperation) {
-                    case NEW:
-                        VEHICLE_WIZARD.create().ifPresent(VEHICLE_SERVICE::save);
-                        break;
-                    case LIST:
-                        VEHICLE_SERVICE.findAll().forEach(System.out::println);
-                }
-            } else if (command.matches(ID_COMMANDS)) {
-                // Parse command and id
-                String operationStr = ConsoleUtils.getGroup(ID_COMMANDS, command, 1);
-                String idStr = ConsoleUtils.getGroup(ID_COMMANDS, command, 2);
-                IdOperation operation = IdOperation.valueOf(operationStr);
-                // Attempt to get element by ID
-                Optional<Vehicle> result = VEHICLE_SERVICE.findById(idStr);
-                // Handle operation if element is present
-                if (result.isPresent()) {
-                    Vehicle vehicle = result.get();
-                    switch (operation) {
-                        case GET:
-                            System.out.println(vehicle);
-                            break;
-                        case EDIT:
-                            VEHICLE_WIZARD.edit(vehicle).ifPresent(VEHICLE_SERVICE::save);
-                            break;
-                        case DELETE:
-                            VEHICLE_SERVICE.deleteById(vehicle.getId());
-                            break;
-                    }
-                } else {
-                    System.out.println("No se encontró el registro con id " + idStr);
-                }
-            }
-        });
+        initCrudOperations(VEHICLE_PANEL, VEHICLE_SERVICE, VEHICLE_WIZARD, VEHICLE_SERVICE::findById,
+                Vehicle::getId);
     }
 
     /**
      * Correctly initializes the Staff panel.
      */
     private static void initStaffPanel() {
-        STAFF_PANEL = new Panel("STAFF", SCANNER, TABLE_COMMANDS, ID_COMMANDS, STAFF_COMMANDS);
+        STAFF_PANEL = new Panel("STAFF", SCANNER);
         STAFF_PANEL.setHelp(() -> {
             usage();
             staffUsage();
             crudUsage();
         });
-        STAFF_PANEL.setHandler(command -> {
-            if (command.matches(TABLE_COMMANDS)) {
-                TableOperation tableOperation = TableOperation.valueOf(command.trim());
-                switch (tableOperation) {
-                    case NEW:
-                        STAFF_WIZARD.create().ifPresent(STAFF_SERVICE::save);
-                        break;
-                    case LIST:
-                        STAFF_SERVICE.findAll().forEach(System.out::println);
-                }
-            } else if (command.matches(ID_COMMANDS)) {
-                // Parse command and id
-                String operationStr = ConsoleUtils.getGroup(ID_COMMANDS, command, 1);
-                String idStr = ConsoleUtils.getGroup(ID_COMMANDS, command, 2);
-                IdOperation operation = IdOperation.valueOf(operationStr);
-                Optional<Staff> result = Optional.empty();
-                // Attempt to get element by ID
-                try {
-                    UUID id = UUID.fromString(idStr);
-                    result = STAFF_SERVICE.findById(id);
-                } catch (IllegalArgumentException ignored) {
-                }
-                // Handle operation if element is present
-                if (result.isPresent()) {
-                    Staff staff = result.get();
-                    switch (operation) {
-                        case GET:
-                            System.out.println(staff);
-                            break;
-                        case EDIT:
-                            STAFF_WIZARD.edit(staff).ifPresent(STAFF_SERVICE::save);
-                            break;
-                        case DELETE:
-                            STAFF_SERVICE.deleteById(staff.getId());
-                            break;
+        initCrudOperations(STAFF_PANEL, STAFF_SERVICE, STAFF_WIZARD, App::findStaff, Staff::getId);
+        EntityHandler<Staff> handler = (staff, command, out) -> {
+            switch ((StaffOperation) command.getOperation()) {
+                case AGE:
+                    out.println(staff.getAge());
+                    break;
+                case SENIORITY:
+                    out.println(staff.getSeniority());
+                    break;
+                case SUBORDINATES:
+                    try (Stream<Staff> subordinates = STAFF_SERVICE.getSubordinates(staff)) {
+                        ConsoleUtils.printAll(out, subordinates);
                     }
-                } else {
-                    System.out.println("No se encontró el registro con id " + idStr);
+                    break;
+                case CHAIN:
+                    try (Stream<Staff> subordinates = STAFF_SERVICE.getAllSubordinates(staff)) {
+                        ConsoleUtils.printAll(out, subordinates);
+                    }
+                    break;
+                case DEPTH:
+                    out.println(STAFF_SERVICE.getDepth(staff));
+                    break;
+                case REPORTS_TO:
+                    String superiorIdStr = command.getArgument(1);
+                    Optional<Staff> superior = findStaff(superiorIdStr);
+                    if (superior.isPresent())
+                        out.println(STAFF_SERVICE.isInChainOfCommand(staff, superior.get()));
+                    else
+                        out.println("No se encontró el registro con id " + superiorIdStr);
+                    break;
+                case ASSETS:
+                    try (Stream<Weapon> weapons = WEAPON_SERVICE.getAssignedTo(staff);
+                         Stream<Vehicle> vehicles = VEHICLE_SERVICE.getAssignedTo(staff)) {
+                        ConsoleUtils.printAll(out, Stream.concat(weapons, vehicles));
+                    }
+            }
+        };
+        CommandHandler byYears = (command, out) -> {
+            int first = years(command.getArgument(0));
+            int last = command.getArguments().size() > 1 ? years(command.getArgument(1)) : 0;
+            if (first < 0 || last < 0) {
+                ConsoleUtils.error(out, "Los años deben ser enteros no negativos.");
+                return;
+            }
+            Stream<Staff> matching = command.getOperation() == StaffOperation.SENIORITY_OVER
+                    ? STAFF_SERVICE.getBySeniorityOver(first) : STAFF_SERVICE.getByAgeBetween(first, last);
+            try (Stream<Staff> staff = matching) {
+                ConsoleUtils.printAll(out, staff);
+            }
+        };
+        CommandHandler find = (command, out) -> {
+            long limit = limit(command, out);
+            if (limit < 1)
+                return;
+            try (Stream<Staff> staff = STAFF_SERVICE.searchByName(command.getArgument(0), limit)) {
+                ConsoleUtils.printAll(out, staff);
+            }
+        };
+        for (StaffOperation operation : StaffOperation.values()) {
+            if (operation.takesId())
+                STAFF_PANEL.on(operation, operation.arguments(), byId(App::findStaff, handler));
+            else if (operation.isQuoted())
+                STAFF_PANEL.on(operation, operation.arguments(), find);
+            else
+                STAFF_PANEL.on(operation, operation.arguments(), false, byYears);
+        }
+        STAFF_PANEL.option(StaffOperation.FIND, LIMIT, false);
+    }
+
+    /**
+     * Reads the {@code LIMIT} option of a command, printing an error if it's invalid.
+     *
+     * @param command a command.
+     * @param out     where errors are printed.
+     * @return the limit, {@link Long#MAX_VALUE} if the command has none or 0 if it isn't a positive integer.
+     */
+    private static long limit(Command command, PrintStream out) {
+        String limitStr = command.getOption(LIMIT);
+        if (limitStr == null)
+            return Long.MAX_VALUE;
+        long limit;
+        try {
+            limit = Long.parseLong(limitStr);
+        } catch (NumberFormatException e) {
+            limit = 0;
+        }
+        if (limit < 1) {
+            ConsoleUtils.error(out, LIMIT + " debe ser un entero positivo.");
+            return 0;
+        }
+        return limit;
+    }
+
+    /**
+     * @param yearsStr a number of years typed by the user.
+     * @return the number of years, or -1 if it isn't a non-negative integer.
+     */
+    private static int years(String yearsStr) {
+        try {
+            return Math.max(Integer.parseInt(yearsStr), -1);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Registers the operations every table panel accepts.
+     *
+     * @param panel   the table's panel.
+     * @param service the table's service.
+     * @param wizard  the table's editing wizard.
+     * @param finder  finds an entity by the id typed by the user.
+     * @param getId   the id of an entity.
+     * @param <T>     the type of the table's entities.
+     * @param <ID>    the type of the entities' id.
+     */
+    private static <T, ID> void initCrudOperations(Panel panel, AbstractResourceService<T, ID> service,
+                                                   Wizard<T> wizard, Function<String, Optional<T>> finder,
+                                                   Function<T, ID> getId) {
+        panel.on(TableOperation.NEW, (command, out) -> wizard.create().ifPresent(service::save));
+        panel.on(TableOperation.LIST, (command, out) -> {
+            long limit = limit(command, out);
+            if (limit < 1)
+                return;
+            String afterStr = command.getOption(AFTER);
+            String where = command.getOption(WHERE);
+            if (where != null) {
+                if (afterStr != null) {
+                    ConsoleUtils.error(out, AFTER + " no se puede combinar con " + WHERE + ".");
+                    return;
                 }
-            } else if (command.matches(STAFF_COMMANDS)) {
-                // Parse command and id
-                String operationStr = ConsoleUtils.getGroup(STAFF_COMMANDS, command, 1);
-                String idStr = ConsoleUtils.getGroup(STAFF_COMMANDS, command, 2);
-                StaffOperation operation = StaffOperation.valueOf(operationStr);
-                Optional<Staff> result = Optional.empty();
-                // Attempt to get by id
-                try {
-                    UUID id = UUID.fromString(idStr);
-                    result = STAFF_SERVICE.findById(id);
-                } catch (IllegalArgumentException ignored) {
+                try (Stream<T> matching = service.findAll(EnumFilter.parse(where))) {
+                    ConsoleUtils.printAll(out, matching.limit(limit));
+                } catch (IllegalArgumentException e) {
+                    ConsoleUtils.error(out, "Filtro inválido: " + e.getMessage());
                 }
-                // Handle operation if element is present
-                if (result.isPresent()) {
-                    Staff staff = result.get();
-                    switch (operation) {
-                        case AGE:
-                            System.out.println(staff.getAge());
-                            break;
-                        case SENIORITY:
-                            System.out.println(staff.getSeniority());
-                            break;
-                        case SUBORDINATES:
-                            STAFF_SERVICE.getSubordinates(staff).forEach(System.out::println);
-                    }
-                } else {
-                    System.out.println("No se encontró el registro con id " + idStr);
+                return;
+            }
+            ID after = null;
+            if (afterStr != null) {
+                Optional<T> entity = finder.apply(afterStr);
+                if (!entity.isPresent()) {
+                    out.println("No se encontró el registro con id " + afterStr);
+                    return;
                 }
+                after = getId.apply(entity.get());
+            }
+            try (Stream<T> page = after == null && limit == Long.MAX_VALUE
+                    ? service.findAll() : service.findAllAfter(after, limit)) {
+                ConsoleUtils.printAll(out, page);
+            }
+        });
+        panel.option(TableOperation.LIST, LIMIT, false);
+        panel.option(TableOperation.LIST, AFTER, true);
+        panel.option(TableOperation.LIST, WHERE, true);
+        panel.on(TableOperation.COUNT, TableOperation.COUNT.arguments(), (command, out) -> {
+            try {
+                out.println(service.count(EnumFilter.parse(command.getArgument(0))));
+            } catch (IllegalArgumentException e) {
+                ConsoleUtils.error(out, "Filtro inválido: " + e.getMessage());
             }
         });
+        EntityHandler<T> handler = (entity, command, out) -> {
+            switch ((IdOperation) command.getOperation()) {
+                case GET:
+                    out.println(entity);
+                    break;
+                case EDIT:
+                    wizard.edit(entity).ifPresent(service::save);
+                    break;
+                case DELETE:
+                    service.deleteById(getId.apply(entity));
+                    break;
+            }
+        };
+        for (IdOperation operation : IdOperation.values())
+            panel.on(operation, operation.arguments(), byId(finder, handler));
+    }
+
+    /**
+     * @param finder  finds an entity by the command's first argument.
+     * @param handler handles the command once the entity is found.
+     * @param <T>     the type of the entity.
+     * @return a handler that reports missing entities.
+     */
+    private static <T> CommandHandler byId(Function<String, Optional<T>> finder, EntityHandler<T> handler) {
+        return (command, out) -> {
+            Optional<T> entity = finder.apply(command.getArgument(0));
+            if (entity.isPresent())
+                handler.handle(entity.get(), command, out);
+            else
+                out.println("No se encontró el registro con id " + command.getArgument(0));
+        };
+    }
+
+    /**
+     * @param idStr the id typed by the user.
+     * @return the staff element with the id, empty if the id isn't valid.
+     */
+    private static Optional<Staff> findStaff(String idStr) {
+        try {
+            return STAFF_SERVICE.findById(UUID.fromString(idStr));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param idStr the id typed by the user.
+     * @return the weapon with the id, empty if the id isn't valid.
+     */
+    private static Optional<Weapon> findWeapon(String idStr) {
+        try {
+            return WEAPON_SERVICE.findById(UUID.fromString(idStr));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
     /**
@@ -343,12 +528,34 @@ public class App {
         System.out.println("\nUso:");
     }
 
+    /**
+     * Prints the counters of a repository, latencies in microseconds.
+     *
+     * @param out   where the counters are printed.
+     * @param stats the repository's counters.
+     */
+    private static void printStats(PrintStream out, RepositoryMetrics.Snapshot stats) {
+        out.println(String.format("%s: %d filas (%d bytes) leídas, %d filas (%d bytes) escritas",
+                stats.getName(), stats.getRowsRead(), stats.getBytesRead(),
+                stats.getRowsWritten(), stats.getBytesWritten()));
+        out.println(String.format("\t%-16s %8s %10s %10s %10s %10s %10s %10s",
+                "OPERACIÓN", "LLAMADAS", "p50(µs)", "p99(µs)", "MÁX(µs)", "MEDIA(µs)", "LEÍDAS", "ESCRITAS"));
+        stats.getOperations().forEach((operation, op) -> {
+            if (op.getCount() > 0)
+                out.println(String.format("\t%-16s %8d %10.1f %10.1f %10.1f %10.1f %10d %10d",
+                        operation, op.getCount(), op.getP50() / 1e3, op.getP99() / 1e3, op.getMax() / 1e3,
+                        op.getMean() / 1e3, op.getRowsRead(), op.getRowsWritten()));
+        });
+    }
+
     /**
      * Prints helpful information about basic options.
      */
     private static void basicOperationsUsage() {
         System.out.println(String.format("\t" + BasicOperation.USE + " (%s)", TABLES));
         System.out.println("\t  Selecciona la tabla para trabajar sobre ella.");
+        System.out.println("\t" + BasicOperation.STATS);
+        System.out.println("\t  Muestra la latencia y la E/S de cada operación de las tablas.");
         System.out.println("\tEXIT");
         System.out.println("\t  Termina la ejecución del programa.\n");
     }
@@ -357,8 +564,13 @@ public class App {
      * Prints helpful information about crud options.
      */
     private static void crudUsage() {
-        System.out.println("\t" + TableOperation.LIST);
-        System.out.println("\t  Lista todas las entidades de la tabla.");
+        System.out.println("\t" + TableOperation.LIST + " [" + LIMIT + " N] [" + AFTER + " \"ID\"] ["
+                + WHERE + " \"FILTRO\"]");
+        System.out.println("\t  Lista las entidades de la tabla, a lo más N y empezando después de la del ID dado.");
+        System.out.println("\t  Con " + WHERE + " sólo lista las que cumplen el filtro, como "
+                + "\"ROLE=OFFICER AND NOT SEX=MALE\".");
+        System.out.println("\t" + TableOperation.COUNT + " \"FILTRO\"");
+        System.out.println("\t  Cuenta las entidades que cumplen el filtro.");
         System.out.println("\t" + TableOperation.NEW);
         System.out.println("\t  Añade una nueva entidad a la tabla.");
         System.out.println("\t" + IdOperation.DELETE + " \"ID\"");
@@ -381,6 +593,30 @@ public class App {
         System.out.println("\t  Calcula la edad del elemento con el ID dado.");
         System.out.println("\t" + StaffOperation.SUBORDINATES + " \"ID\"");
         System.out.println("\t  Regresa la lista de subordinados del elemento con el ID dado.");
+        System.out.println("\t" + StaffOperation.CHAIN + " \"ID\"");
+        System.out.println("\t  Regresa la lista de subordinados directos e indirectos del elemento con el ID dado.");
+        System.out.println("\t" + StaffOperation.DEPTH + " \"ID\"");
+        System.out.println("\t  Calcula el número de superiores del elemento con el ID dado.");
+        System.out.println("\t" + StaffOperation.REPORTS_TO + " \"ID\" \"ID_SUPERIOR\"");
+        System.out.println("\t  Indica si el segundo elemento está en la cadena de mando del primero.");
+        System.out.println("\t" + StaffOperation.ASSETS + " \"ID\"");
+        System.out.println("\t  Regresa las armas y vehículos asignados al elemento con el ID dado.");
+        System.out.println("\t" + StaffOperation.SENIORITY_OVER + " N");
+        System.out.println("\t  Regresa los elementos con una antigüedad de más de N años, los más antiguos primero.");
+        System.out.println("\t" + StaffOperation.AGE_BETWEEN + " MIN MAX");
+        System.out.println("\t  Regresa los elementos con una edad entre MIN y MAX años, los mayores primero.");
+        System.out.println("\t" + StaffOperation.FIND + " \"TEXTO\" [" + LIMIT + " N]");
+        System.out.println("\t  Busca a lo más N elementos por nombre, sin importar mayúsculas, acentos ni erratas "
+                + "menores.");
+    }
+
+    /**
+     * Handles a command over an entity.
+     *
+     * @param <T> the type of the entity.
+     */
+    private interface EntityHandler<T> {
+        void handle(T entity, Command command, PrintStream out);
     }
 
     private enum Table {
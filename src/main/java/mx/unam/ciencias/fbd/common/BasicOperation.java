@@ -4,6 +4,7 @@ import mx.unam.ciencias.fbd.App;
 
 public enum BasicOperation implements IRegex {
     USE(String.format("\\s+(%s)", App.TABLES)), // USE [Table]
+    STATS(""), // STATS
     EXIT(""); // EXIT
 
     String argument;
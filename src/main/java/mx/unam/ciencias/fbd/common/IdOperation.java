@@ -9,4 +9,18 @@ public enum IdOperation implements IRegex {
     public String regex() {
         return this.name() + "\\s+\"(.+)\"";
     }
+
+    /**
+     * @return whether the operation leaves the table untouched.
+     */
+    public boolean isReadOnly() {
+        return this == GET;
+    }
+
+    /**
+     * @return the number of quoted arguments the operation takes.
+     */
+    public int arguments() {
+        return 1;
+    }
 }
@@ -3,10 +3,40 @@ package mx.unam.ciencias.fbd.common;
 public enum StaffOperation implements IRegex {
     SUBORDINATES,   // SUBORDINATES [ID]
     SENIORITY,      // SENIORITY [ID]
-    AGE;            // AGE [ID]
+    AGE,            // AGE [ID]
+    CHAIN,          // CHAIN [ID]
+    DEPTH,          // DEPTH [ID]
+    REPORTS_TO,     // REPORTS_TO [ID] [ID]
+    ASSETS,         // ASSETS [ID]
+    SENIORITY_OVER, // SENIORITY_OVER N
+    AGE_BETWEEN,    // AGE_BETWEEN N N
+    FIND;           // FIND [TEXT]
 
     @Override
     public String regex() {
+        if (this == REPORTS_TO)
+            return this.name() + "\\s+\"(.+)\"\\s+\"(.+)\"";
         return this.name() + "\\s+\"(.+)\"";
     }
+
+    /**
+     * @return the number of arguments the operation takes.
+     */
+    public int arguments() {
+        return this == REPORTS_TO || this == AGE_BETWEEN ? 2 : 1;
+    }
+
+    /**
+     * @return whether the operation's arguments are quoted strings, otherwise they are numbers.
+     */
+    public boolean isQuoted() {
+        return this != SENIORITY_OVER && this != AGE_BETWEEN;
+    }
+
+    /**
+     * @return whether the operation acts on the element whose quoted id is its first argument.
+     */
+    public boolean takesId() {
+        return isQuoted() && this != FIND;
+    }
 }
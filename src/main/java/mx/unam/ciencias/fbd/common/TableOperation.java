@@ -2,10 +2,25 @@ package mx.unam.ciencias.fbd.common;
 
 public enum TableOperation implements IRegex {
     LIST,   // LIST
-    NEW;    // NEW
+    NEW,    // NEW
+    COUNT;  // COUNT [FILTER]
 
     @Override
     public String regex() {
         return this.name();
     }
+
+    /**
+     * @return whether the operation leaves the table untouched.
+     */
+    public boolean isReadOnly() {
+        return this != NEW;
+    }
+
+    /**
+     * @return the number of quoted arguments the operation takes.
+     */
+    public int arguments() {
+        return this == COUNT ? 1 : 0;
+    }
 }
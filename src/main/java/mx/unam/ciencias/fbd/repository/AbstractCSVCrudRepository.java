@@ -1,35 +1,119 @@
 package mx.unam.ciencias.fbd.repository;
 
-import mx.unam.ciencias.fbd.App;
 import mx.unam.ciencias.fbd.util.Safe;
 import mx.unam.ciencias.fbd.util.Validate;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 
-import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
-import java.io.Writer;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Abstract CSV CRUD repository, implements all the basic crud functions. Implementors must provide entity schema and
  * object transformation.
+ * <p>
+ * By default the repository keeps a resident copy of its file's records: the file is parsed once, reads are served
+ * from memory and writes go to both the file and the cache. It can be turned off with the
+ * {@code fbd.repository.cache} system property or with {@link #setCacheEnabled(boolean)}.
+ * <p>
+ * When the cache is off, lookups go through a primary key index that maps every id to its row's location in the
+ * file, so that only that row has to be read and decoded. It can be turned off with the
+ * {@code fbd.repository.index} system property or with {@link #setIndexEnabled(boolean)}.
+ * <p>
+ * Both structures are dropped and rebuilt whenever the file's modification time or size changes on disk.
+ * <p>
+ * Raw rows are scanned either through a buffered stream or through a memory mapped view of the file, see
+ * {@link #setReadMode(ReadMode)}. With the mapped reader, lookups that go to the file compare the id column against
+ * the encoded key and only decode matching rows.
+ * <p>
+ * Every operation is measured, see {@link #getMetrics()}.
+ * <p>
+ * Concrete repositories may register secondary indexes over their columns, see {@link RecordIndex}.
+ * <p>
+ * In {@link StorageMode#LOG} mode updates and deletions are appended to the file instead of rewriting it, see
+ * {@link #setStorageMode(StorageMode)}.
+ * <p>
+ * Every batch of writes is first logged to a write-ahead log next to the file and made durable according to the
+ * {@code fbd.repository.fsync} system property or {@link #setFsyncPolicy(FsyncPolicy)}. Batches left in the log by a
+ * crash are replayed into the file on the next access. Full rewrites go to a temporary file that atomically replaces
+ * the repository file.
+ * <p>
+ * Repositories are safe for concurrent use: reads share a read lock and writers to the same file are serialized by its
+ * write lock. Streams returned by reads are snapshots, unaffected by writes made while they are consumed: they open
+ * the file under the locks and read it up to its length at that moment, and rewrites replace the file rather than
+ * change it in place.
+ * <p>
+ * Several processes may share the same files: writes hold an exclusive lock on a lock file next to the repository
+ * file and reads that go to the file hold a shared one, giving up after the {@code fbd.repository.lock.timeout}
+ * system property or {@link #setLockTimeout(long)}. Rows appended by another process are read incrementally into the
+ * cache and the indexes, rewrites reload them.
  *
  * @param <S>  The type of the resources served by this repository.
  * @param <ID> The type of the identifier of the server resources.
  */
 public abstract class AbstractCSVCrudRepository<S, ID> implements CrudRepository<S, ID> {
+    /**
+     * Default directory of the repositories' files, it doesn't depend on the app so that repositories can be used on
+     * their own.
+     */
+    public static final Path DEFAULT_HOME = FileSystems.getDefault().getPath("data").toAbsolutePath();
+    /**
+     * Line terminator used by {@link CSVFormat#DEFAULT}.
+     */
+    private static final String RECORD_SEPARATOR = "\r\n";
+    /**
+     * Size past which the write-ahead log is emptied, once the repository file is forced.
+     */
+    private static final long CHECKPOINT_BYTES = 1 << 20;
     /**
      * Logger.
      */
@@ -42,158 +126,2050 @@ public abstract class AbstractCSVCrudRepository<S, ID> implements CrudRepository
      * CSV format.
      */
     private final CSVFormat CSV_PARSE_FORMAT;
+    /**
+     * The enum with the entity's schema.
+     */
+    private final Class<? extends Enum<?>> SCHEMA;
+    /**
+     * Position of the ID column in the schema.
+     */
+    private final int ID_COLUMN;
+    /**
+     * Secondary indexes registered by the concrete repository.
+     */
+    private final List<RecordIndex> SECONDARY_INDEXES = new ArrayList<>();
+    /**
+     * Latency and I/O counters.
+     */
+    private final RepositoryMetrics METRICS;
+    /**
+     * Log of the batches written to the repository file.
+     */
+    private final WriteAheadLog WAL;
+    /**
+     * Shared by readers, exclusive to writers and to readers that need to load or rebuild a structure.
+     */
+    private final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
+    /**
+     * Lock shared by every process working on the repository file.
+     */
+    private final InterProcessLock PROCESS_LOCK;
+    /**
+     * Writes waiting for the write lock, the first of them to take it commits and applies every one queued.
+     */
+    private final Queue<PendingWrite<?>> PENDING = new ConcurrentLinkedQueue<>();
+    /**
+     * Whether reads are served from the resident cache.
+     */
+    private boolean cacheEnabled = Boolean.parseBoolean(System.getProperty("fbd.repository.cache", "true"));
+    /**
+     * Whether lookups go through the primary key index when the cache is disabled.
+     */
+    private boolean indexEnabled = Boolean.parseBoolean(System.getProperty("fbd.repository.index", "true"));
+    /**
+     * How updates and deletions are applied to the file.
+     */
+    private StorageMode storageMode =
+            StorageMode.valueOf(System.getProperty("fbd.repository.storage", StorageMode.IN_PLACE.name()));
+    /**
+     * Ratio of dead rows to total rows past which a {@link StorageMode#LOG} file is compacted.
+     */
+    private double compactionThreshold =
+            Double.parseDouble(System.getProperty("fbd.repository.compaction", "0.5"));
+    /**
+     * How raw rows are scanned.
+     */
+    private ReadMode readMode = ReadMode.valueOf(System.getProperty("fbd.repository.read", ReadMode.STREAM.name()));
+    /**
+     * Resident copy of the repository file's records, keyed by id and kept in file order. Null until loaded.
+     */
+    private Map<String, CSVRecord> cache;
+    /**
+     * Location of every row in the repository file. Null until built.
+     */
+    private PrimaryKeyIndex index;
+    /**
+     * Number of rows in the repository file, including superseded versions and tombstones. Negative if unknown.
+     */
+    private long rows = -1;
+    /**
+     * Bitmap index over the enum columns registered by the concrete repository, null if there are none.
+     */
+    private BitmapIndex bitmapIndex;
+    /**
+     * Whether the secondary indexes reflect the live records.
+     */
+    private boolean secondaryIndexesBuilt;
+    /**
+     * State of the repository file the last time the cache and the index were synchronized with it.
+     */
+    private FileStamp stamp;
+    /**
+     * Whether the write-ahead log was replayed since the repository was opened. Batches logged later by a process that
+     * died before applying them are found by {@link #logPending()}.
+     */
+    private boolean recovered;
 
     /**
      * Initializes repo.
      *
-     * @param csvFile repo's file name.
-     * @param schema  an enum with the entity's schema.
+     * @param directory directory holding the repo's file.
+     * @param csvFile   repo's file name.
+     * @param schema    an enum with the entity's schema.
      */
-    AbstractCSVCrudRepository(String csvFile, Class<? extends Enum<?>> schema, Logger logger) {
+    AbstractCSVCrudRepository(Path directory, String csvFile, Class<? extends Enum<?>> schema, Logger logger) {
         this.LOGGER = logger;
-        this.REPO_HOME = Paths.get(App.ROOT.toString(), csvFile);
+        this.REPO_HOME = Paths.get(directory.toString(), csvFile);
+        this.SCHEMA = schema;
         this.CSV_PARSE_FORMAT = CSVFormat.DEFAULT
                 .withHeader(schema)
                 .withIgnoreHeaderCase()
                 .withTrim();
+        int idColumn = 0;
+        for (Enum<?> column : schema.getEnumConstants())
+            if (column.name().equals("ID"))
+                idColumn = column.ordinal();
+        this.ID_COLUMN = idColumn;
+        this.METRICS = new RepositoryMetrics(csvFile);
+        this.WAL = new WriteAheadLog(Paths.get(directory.toString(), csvFile + ".wal"),
+                FsyncPolicy.valueOf(System.getProperty("fbd.repository.fsync", FsyncPolicy.ALWAYS.name())),
+                Long.getLong("fbd.repository.fsync.interval", 50), logger);
+        this.PROCESS_LOCK = new InterProcessLock(Paths.get(directory.toString(), csvFile + ".lock"),
+                Long.getLong("fbd.repository.lock.timeout", 10000), logger);
     }
 
     @Override
     public S save(S entity) {
         Validate.notNull(entity);
-        LOGGER.fine("Persisting entity: " + entity);
-        S result = entity;
-        // delete record if it exists
+        RepositoryMetrics.Timer timer = METRICS.start(RepositoryMetrics.Operation.SAVE);
+        try {
+            List<S> result = store(Collections.singletonList(entity));
+            // return the persisted entity or null if failed.
+            return result.isEmpty() ? null : result.get(0);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Override
+    public List<S> saveAll(Iterable<S> entities) {
+        Validate.notNull(entities);
+        RepositoryMetrics.Timer timer = METRICS.start(RepositoryMetrics.Operation.SAVE_ALL);
+        try {
+            return store(entities);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Override
+    public Optional<S> findById(ID id) {
+        Validate.notNull(id);
+        RepositoryMetrics.Timer timer = METRICS.start(RepositoryMetrics.Operation.FIND_BY_ID);
+        try {
+            return find(id.toString());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Override
+    public Stream<S> findAll() {
+        RepositoryMetrics.Timer timer = METRICS.start(RepositoryMetrics.Operation.FIND_ALL);
         try {
-            Collection<CSVRecord> records = readRecords();
-            if (records.removeIf(r -> r.get("ID").equals(Safe.safeToString(getId(entity)))))
-                writeRecords(records);
+            boolean shared = lockForRead(false);
+            try {
+                // map the records to entities
+                return timed(streamLiveRecords().map(this::ofRecord), timer);
+            } finally {
+                unlockRead(shared);
+            }
         } catch (IOException e) {
-            result = null;
             LOGGER.severe(e.getMessage());
         }
-        // append record
-        if (result != null) {
+        timer.stop();
+        return Stream.empty();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The page starts right after the given entity: the cache is walked from its entry and the primary key index gives
+     * its offset in the file, only an unindexed file is scanned from the start. With {@link StorageMode#LOG} an update
+     * moves the entity to the end of the file, so an entity updated while being paged may be listed twice.
+     */
+    @Override
+    public Stream<S> findAllAfter(ID after, long limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("The limit must not be negative");
+        RepositoryMetrics.Timer timer = METRICS.start(RepositoryMetrics.Operation.FIND_ALL_AFTER);
+        try {
+            boolean shared = lockForRead(false);
             try {
-                appendRecord(asRecord(result));
-            } catch (IOException e) {
-                result = null;
-                LOGGER.severe(e.getMessage());
+                Stream<CSVRecord> records = after == null
+                        ? streamLiveRecords().limit(limit)
+                        : streamLiveRecordsAfter(after.toString(), limit);
+                return timed(records.map(this::ofRecord), timer);
+            } finally {
+                unlockRead(shared);
             }
+        } catch (IOException e) {
+            LOGGER.severe(e.getMessage());
         }
-
-        // return the persisted entity or null if failed.
-        return result;
+        timer.stop();
+        return Stream.empty();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The filter is tested on the raw fields of every live row, only matching rows are decoded and turned into
+     * entities. Cached records are filtered before being turned into entities.
+     */
     @Override
-    public Optional<S> findById(ID id) {
-        Validate.notNull(id);
+    public Stream<S> findAll(ColumnFilter filter) {
+        Validate.notNull(filter);
+        checkSchema(filter.getSchema());
+        RepositoryMetrics.Timer timer = METRICS.start(RepositoryMetrics.Operation.FIND_ALL_WHERE);
         try {
-            // read the file
-            List<CSVRecord> records = readRecords();
-            // look for record with matching id and if found, fetch it.
-            for (CSVRecord record : records) {
-                if (id.toString().equals(record.get("ID"))) {
-                    return Optional.ofNullable(ofRecord(record));
-                }
+            boolean shared = lockForRead(false);
+            try {
+                return timed(streamLiveRows(filter, record -> record, cursor -> parse(cursor.text()))
+                        .map(this::ofRecord), timer);
+            } finally {
+                unlockRead(shared);
             }
         } catch (IOException e) {
             LOGGER.severe(e.getMessage());
         }
-        return Optional.empty();
+        timer.stop();
+        return Stream.empty();
     }
 
     @Override
-    public Stream<S> findAll() {
-        // read the file
-        Collection<CSVRecord> records = null;
+    public Stream<String[]> findAllColumns(Enum<?>... columns) {
+        return findAllColumns(null, columns);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the given fields of the rows read from the file are decoded, the rest of every row is skipped over without
+     * being copied. No entity is built.
+     */
+    @Override
+    public Stream<String[]> findAllColumns(ColumnFilter filter, Enum<?>... columns) {
+        Validate.notNull((Object[]) columns);
+        if (columns.length == 0)
+            throw new IllegalArgumentException("No column to read");
+        int[] positions = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            Validate.notNull(columns[i]);
+            checkSchema(columns[i].getDeclaringClass());
+            positions[i] = columns[i].ordinal();
+        }
+        if (filter != null)
+            checkSchema(filter.getSchema());
+        RepositoryMetrics.Timer timer = METRICS.start(RepositoryMetrics.Operation.FIND_ALL_COLUMNS);
         try {
-            records = readRecords();
+            boolean shared = lockForRead(false);
+            try {
+                return timed(streamLiveRows(filter, record -> {
+                    String[] values = new String[positions.length];
+                    for (int i = 0; i < positions.length; i++)
+                        values[i] = record.get(positions[i]);
+                    return values;
+                }, cursor -> {
+                    String[] values = new String[positions.length];
+                    for (int i = 0; i < positions.length; i++)
+                        values[i] = cursor.field(positions[i]);
+                    return values;
+                }), timer);
+            } finally {
+                unlockRead(shared);
+            }
         } catch (IOException e) {
             LOGGER.severe(e.getMessage());
         }
-        // map the records to entities
-        return records == null ? Stream.empty() : records.stream().map(this::ofRecord);
+        timer.stop();
+        return Stream.empty();
+    }
+
+    /**
+     * @param schema the schema of the columns given to a query.
+     * @throws IllegalArgumentException if it isn't the repository's schema.
+     */
+    private void checkSchema(Class<?> schema) {
+        if (schema != SCHEMA)
+            throw new IllegalArgumentException("Columns of " + schema.getCanonicalName() + " instead of "
+                    + SCHEMA.getCanonicalName());
     }
 
     @Override
     public boolean deleteById(ID id) {
-        boolean changed = false;
+        RepositoryMetrics.Timer timer = METRICS.start(RepositoryMetrics.Operation.DELETE_BY_ID);
+        try {
+            return delete(Collections.singletonList(id)) > 0;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Override
+    public int deleteAllById(Iterable<ID> ids) {
+        Validate.notNull(ids);
+        RepositoryMetrics.Timer timer = METRICS.start(RepositoryMetrics.Operation.DELETE_ALL_BY_ID);
+        try {
+            return delete(ids);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Saves a batch of entities, replacing the stored version of any of them.
+     *
+     * @param entities the entities.
+     * @return the persisted entities or an empty list if failed.
+     */
+    private List<S> store(Iterable<S> entities) {
+        // encode the whole batch up front, the last entity wins if an id is repeated
+        List<S> result = new ArrayList<>();
+        Map<String, List<String>> batch = new LinkedHashMap<>();
+        for (S entity : entities) {
+            Validate.notNull(entity);
+            LOGGER.fine("Persisting entity: " + entity);
+            String id = Safe.safeToString(getId(entity));
+            batch.remove(id);
+            batch.put(id, asRecord(entity));
+            result.add(entity);
+        }
+        return write(batch.values(), () -> {
+            persist(batch);
+            return result;
+        }, new ArrayList<>());
+    }
+
+    /**
+     * Applies a logged batch of records, replacing the stored version of any of them.
+     *
+     * @param batch the records by id.
+     * @throws IOException if the batch cannot be applied, the file, the cache and the indexes may be left partly
+     *                     updated.
+     */
+    private void persist(Map<String, List<String>> batch) throws IOException {
+        if (batch.isEmpty())
+            return;
+        sync();
+        if (storageMode == StorageMode.LOG) {
+            // append the new versions, older ones are left behind as dead rows
+            if (cacheEnabled) {
+                Map<String, CSVRecord> records = cache();
+                appendRecords(batch);
+                for (Map.Entry<String, List<String>> entry : batch.entrySet()) {
+                    records.remove(entry.getKey());
+                    records.put(entry.getKey(), toRecord(entry.getValue()));
+                }
+            } else {
+                index();
+                appendRecords(batch);
+            }
+            compactIfNeeded();
+        } else if (usesIndex()) {
+            index();
+            if (deadRows() > 0)
+                compact();
+            // drop the old rows without parsing the file
+            List<PrimaryKeyIndex.Extent> replaced = new ArrayList<>();
+            for (String id : batch.keySet()) {
+                PrimaryKeyIndex.Extent extent = index.remove(id);
+                if (extent != null)
+                    replaced.add(extent);
+            }
+            if (replaced.isEmpty())
+                appendRecords(batch);
+            else
+                replaceRows(replaced, batch);
+        } else if (!cacheEnabled && readMode == ReadMode.MAPPED) {
+            // locate every version of the replaced rows by their encoded ids and copy the bytes around them
+            List<PrimaryKeyIndex.Extent> replaced = locateRows(batch.keySet(), new HashSet<>());
+            if (replaced.isEmpty())
+                appendRecords(batch);
+            else
+                replaceRows(replaced, batch);
+        } else {
+            // rewrite the file once if any record is replaced, append the batch otherwise
+            Map<String, CSVRecord> records = cacheEnabled ? cache() : readLiveRecords();
+            boolean rewrite = rows > records.size();
+            for (Map.Entry<String, List<String>> entry : batch.entrySet()) {
+                rewrite |= records.remove(entry.getKey()) != null;
+                records.put(entry.getKey(), toRecord(entry.getValue()));
+            }
+            if (rewrite)
+                writeRecords(records.values());
+            else
+                appendRecords(batch);
+        }
+        stamp = stamp();
+        if (secondaryIndexesBuilt) {
+            for (Map.Entry<String, List<String>> entry : batch.entrySet()) {
+                CSVRecord record = toRecord(entry.getValue());
+                for (RecordIndex index : SECONDARY_INDEXES)
+                    index.put(entry.getKey(), record);
+            }
+        }
+    }
+
+    /**
+     * Looks an entity up.
+     *
+     * @param id the entity's id.
+     * @return the entity, or empty if there's no such entity or the lookup failed.
+     */
+    private Optional<S> find(String id) {
         try {
-            Collection<CSVRecord> records = readRecords();
-            changed = records.removeIf(r -> r.get("ID").equals(Safe.safeToString(id)));
-            if (changed)
-                writeRecords(records);
+            boolean shared = lockForRead(false);
+            try {
+                return Optional.ofNullable(lookUp(id)).map(this::ofRecord);
+            } finally {
+                unlockRead(shared);
+            }
         } catch (IOException e) {
             LOGGER.severe(e.getMessage());
         }
-        return changed;
+        return Optional.empty();
     }
 
     /**
-     * Loads all the records from disk.
+     * Looks a record up, the read lock must be held.
      *
-     * @return all the records.
-     * @throws IOException if file not found or unavailable.
+     * @param id the record's id.
+     * @return the record, or null if there's no such record.
+     * @throws IOException if the file cannot be read.
      */
-    private List<CSVRecord> readRecords() throws IOException {
-        Reader reader = Files.newBufferedReader(REPO_HOME);
-        List<CSVRecord> result = CSVParser.parse(reader, CSV_PARSE_FORMAT).getRecords();
-        reader.close();
-        return result;
+    private CSVRecord lookUp(String id) throws IOException {
+        if (cacheEnabled)
+            return cache().get(id);
+        if (usesIndex()) {
+            PrimaryKeyIndex.Extent extent = index().get(id);
+            return extent == null ? null : readRecord(extent);
+        }
+        if (readMode == ReadMode.MAPPED)
+            return scanRecord(id);
+        // the latest version of the row wins
+        try (Stream<CSVRecord> records = streamRecords()) {
+            return records.filter(r -> id.equals(r.get(ID_COLUMN)))
+                    .reduce((older, newer) -> newer)
+                    .filter(r -> !isTombstone(r))
+                    .orElse(null);
+        }
     }
 
     /**
-     * Overwrites the repository file with a collection of records.
+     * Deletes a batch of entities, ids that don't belong to any entity are ignored.
      *
-     * @param records records to be written to the repository file.
-     * @throws IOException if the file cannot be written.
+     * @param ids the entities' ids.
+     * @return the number of deleted entities.
      */
-    private void writeRecords(Collection<CSVRecord> records) throws IOException {
-        File file = new File(REPO_HOME.toString());
-        if (file.delete() && file.createNewFile()) {
-            Writer writer = Files.newBufferedWriter(REPO_HOME, StandardOpenOption.WRITE);
-            CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT);
-            printer.printRecords(records);
-            writer.close();
+    private int delete(Iterable<ID> ids) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (ID id : ids)
+            keys.add(Safe.safeToString(id));
+        List<List<String>> tombstones = new ArrayList<>();
+        for (String key : keys)
+            tombstones.add(Collections.singletonList(key));
+        return write(tombstones, () -> remove(keys), 0);
+    }
+
+    /**
+     * Applies a logged batch of deletions.
+     *
+     * @param keys the ids of the deleted records.
+     * @return the number of deleted records.
+     * @throws IOException if the batch cannot be applied, the file, the cache and the indexes may be left partly
+     *                     updated.
+     */
+    private int remove(Set<String> keys) throws IOException {
+        int deleted = 0;
+        sync();
+        if (storageMode == StorageMode.LOG) {
+            // leave tombstones behind
+            List<String> existing = new ArrayList<>();
+            for (String key : keys)
+                if (cacheEnabled ? cache().containsKey(key) : index().get(key) != null)
+                    existing.add(key);
+            if (!existing.isEmpty()) {
+                appendTombstones(existing);
+                if (cache != null)
+                    cache.keySet().removeAll(existing);
+                compactIfNeeded();
+            }
+            deleted = existing.size();
+        } else if (usesIndex()) {
+            index();
+            if (deadRows() > 0)
+                compact();
+            List<PrimaryKeyIndex.Extent> removed = new ArrayList<>();
+            for (String key : keys) {
+                PrimaryKeyIndex.Extent extent = index.remove(key);
+                if (extent != null)
+                    removed.add(extent);
+            }
+            if (!removed.isEmpty())
+                replaceRows(removed, Collections.emptyMap());
+            deleted = removed.size();
+        } else if (!cacheEnabled && readMode == ReadMode.MAPPED) {
+            Set<String> live = new HashSet<>();
+            List<PrimaryKeyIndex.Extent> removed = locateRows(keys, live);
+            deleted = live.size();
+            if (deleted > 0)
+                replaceRows(removed, Collections.emptyMap());
+        } else {
+            Map<String, CSVRecord> records = cacheEnabled ? cache() : readLiveRecords();
+            for (String key : keys)
+                if (records.remove(key) != null)
+                    deleted++;
+            if (deleted > 0)
+                writeRecords(records.values());
         }
+        if (deleted > 0) {
+            stamp = stamp();
+            if (secondaryIndexesBuilt)
+                for (RecordIndex index : SECONDARY_INDEXES)
+                    keys.forEach(index::remove);
+        }
+        return deleted;
     }
 
     /**
-     * Appends a record to the repository file.
+     * Retrieves the entities with the given ids, skipping ids that don't belong to any entity. Each entity is fetched
+     * through the cache or the primary key index when available, otherwise the file is scanned once. Rows located
+     * through the index are read as the stream is consumed. Must be called from a query run by
+     * {@link #withIndexes(Supplier, Object)}.
      *
-     * @param record a record as a list of strings.
-     * @throws IOException if the file cannot be written.
+     * @param ids the entities' ids.
+     * @return the matching entities, in the order of their ids.
      */
-    private void appendRecord(List<String> record) throws IOException {
-        Writer writer = Files.newBufferedWriter(REPO_HOME, StandardOpenOption.APPEND);
-        CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT);
-        printer.printRecord(record);
-        writer.close();
+    Stream<S> findAllByKeys(Collection<String> ids) {
+        if (ids.isEmpty())
+            return Stream.empty();
+        try {
+            if (cacheEnabled) {
+                Map<String, CSVRecord> records = cache();
+                List<CSVRecord> found = new ArrayList<>();
+                for (String id : ids)
+                    if (records.containsKey(id))
+                        found.add(records.get(id));
+                return found.stream().map(this::ofRecord);
+            }
+            if (usesIndex()) {
+                List<PrimaryKeyIndex.Extent> found = new ArrayList<>();
+                for (String id : ids) {
+                    PrimaryKeyIndex.Extent extent = index().get(id);
+                    if (extent != null)
+                        found.add(extent);
+                }
+                return streamExtents(found).map(this::ofRecord);
+            }
+            Map<String, CSVRecord> found = new HashMap<>();
+            for (String id : ids)
+                found.put(id, null);
+            try (Stream<CSVRecord> records = streamLiveRecords()) {
+                records.filter(record -> found.containsKey(record.get(ID_COLUMN)))
+                        .forEach(record -> found.put(record.get(ID_COLUMN), record));
+            }
+            return ids.stream().map(found::get).filter(Objects::nonNull).map(this::ofRecord);
+        } catch (IOException e) {
+            LOGGER.severe(e.getMessage());
+        }
+        return Stream.empty();
     }
 
     /**
-     * Retrieves a list of the entity's attributes as strings.
+     * Registers a secondary index, it will be built the first time it is queried.
      *
-     * @param entity the entity.
-     * @return the list of the entity's attributes as strings.
+     * @param index the index.
      */
-    abstract List<String> asRecord(S entity);
+    void addIndex(RecordIndex index) {
+        SECONDARY_INDEXES.add(index);
+    }
 
     /**
-     * Retrieves the id of the provided entity.
+     * Adds a column holding enum constants to the repository's bitmap index, so it can be used in an
+     * {@link EnumFilter}. Must be called from the concrete repository's constructor.
      *
-     * @param entity the entity.
-     * @return the id of the provided entity.
+     * @param column the column.
+     * @param values the enum whose constants the column holds.
+     * @param <E>    the type of the column's values.
      */
-    abstract ID getId(S entity);
+    <E extends Enum<E>> void addBitmapIndex(Enum<?> column, Class<E> values) {
+        if (bitmapIndex == null) {
+            bitmapIndex = new BitmapIndex();
+            addIndex(bitmapIndex);
+        }
+        bitmapIndex.addColumn(column, values);
+    }
 
     /**
-     * Generates an entity object from a csv record.
+     * {@inheritDoc}
+     * <p>
+     * The filter is answered by the bitmap index, the matching entities are returned in the order they took their
+     * slots in it: file order, until deletions free slots that later saves reuse.
+     */
+    @Override
+    public Stream<S> findAll(EnumFilter filter) {
+        Validate.notNull(filter);
+        return withIndexes(() -> findAllByKeys(bitmapIndex().ids(filter.evaluate(bitmapIndex))), Stream.empty());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The filter is answered by the bitmap index, no record is read.
+     */
+    @Override
+    public long count(EnumFilter filter) {
+        Validate.notNull(filter);
+        return withIndexes(() -> (long) filter.evaluate(bitmapIndex()).cardinality(), 0L);
+    }
+
+    /**
+     * @return the repository's bitmap index.
+     * @throws IllegalArgumentException if the repository doesn't have one.
+     */
+    private BitmapIndex bitmapIndex() {
+        if (bitmapIndex == null)
+            throw new IllegalArgumentException(REPO_HOME.getFileName() + " has no bitmap index");
+        return bitmapIndex;
+    }
+
+    /**
+     * Runs a query over the secondary indexes holding the read lock, building the indexes with a single pass over the
+     * live records first if needed. The query must not return anything backed by the indexes.
      *
-     * @param record the given record.
-     * @return the entity.
+     * @param query  the query.
+     * @param failed the result if the indexes couldn't be built.
+     * @param <T>    the type of the query's result.
+     * @return the query's result.
      */
-    public abstract S ofRecord(CSVRecord record);
+    <T> T withIndexes(Supplier<T> query, T failed) {
+        boolean shared;
+        try {
+            shared = lockForRead(true);
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.severe(e.getMessage());
+            return failed;
+        }
+        try {
+            return query.get();
+        } finally {
+            unlockRead(shared);
+        }
+    }
+
+    /**
+     * Builds the secondary indexes with a single pass over the live records, the write lock must be held.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    private void buildIndexes() throws IOException {
+        LOGGER.fine("Building secondary indexes for " + REPO_HOME);
+        SECONDARY_INDEXES.forEach(RecordIndex::clear);
+        try (Stream<CSVRecord> records = streamLiveRecords()) {
+            records.forEach(record -> {
+                String id = record.get(ID_COLUMN);
+                for (RecordIndex index : SECONDARY_INDEXES)
+                    index.put(id, record);
+            });
+        }
+        secondaryIndexesBuilt = true;
+    }
+
+    /**
+     * Acquires the read lock once the structures the reads go through reflect the file: the write-ahead log is
+     * replayed, the cache or the primary key index are loaded and, if asked for, the secondary indexes are built. Any
+     * of those is done under the write lock, which is then downgraded.
+     * <p>
+     * Reads served from an up to date cache don't touch the file, any other read also holds the shared lock of the
+     * processes working on the file. The first replay of the write-ahead log takes their exclusive lock instead.
+     *
+     * @param indexes whether the secondary indexes are needed.
+     * @return whether the shared lock of the processes is held, to be passed to {@link #unlockRead(boolean)}.
+     * @throws IOException if the file cannot be read or the lock cannot be taken, no lock is held then.
+     */
+    private boolean lockForRead(boolean indexes) throws IOException {
+        while (true) {
+            LOCK.readLock().lock();
+            boolean shared = false;
+            try {
+                if (cacheEnabled && ready(indexes))
+                    return false;
+                PROCESS_LOCK.lockShared();
+                shared = true;
+                if (ready(indexes))
+                    return true;
+            } catch (IOException e) {
+                unlockRead(shared);
+                throw e;
+            }
+            unlockRead(shared);
+            LOCK.writeLock().lock();
+            boolean exclusive;
+            try {
+                exclusive = !recovered || logPending();
+                if (exclusive)
+                    PROCESS_LOCK.lockExclusive();
+                else
+                    PROCESS_LOCK.lockShared();
+            } catch (IOException e) {
+                LOCK.writeLock().unlock();
+                throw e;
+            }
+            try {
+                if (!exclusive && logPending()) {
+                    // another process died with batches left to apply since it was checked, replay them alone
+                    PROCESS_LOCK.unlockShared();
+                    LOCK.writeLock().unlock();
+                    continue;
+                }
+                if (exclusive && logPending())
+                    recover();
+                sync();
+                if (cacheEnabled)
+                    cache();
+                else if (usesIndex())
+                    index();
+                if (indexes && !secondaryIndexesBuilt)
+                    buildIndexes();
+            } catch (IOException | UncheckedIOException e) {
+                invalidate();
+                if (exclusive)
+                    PROCESS_LOCK.unlockExclusive();
+                else
+                    PROCESS_LOCK.unlockShared();
+                LOCK.writeLock().unlock();
+                throw e;
+            }
+            if (!exclusive) {
+                LOCK.readLock().lock();
+                LOCK.writeLock().unlock();
+                return true;
+            }
+            // another process may write as soon as the exclusive lock is released, check again
+            PROCESS_LOCK.unlockExclusive();
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Releases the locks taken by {@link #lockForRead(boolean)}.
+     *
+     * @param shared whether the shared lock of the processes is held.
+     */
+    private void unlockRead(boolean shared) {
+        if (shared)
+            PROCESS_LOCK.unlockShared();
+        LOCK.readLock().unlock();
+    }
+
+    /**
+     * @param indexes whether the secondary indexes are needed.
+     * @return whether reads can go ahead without loading or rebuilding anything.
+     * @throws IOException if the file's attributes cannot be read.
+     */
+    private boolean ready(boolean indexes) throws IOException {
+        return recovered && stamp().equals(stamp) && !logPending()
+                && (!cacheEnabled || cache != null)
+                && (!usesIndex() || index != null)
+                && (!indexes || secondaryIndexesBuilt);
+    }
+
+    /**
+     * Runs a write holding the write lock and the exclusive lock of the processes working on the file. Its batch is
+     * logged and made as durable as the fsync policy asks for before the write is applied, so a write whose batch
+     * couldn't be logged leaves the file, the cache and the indexes untouched. Writers queued behind the lock are
+     * committed together by the first of them to take it, so a single force of the write-ahead log covers all of them.
+     *
+     * @param rows   the batch to log, as lists of strings, tombstones for deletions.
+     * @param apply  applies the batch once logged.
+     * @param failed the result if the lock couldn't be taken or the batch couldn't be logged or applied.
+     * @param <T>    the type of the write's result.
+     * @return the write's result.
+     */
+    private <T> T write(Collection<List<String>> rows, BatchApplier<T> apply, T failed) {
+        PendingWrite<T> pending = new PendingWrite<>(rows, apply, failed, METRICS.running());
+        PENDING.add(pending);
+        LOCK.writeLock().lock();
+        try {
+            // an earlier writer may have committed this one along with its own
+            if (!pending.done)
+                commitPending();
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+        return pending.result;
+    }
+
+    /**
+     * Commits every queued write: logs their batches, forces the log once and only then applies them in order. If a
+     * batch cannot be applied, the log is cut back to where that batch starts so it isn't replayed later, the cache
+     * and the indexes are dropped to be reloaded from disk, and that write and the ones after it fail. Writes applied
+     * before it keep their results, a failed checkpoint doesn't change any. The write lock must be held.
+     */
+    private void commitPending() {
+        List<PendingWrite<?>> group = new ArrayList<>();
+        for (PendingWrite<?> pending = PENDING.poll(); pending != null; pending = PENDING.poll())
+            group.add(pending);
+        try {
+            PROCESS_LOCK.lockExclusive();
+            try {
+                if (logPending())
+                    recover();
+                sync();
+                long[] starts = log(group);
+                for (int i = 0; i < group.size(); i++) {
+                    // the batch's I/O is credited to the write that queued it
+                    RepositoryMetrics.Timer own = METRICS.bind(group.get(i).timer);
+                    try {
+                        group.get(i).apply();
+                    } catch (IOException | UncheckedIOException e) {
+                        rollBack(starts[i]);
+                        throw e;
+                    } finally {
+                        METRICS.bind(own);
+                    }
+                }
+                PROCESS_LOCK.setAppliedLog(WAL.size());
+                try {
+                    checkpointIfNeeded();
+                } catch (IOException e) {
+                    LOGGER.severe(e.getMessage());
+                }
+            } finally {
+                PROCESS_LOCK.unlockExclusive();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.severe(e.getMessage());
+        } finally {
+            for (PendingWrite<?> pending : group)
+                pending.done = true;
+        }
+    }
+
+    /**
+     * Undoes a batch that couldn't be applied: cuts the write-ahead log back to where the batch starts and drops the
+     * cache and the indexes, which may hold part of it.
+     *
+     * @param start size of the log before the batch.
+     */
+    private void rollBack(long start) {
+        invalidate();
+        try {
+            WAL.truncate(start);
+            PROCESS_LOCK.setAppliedLog(start);
+        } catch (IOException e) {
+            LOGGER.severe(e.getMessage());
+        }
+    }
+
+    /**
+     * Changes when the write-ahead log is forced to the storage device.
+     *
+     * @param fsyncPolicy the new policy.
+     */
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        Validate.notNull(fsyncPolicy);
+        WAL.setPolicy(fsyncPolicy, WAL.getInterval());
+    }
+
+    /**
+     * Changes how often the write-ahead log is forced with {@link FsyncPolicy#INTERVAL} policy.
+     *
+     * @param millis milliseconds between forces.
+     */
+    public void setFsyncInterval(long millis) {
+        WAL.setPolicy(WAL.getPolicy(), millis);
+    }
+
+    /**
+     * Changes how long reads and writes wait for other processes working on the repository file before failing.
+     *
+     * @param millis milliseconds to wait for the lock.
+     */
+    public void setLockTimeout(long millis) {
+        PROCESS_LOCK.setTimeout(millis);
+    }
+
+    /**
+     * @return the latency and I/O counters of this repository.
+     */
+    public RepositoryMetrics getMetrics() {
+        return METRICS;
+    }
+
+    /**
+     * Enables or disables the resident cache. Disabling it releases the cached records.
+     *
+     * @param enabled whether reads should be served from memory.
+     */
+    public void setCacheEnabled(boolean enabled) {
+        LOCK.writeLock().lock();
+        try {
+            this.cacheEnabled = enabled;
+            if (!enabled)
+                cache = null;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Enables or disables the primary key index. Disabling it releases the index. {@link StorageMode#LOG} mode always
+     * relies on the index to resolve the latest version of a row when the cache is disabled.
+     *
+     * @param enabled whether lookups should go through the index when the cache is disabled.
+     */
+    public void setIndexEnabled(boolean enabled) {
+        LOCK.writeLock().lock();
+        try {
+            this.indexEnabled = enabled;
+            if (!enabled && storageMode != StorageMode.LOG)
+                index = null;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Changes how updates and deletions are applied to the file. Dead rows left behind by {@link StorageMode#LOG} mode
+     * are compacted away by the next {@link StorageMode#IN_PLACE} write.
+     *
+     * @param storageMode the new storage mode.
+     */
+    public void setStorageMode(StorageMode storageMode) {
+        Validate.notNull(storageMode);
+        LOCK.writeLock().lock();
+        try {
+            this.storageMode = storageMode;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Changes how raw rows are scanned.
+     *
+     * @param readMode the new read mode.
+     */
+    public void setReadMode(ReadMode readMode) {
+        Validate.notNull(readMode);
+        LOCK.writeLock().lock();
+        try {
+            this.readMode = readMode;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Changes the ratio of dead rows (superseded versions and tombstones) to total rows past which a
+     * {@link StorageMode#LOG} file is compacted.
+     *
+     * @param compactionThreshold a ratio between 0 and 1.
+     */
+    public void setCompactionThreshold(double compactionThreshold) {
+        if (compactionThreshold < 0 || compactionThreshold > 1)
+            throw new IllegalArgumentException("Compaction threshold must be between 0 and 1");
+        LOCK.writeLock().lock();
+        try {
+            this.compactionThreshold = compactionThreshold;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return whether lookups go through the primary key index.
+     */
+    private boolean usesIndex() {
+        return !cacheEnabled && (indexEnabled || storageMode == StorageMode.LOG);
+    }
+
+    /**
+     * Brings the cache and the indexes up to date if the repository file changed on disk since they were last
+     * synchronized: rows appended to the same file are read on their own, any other change drops them.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    private void sync() throws IOException {
+        if (!recovered)
+            recover();
+        FileStamp current = stamp();
+        if (current.equals(stamp))
+            return;
+        boolean loaded = cache != null || index != null || secondaryIndexesBuilt;
+        if (loaded && stamp != null && current.grewFrom(stamp) && endsRow(stamp.size())) {
+            readAppended(stamp.size());
+        } else {
+            cache = null;
+            index = null;
+            rows = -1;
+            secondaryIndexesBuilt = false;
+        }
+        stamp = current;
+    }
+
+    /**
+     * @return whether the write-ahead log holds batches that weren't applied, left by a process that died while
+     * writing.
+     * @throws IOException if the log or the lock file cannot be read.
+     */
+    private boolean logPending() throws IOException {
+        return WAL.size() > PROCESS_LOCK.appliedLog();
+    }
+
+    /**
+     * @return the current stamp of the repository file.
+     * @throws IOException if the file's attributes or the lock file cannot be read.
+     */
+    private FileStamp stamp() throws IOException {
+        return FileStamp.of(REPO_HOME, PROCESS_LOCK.generation());
+    }
+
+    /**
+     * @param offset an offset of the repository file.
+     * @return whether a row ends right before the offset.
+     * @throws IOException if the file cannot be read.
+     */
+    private boolean endsRow(long offset) throws IOException {
+        if (offset == 0)
+            return true;
+        ByteBuffer last = ByteBuffer.allocate(1);
+        try (FileChannel channel = FileChannel.open(REPO_HOME, StandardOpenOption.READ)) {
+            return channel.read(last, offset - 1) == 1 && last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Applies the rows appended to the repository file by another process to the cache and the indexes, reading
+     * nothing before them.
+     *
+     * @param from offset of the first appended row.
+     * @throws IOException if the file cannot be read.
+     */
+    private void readAppended(long from) throws IOException {
+        LOGGER.fine("Reading rows appended to " + REPO_HOME + " past offset " + from);
+        long count = 0;
+        try (RowCursor cursor = new RowScanner(REPO_HOME, from).countingInto(METRICS)) {
+            while (cursor.next()) {
+                String id = cursor.field(ID_COLUMN);
+                boolean live = cursor.hasField(1);
+                CSVRecord record = live && (cache != null || secondaryIndexesBuilt) ? parse(cursor.text()) : null;
+                if (cache != null) {
+                    cache.remove(id);
+                    if (live)
+                        cache.put(id, record);
+                }
+                if (index != null) {
+                    if (live)
+                        index.put(id, cursor.offset(), cursor.length());
+                    else
+                        index.remove(id);
+                }
+                if (secondaryIndexesBuilt) {
+                    for (RecordIndex secondary : SECONDARY_INDEXES) {
+                        if (live)
+                            secondary.put(id, record);
+                        else
+                            secondary.remove(id);
+                    }
+                }
+                count++;
+            }
+        }
+        if (rows >= 0)
+            rows += count;
+    }
+
+    /**
+     * Replays the batches left in the write-ahead log by an interrupted write into the repository file, then empties
+     * the log. The file is only rewritten if it misses the last logged version of some record, batches applied before
+     * the log was last checkpointed are just dropped once the file is forced. The exclusive lock of the processes must
+     * be held.
+     *
+     * @throws IOException if the log or the file cannot be read or written.
+     */
+    private void recover() throws IOException {
+        List<byte[]> entries = WAL.replay();
+        if (!entries.isEmpty()) {
+            // the last logged version of every record, tombstones for deletions
+            Map<String, CSVRecord> logged = new LinkedHashMap<>();
+            for (byte[] entry : entries) {
+                try (CSVParser parser = CSVParser.parse(new String(entry, StandardCharsets.UTF_8), CSV_PARSE_FORMAT)) {
+                    for (CSVRecord record : parser) {
+                        logged.remove(record.get(ID_COLUMN));
+                        logged.put(record.get(ID_COLUMN), record);
+                    }
+                }
+            }
+            Map<String, CSVRecord> records = readLiveRecords();
+            boolean applied = true;
+            for (Map.Entry<String, CSVRecord> entry : logged.entrySet()) {
+                CSVRecord record = entry.getValue();
+                CSVRecord stored = records.remove(entry.getKey());
+                if (isTombstone(record)) {
+                    applied &= stored == null;
+                } else {
+                    applied &= stored != null && Arrays.equals(encode(stored), encode(record));
+                    records.put(entry.getKey(), record);
+                }
+            }
+            if (!applied) {
+                LOGGER.fine("Replaying " + entries.size() + " write-ahead log entries into " + REPO_HOME);
+                writeRecords(records.values());
+            } else if (WAL.getPolicy() != FsyncPolicy.OS) {
+                force(REPO_HOME);
+            }
+        }
+        WAL.truncate();
+        PROCESS_LOCK.setAppliedLog(0);
+        recovered = true;
+    }
+
+    /**
+     * Logs the batches of a group of writes to the write-ahead log and commits them with a single force. If any of
+     * them cannot be logged or the log cannot be forced, the log is cut back to where it was.
+     *
+     * @param group the writes.
+     * @return the size of the log before each write's batch.
+     * @throws IOException if the log cannot be written or forced.
+     */
+    private long[] log(List<PendingWrite<?>> group) throws IOException {
+        long size = WAL.size();
+        long[] starts = new long[group.size()];
+        try {
+            long sequence = 0;
+            for (int i = 0; i < group.size(); i++) {
+                starts[i] = WAL.size();
+                PendingWrite<?> pending = group.get(i);
+                if (pending.rows.isEmpty())
+                    continue;
+                ByteArrayOutputStream payload = new ByteArrayOutputStream();
+                for (List<String> row : pending.rows)
+                    payload.write(encode(row));
+                sequence = WAL.append(payload.toByteArray());
+            }
+            WAL.commit(sequence);
+            return starts;
+        } catch (IOException e) {
+            try {
+                WAL.truncate(size);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Empties the write-ahead log once it grows past {@link #CHECKPOINT_BYTES}, forcing the repository file and its
+     * directory first so that no logged batch is lost.
+     *
+     * @throws IOException if the file cannot be forced or the log cannot be truncated.
+     */
+    private void checkpointIfNeeded() throws IOException {
+        if (WAL.size() < CHECKPOINT_BYTES)
+            return;
+        if (WAL.getPolicy() != FsyncPolicy.OS) {
+            force(REPO_HOME);
+            forceDirectory(REPO_HOME.getParent());
+        }
+        WAL.truncate();
+        PROCESS_LOCK.setAppliedLog(0);
+    }
+
+    /**
+     * Replaces the repository file with a fully written temporary file, forcing it first and the directory entry after
+     * the rename unless the fsync policy leaves it to the operating system. The file is never observed half written.
+     * The exclusive lock of the processes must be held.
+     *
+     * @param temp the temporary file, in the same directory as the repository file.
+     * @throws IOException if the file cannot be replaced.
+     */
+    private void install(Path temp) throws IOException {
+        if (WAL.getPolicy() != FsyncPolicy.OS)
+            force(temp);
+        try {
+            Files.move(temp, REPO_HOME, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, REPO_HOME, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (WAL.getPolicy() != FsyncPolicy.OS)
+            forceDirectory(REPO_HOME.getParent());
+        PROCESS_LOCK.nextGeneration();
+    }
+
+    /**
+     * Forces a file's contents to the storage device.
+     *
+     * @param file the file.
+     * @throws IOException if the file cannot be forced.
+     */
+    private static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces a directory's entries to the storage device, so that a file renamed into it survives a crash. Platforms
+     * that cannot open a directory, like Windows, are left to the operating system.
+     *
+     * @param directory the directory.
+     * @throws IOException if the directory cannot be forced.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (AccessDeniedException e) {
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Drops the cache and the index, they will be rebuilt from disk on the next access.
+     */
+    private void invalidate() {
+        cache = null;
+        index = null;
+        rows = -1;
+        secondaryIndexesBuilt = false;
+        stamp = null;
+    }
+
+    /**
+     * Retrieves the resident cache, loading it if needed.
+     *
+     * @return the cached records keyed by id.
+     * @throws IOException if the file cannot be read.
+     */
+    private Map<String, CSVRecord> cache() throws IOException {
+        if (cache == null) {
+            LOGGER.fine("Loading cache from " + REPO_HOME);
+            cache = readLiveRecords();
+        }
+        return cache;
+    }
+
+    /**
+     * Retrieves the primary key index, building it with a single pass over the file if needed. Later versions of a row
+     * replace earlier ones and tombstones remove the row from the index.
+     *
+     * @return the index.
+     * @throws IOException if the file cannot be read.
+     */
+    private PrimaryKeyIndex index() throws IOException {
+        if (index == null) {
+            LOGGER.fine("Indexing " + REPO_HOME);
+            PrimaryKeyIndex rebuilt = new PrimaryKeyIndex();
+            long count = 0;
+            try (RowCursor cursor = openRows()) {
+                while (cursor.next()) {
+                    String id = cursor.field(ID_COLUMN);
+                    if (cursor.hasField(1))
+                        rebuilt.put(id, cursor.offset(), cursor.length());
+                    else
+                        rebuilt.remove(id);
+                    count++;
+                }
+            }
+            index = rebuilt;
+            rows = count;
+        }
+        return index;
+    }
+
+    /**
+     * @return the number of superseded versions and tombstones in the repository file, or zero if unknown.
+     */
+    private long deadRows() {
+        long live = cache != null ? cache.size() : index != null ? index.size() : -1;
+        return rows < 0 || live < 0 ? 0 : rows - live;
+    }
+
+    /**
+     * Compacts the repository file if the ratio of dead rows to total rows went past the compaction threshold.
+     *
+     * @throws IOException if the file cannot be rewritten.
+     */
+    private void compactIfNeeded() throws IOException {
+        if (rows > 0 && (double) deadRows() / rows > compactionThreshold)
+            compact();
+    }
+
+    /**
+     * Rewrites the repository file keeping only the latest version of every live row.
+     *
+     * @throws IOException if the file cannot be rewritten.
+     */
+    private void compact() throws IOException {
+        LOGGER.fine("Compacting " + REPO_HOME);
+        if (cache != null) {
+            writeRecords(cache.values());
+            return;
+        }
+        PrimaryKeyIndex live = index();
+        PrimaryKeyIndex rebuilt = new PrimaryKeyIndex();
+        Path temp = Files.createTempFile(REPO_HOME.getParent(), REPO_HOME.getFileName().toString(), ".tmp");
+        try (RowCursor cursor = openRows();
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            long offset = 0;
+            while (cursor.next()) {
+                String id = cursor.field(ID_COLUMN);
+                PrimaryKeyIndex.Extent extent = live.get(id);
+                if (extent != null && extent.offset == cursor.offset()) {
+                    cursor.writeTo(out);
+                    rebuilt.put(id, offset, cursor.length());
+                    offset += cursor.length();
+                }
+            }
+            METRICS.written(rebuilt.size(), offset);
+        }
+        install(temp);
+        index = rebuilt;
+        rows = rebuilt.size();
+    }
+
+    /**
+     * Opens a cursor over the raw rows of the repository file according to the read mode.
+     *
+     * @return the cursor, positioned before the first row.
+     * @throws IOException if the file cannot be opened.
+     */
+    private RowCursor openRows() throws IOException {
+        RowCursor cursor = readMode == ReadMode.MAPPED ? new MappedRowScanner(REPO_HOME) : new RowScanner(REPO_HOME);
+        return cursor.countingInto(METRICS);
+    }
+
+    /**
+     * Looks a record up by scanning the raw rows of the repository file, comparing ids against the encoded key and only
+     * decoding the latest matching row.
+     *
+     * @param id the record's id.
+     * @return the record or null if no live record has the given id.
+     * @throws IOException if the file cannot be read.
+     */
+    private CSVRecord scanRecord(String id) throws IOException {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        PrimaryKeyIndex.Extent latest = null;
+        try (RowCursor cursor = openRows()) {
+            while (cursor.next())
+                if (cursor.fieldEquals(ID_COLUMN, key))
+                    latest = cursor.hasField(1) ? new PrimaryKeyIndex.Extent(cursor.offset(), cursor.length()) : null;
+        }
+        return latest == null ? null : readRecord(latest);
+    }
+
+    /**
+     * Locates every row, superseded versions and tombstones included, whose id belongs to the given set by scanning the
+     * raw rows of the repository file. Single ids are compared against their encoded bytes.
+     *
+     * @param ids  the ids to look for.
+     * @param live receives the ids whose latest version is a live row.
+     * @return the locations of the matching rows, sorted by offset.
+     * @throws IOException if the file cannot be read.
+     */
+    private List<PrimaryKeyIndex.Extent> locateRows(Set<String> ids, Set<String> live) throws IOException {
+        String single = ids.size() == 1 ? ids.iterator().next() : null;
+        byte[] key = single == null ? null : single.getBytes(StandardCharsets.UTF_8);
+        List<PrimaryKeyIndex.Extent> extents = new ArrayList<>();
+        try (RowCursor cursor = openRows()) {
+            while (cursor.next()) {
+                String id;
+                if (key != null) {
+                    id = cursor.fieldEquals(ID_COLUMN, key) ? single : null;
+                } else {
+                    id = cursor.field(ID_COLUMN);
+                    if (!ids.contains(id))
+                        id = null;
+                }
+                if (id == null)
+                    continue;
+                extents.add(new PrimaryKeyIndex.Extent(cursor.offset(), cursor.length()));
+                if (cursor.hasField(1))
+                    live.add(id);
+                else
+                    live.remove(id);
+            }
+        }
+        return extents;
+    }
+
+    /**
+     * Streams the latest version of every live record: a snapshot of the cache if enabled, the file lazily otherwise.
+     *
+     * @return the live records in file order.
+     * @throws IOException if file not found or unavailable.
+     */
+    private Stream<CSVRecord> streamLiveRecords() throws IOException {
+        if (cacheEnabled)
+            return new ArrayList<>(cache().values()).stream();
+        if (usesIndex())
+            return streamIndexedRecords();
+        return streamRecords().filter(record -> !isTombstone(record));
+    }
+
+    /**
+     * Streams what is read from every live row matching a filter, the read lock must be held. Rows read from the file
+     * are tested and read through the row cursor, without being parsed, the primary key index tells live rows apart
+     * from dead ones.
+     *
+     * @param filter     the filter, null to read every live row.
+     * @param fromRecord reads a cached record.
+     * @param fromRow    reads the current row of a cursor.
+     * @param <T>        the type of what is read.
+     * @return what was read from the matching live rows, in file order.
+     * @throws IOException if file not found or unavailable.
+     */
+    private <T> Stream<T> streamLiveRows(ColumnFilter filter, Function<CSVRecord, T> fromRecord,
+                                         RowReader<T> fromRow) throws IOException {
+        if (cacheEnabled) {
+            List<T> matching = new ArrayList<>();
+            for (CSVRecord record : cache().values())
+                if (filter == null || filter.test(record))
+                    matching.add(fromRecord.apply(record));
+            return matching.stream();
+        }
+        // every row of an unindexed file is live but tombstones, otherwise only the indexed rows are
+        long[] offsets = usesIndex() && deadRows() > 0 ? index().offsets() : null;
+        RowCursor cursor = openRows();
+        Iterator<T> iterator = new Iterator<T>() {
+            private int position;
+            private T next;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null && (offsets == null || position < offsets.length) && cursor.next()) {
+                        if (offsets != null) {
+                            if (cursor.offset() != offsets[position])
+                                continue;
+                            position++;
+                        } else if (!cursor.hasField(1)) {
+                            continue;
+                        }
+                        if (filter == null || filter.test(cursor))
+                            next = fromRow.read(cursor);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                T result = next;
+                next = null;
+                return result;
+            }
+        };
+        return stream(iterator, cursor);
+    }
+
+    /**
+     * Streams the live records that follow a given one, the read lock must be held.
+     *
+     * @param after the id of the preceding record.
+     * @param limit the maximum number of records.
+     * @return the live records after the given one in file order, or an empty stream if it isn't a live record.
+     * @throws IOException if file not found or unavailable.
+     */
+    private Stream<CSVRecord> streamLiveRecordsAfter(String after, long limit) throws IOException {
+        if (cacheEnabled) {
+            List<CSVRecord> page = new ArrayList<>();
+            Iterator<Map.Entry<String, CSVRecord>> entries = cache().entrySet().iterator();
+            while (entries.hasNext() && !entries.next().getKey().equals(after)) ;
+            while (entries.hasNext() && page.size() < limit)
+                page.add(entries.next().getValue());
+            return page.stream();
+        }
+        if (usesIndex()) {
+            PrimaryKeyIndex.Extent start = index().get(after);
+            if (start == null)
+                return Stream.empty();
+            long from = start.offset + start.length;
+            if (deadRows() == 0)
+                return streamRecords(from).limit(limit);
+            return streamExtents(index().extentsFrom(from)).limit(limit);
+        }
+        // every id appears once in an unindexed file, skip rows up to the preceding record's
+        boolean[] found = {false};
+        return streamLiveRecords().filter(record -> {
+            if (found[0])
+                return true;
+            found[0] = record.get(ID_COLUMN).equals(after);
+            return false;
+        }).limit(limit);
+    }
+
+    /**
+     * Lazily reads a sequence of rows from disk. The file is opened right away, so the rows are read from the file as
+     * it is now even if it is rewritten, and stays open until the stream is closed.
+     *
+     * @param extents the locations of the rows.
+     * @return the records at the given locations, in the same order.
+     * @throws IOException if file not found or unavailable.
+     */
+    private Stream<CSVRecord> streamExtents(List<PrimaryKeyIndex.Extent> extents) throws IOException {
+        RepositoryMetrics.Timer timer = METRICS.running();
+        FileChannel channel = FileChannel.open(REPO_HOME, StandardOpenOption.READ);
+        Iterator<PrimaryKeyIndex.Extent> locations = extents.iterator();
+        Iterator<CSVRecord> iterator = new Iterator<CSVRecord>() {
+            @Override
+            public boolean hasNext() {
+                return locations.hasNext();
+            }
+
+            @Override
+            public CSVRecord next() {
+                try {
+                    return readRecord(channel, locations.next(), timer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return stream(iterator, channel);
+    }
+
+    /**
+     * Loads the latest version of every live record from disk.
+     *
+     * @return the live records keyed by id, in file order.
+     * @throws IOException if file not found or unavailable.
+     */
+    private Map<String, CSVRecord> readLiveRecords() throws IOException {
+        Map<String, CSVRecord> records = new LinkedHashMap<>();
+        long count = 0;
+        try (Stream<CSVRecord> stream = streamRecords()) {
+            Iterator<CSVRecord> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                CSVRecord record = iterator.next();
+                String id = record.get(ID_COLUMN);
+                records.remove(id);
+                if (!isTombstone(record))
+                    records.put(id, record);
+                count++;
+            }
+        }
+        rows = count;
+        return records;
+    }
+
+    /**
+     * Lazily streams the latest version of every live record from disk, using the primary key index to skip dead rows.
+     * The file stays open until the stream is closed. The live rows are taken from a copy of the index, so rows written
+     * afterwards are never seen.
+     *
+     * @return the live records in file order.
+     * @throws IOException if file not found or unavailable.
+     */
+    private Stream<CSVRecord> streamIndexedRecords() throws IOException {
+        PrimaryKeyIndex live = index();
+        if (deadRows() == 0)
+            return streamRecords();
+        long[] offsets = live.offsets();
+        RowCursor cursor = openRows();
+        Iterator<CSVRecord> iterator = new Iterator<CSVRecord>() {
+            private int position;
+            private CSVRecord next;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null && position < offsets.length && cursor.next()) {
+                        if (cursor.offset() == offsets[position]) {
+                            position++;
+                            next = parse(cursor.text());
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return next != null;
+            }
+
+            @Override
+            public CSVRecord next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                CSVRecord result = next;
+                next = null;
+                return result;
+            }
+        };
+        return stream(iterator, cursor);
+    }
+
+    /**
+     * Lazily streams every record in the repository file, superseded versions and tombstones included. Records are
+     * parsed as the stream is consumed and the file stays open until the stream is closed. Rows appended after the
+     * stream is opened are never seen.
+     *
+     * @return all the records in file order.
+     * @throws IOException if file not found or unavailable.
+     */
+    private Stream<CSVRecord> streamRecords() throws IOException {
+        return streamRecords(0);
+    }
+
+    /**
+     * Lazily streams the records in the repository file from a given row on, like {@link #streamRecords()}.
+     *
+     * @param from the byte offset of the first row.
+     * @return the records from the given row on, in file order.
+     * @throws IOException if file not found or unavailable.
+     */
+    private Stream<CSVRecord> streamRecords(long from) throws IOException {
+        RepositoryMetrics.Timer timer = METRICS.running();
+        FileChannel channel = FileChannel.open(REPO_HOME, StandardOpenOption.READ);
+        long size = channel.size();
+        channel.position(Math.min(from, size));
+        InputStream in = new FilterInputStream(Channels.newInputStream(channel)) {
+            private long remaining = size - channel.position();
+
+            @Override
+            public int read() throws IOException {
+                int b = remaining > 0 ? super.read() : -1;
+                if (b >= 0) {
+                    remaining--;
+                    METRICS.read(timer, 0, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining <= 0)
+                    return -1;
+                int n = super.read(b, off, (int) Math.min(len, remaining));
+                if (n > 0) {
+                    remaining -= n;
+                    METRICS.read(timer, 0, n);
+                }
+                return n;
+            }
+        };
+        Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8.newDecoder()));
+        CSVParser parser = CSVParser.parse(reader, CSV_PARSE_FORMAT);
+        Iterator<CSVRecord> records = parser.iterator();
+        Iterator<CSVRecord> iterator = new Iterator<CSVRecord>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return records.hasNext();
+                } catch (IllegalStateException e) {
+                    throw unchecked(e);
+                }
+            }
+
+            @Override
+            public CSVRecord next() {
+                try {
+                    return records.next();
+                } catch (IllegalStateException e) {
+                    throw unchecked(e);
+                }
+            }
+        };
+        return stream(iterator, parser).peek(record -> METRICS.read(timer, 1, 0));
+    }
+
+    /**
+     * The parser reports a failure to read the file as an {@link IllegalStateException}, this turns it back into an
+     * I/O failure so that callers handle it like any other.
+     *
+     * @param e an exception thrown by the parser's iterator.
+     * @return an {@link UncheckedIOException} if the parser failed to read, the exception itself otherwise.
+     */
+    private static RuntimeException unchecked(IllegalStateException e) {
+        return e.getCause() instanceof IOException ? new UncheckedIOException((IOException) e.getCause()) : e;
+    }
+
+    /**
+     * Records a query once its stream is read to the end or closed, whichever comes first, so that callers reading the
+     * whole stream are measured even if they never close it.
+     *
+     * @param stream the query's stream.
+     * @param timer  the query's timer.
+     * @param <T>    the type of the streamed elements.
+     * @return a stream over the same elements.
+     */
+    private static <T> Stream<T> timed(Stream<T> stream, RepositoryMetrics.Timer timer) {
+        Spliterator<T> source = stream.spliterator();
+        // not sized, so that counting the stream still reads it to the end
+        int characteristics = source.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, characteristics) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (source.tryAdvance(action))
+                    return true;
+                timer.stop();
+                return false;
+            }
+
+            @Override
+            public void forEachRemaining(Consumer<? super T> action) {
+                source.forEachRemaining(action);
+                timer.stop();
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(stream::close).onClose(timer::stop);
+    }
+
+    /**
+     * Wraps an iterator over an open resource in a sequential stream that releases the resource when closed.
+     *
+     * @param iterator the iterator.
+     * @param resource the resource backing the iterator.
+     * @param <T>      the type of the iterated elements.
+     * @return the stream.
+     */
+    private <T> Stream<T> stream(Iterator<T> iterator, Closeable resource) {
+        Spliterator<T> spliterator =
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                LOGGER.severe(e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Reads and parses a single record from disk.
+     *
+     * @param extent the record's location.
+     * @return the record.
+     * @throws IOException if the file cannot be read.
+     */
+    private CSVRecord readRecord(PrimaryKeyIndex.Extent extent) throws IOException {
+        try (FileChannel channel = FileChannel.open(REPO_HOME, StandardOpenOption.READ)) {
+            return readRecord(channel, extent, METRICS.running());
+        }
+    }
+
+    /**
+     * Reads and parses a single record from an open repository file.
+     *
+     * @param channel the repository file.
+     * @param extent  the record's location.
+     * @param timer   the run the read is credited to, null for none.
+     * @return the record.
+     * @throws IOException if the file cannot be read.
+     */
+    private CSVRecord readRecord(FileChannel channel, PrimaryKeyIndex.Extent extent, RepositoryMetrics.Timer timer)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(extent.length);
+        while (buffer.hasRemaining() && channel.read(buffer, extent.offset + buffer.position()) >= 0) ;
+        METRICS.read(timer, 1, buffer.position());
+        return parse(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Overwrites the repository file with a collection of records, written to a temporary file that then replaces it.
+     * The primary key index, if built, is rebuilt as the records are written.
+     *
+     * @param records records to be written to the repository file.
+     * @throws IOException if the file cannot be written.
+     */
+    private void writeRecords(Collection<CSVRecord> records) throws IOException {
+        PrimaryKeyIndex rebuilt = index == null ? null : new PrimaryKeyIndex();
+        Path temp = Files.createTempFile(REPO_HOME.getParent(), REPO_HOME.getFileName().toString(), ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            long offset = 0;
+            for (CSVRecord record : records) {
+                byte[] bytes = encode(record);
+                out.write(bytes);
+                if (rebuilt != null)
+                    rebuilt.put(record.get(ID_COLUMN), offset, bytes.length);
+                offset += bytes.length;
+            }
+            METRICS.written(records.size(), offset);
+        }
+        install(temp);
+        index = rebuilt;
+        rows = records.size();
+    }
+
+    /**
+     * Appends a batch of records to the repository file, none of them is left behind if it fails.
+     *
+     * @param records the records as lists of strings, keyed by id.
+     * @throws IOException if the file cannot be written.
+     */
+    private void appendRecords(Map<String, List<String>> records) throws IOException {
+        long start = Files.size(REPO_HOME);
+        long offset = start;
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(REPO_HOME, StandardOpenOption.APPEND))) {
+            for (Map.Entry<String, List<String>> entry : records.entrySet()) {
+                byte[] bytes = encode(entry.getValue());
+                out.write(bytes);
+                if (index != null)
+                    index.put(entry.getKey(), offset, bytes.length);
+                offset += bytes.length;
+            }
+        } catch (IOException e) {
+            // cut off the part of the batch that made it to the file
+            try (FileChannel channel = FileChannel.open(REPO_HOME, StandardOpenOption.WRITE)) {
+                channel.truncate(start);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        METRICS.written(records.size(), offset - start);
+        if (rows >= 0)
+            rows += records.size();
+    }
+
+    /**
+     * Appends tombstones, rows holding nothing but the id, to the repository file.
+     *
+     * @param ids the deleted records' ids.
+     * @throws IOException if the file cannot be written.
+     */
+    private void appendTombstones(Collection<String> ids) throws IOException {
+        Map<String, List<String>> tombstones = new LinkedHashMap<>();
+        for (String id : ids)
+            tombstones.put(id, Collections.singletonList(id));
+        appendRecords(tombstones);
+        if (index != null)
+            ids.forEach(index::remove);
+    }
+
+    /**
+     * @param record a record read from the repository file.
+     * @return whether the record is a tombstone.
+     */
+    private static boolean isTombstone(CSVRecord record) {
+        return record.size() == 1;
+    }
+
+    /**
+     * Rewrites the repository file in a single pass, copying the bytes around a set of rows without parsing the file
+     * and appending a batch of records at the end. The removed rows must already be out of the primary key index.
+     *
+     * @param removed  the locations of the rows to drop.
+     * @param appended the records to append as lists of strings, keyed by id.
+     * @throws IOException if the file cannot be written.
+     */
+    private void replaceRows(List<PrimaryKeyIndex.Extent> removed, Map<String, List<String>> appended)
+            throws IOException {
+        List<PrimaryKeyIndex.Extent> extents = new ArrayList<>(removed);
+        extents.sort(Comparator.comparingLong(extent -> extent.offset));
+        Path temp = Files.createTempFile(REPO_HOME.getParent(), REPO_HOME.getFileName().toString(), ".tmp");
+        try (FileChannel source = FileChannel.open(REPO_HOME, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            long position = 0;
+            for (PrimaryKeyIndex.Extent extent : extents) {
+                copy(source, position, extent.offset - position, target);
+                position = extent.offset + extent.length;
+            }
+            copy(source, position, source.size() - position, target);
+            if (index != null)
+                index.shift(extents);
+            long offset = target.position();
+            METRICS.read(0, offset);
+            for (Map.Entry<String, List<String>> entry : appended.entrySet()) {
+                ByteBuffer bytes = ByteBuffer.wrap(encode(entry.getValue()));
+                if (index != null)
+                    index.put(entry.getKey(), offset, bytes.remaining());
+                while (bytes.hasRemaining())
+                    offset += target.write(bytes);
+            }
+            METRICS.written(appended.size(), offset);
+        }
+        install(temp);
+        if (rows >= 0)
+            rows += appended.size() - removed.size();
+    }
+
+    /**
+     * Copies a range of bytes from one channel to the end of another.
+     *
+     * @param source   the source channel.
+     * @param position first byte to copy.
+     * @param count    number of bytes to copy.
+     * @param target   the target channel.
+     * @throws IOException if either channel fails.
+     */
+    private static void copy(FileChannel source, long position, long count, FileChannel target) throws IOException {
+        while (count > 0) {
+            long copied = source.transferTo(position, count, target);
+            position += copied;
+            count -= copied;
+        }
+    }
+
+    /**
+     * Encodes a record as a line of the repository file.
+     *
+     * @param values the record's attributes.
+     * @return the line's bytes, line terminator included.
+     */
+    private static byte[] encode(Iterable<String> values) {
+        List<String> fields = new ArrayList<>();
+        values.forEach(fields::add);
+        return (CSVFormat.DEFAULT.format(fields.toArray()) + RECORD_SEPARATOR).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds a record out of a list of attributes, as if it had been read from the repository file.
+     *
+     * @param values the record's attributes.
+     * @return the record.
+     * @throws IOException if the attributes cannot be parsed back.
+     */
+    private CSVRecord toRecord(List<String> values) throws IOException {
+        return parse(CSVFormat.DEFAULT.format(values.toArray()));
+    }
+
+    /**
+     * Copies an entity by encoding it as a record and decoding it back.
+     *
+     * @param entity the entity.
+     * @return an equal entity sharing nothing mutable with the given one.
+     */
+    S copy(S entity) {
+        try {
+            return ofRecord(toRecord(asRecord(entity)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses a single line of the repository file.
+     *
+     * @param line the line.
+     * @return the line's record.
+     * @throws IOException if the line cannot be parsed.
+     */
+    private CSVRecord parse(String line) throws IOException {
+        return CSVParser.parse(line, CSV_PARSE_FORMAT).getRecords().get(0);
+    }
+
+    /**
+     * Retrieves a list of the entity's attributes as strings.
+     *
+     * @param entity the entity.
+     * @return the list of the entity's attributes as strings.
+     */
+    public abstract List<String> asRecord(S entity);
+
+    /**
+     * Retrieves the id of the provided entity.
+     *
+     * @param entity the entity.
+     * @return the id of the provided entity.
+     */
+    abstract ID getId(S entity);
+
+    /**
+     * Generates an entity object from a csv record.
+     *
+     * @param record the given record.
+     * @return the entity.
+     */
+    public abstract S ofRecord(CSVRecord record);
+
+    /**
+     * A write queued behind the write lock.
+     *
+     * @param <T> the type of the write's result.
+     */
+    private static final class PendingWrite<T> {
+        /**
+         * The batch to log.
+         */
+        private final Collection<List<String>> rows;
+        /**
+         * Applies the batch once logged.
+         */
+        private final BatchApplier<T> apply;
+        /**
+         * The run of the write, credited with the batch's I/O. Null if none.
+         */
+        private final RepositoryMetrics.Timer timer;
+        /**
+         * The write's result, the failed one until the batch is applied.
+         */
+        private T result;
+        /**
+         * Whether the write was committed or failed.
+         */
+        private boolean done;
+
+        /**
+         * @param rows   the batch to log.
+         * @param apply  applies the batch once logged.
+         * @param failed the result if the batch isn't applied.
+         * @param timer  the run of the write, null if none.
+         */
+        private PendingWrite(Collection<List<String>> rows, BatchApplier<T> apply, T failed,
+                             RepositoryMetrics.Timer timer) {
+            this.rows = rows;
+            this.apply = apply;
+            this.result = failed;
+            this.timer = timer;
+        }
+
+        /**
+         * Applies the logged batch, the result is only set once it's fully applied.
+         *
+         * @throws IOException if the batch cannot be applied.
+         */
+        private void apply() throws IOException {
+            result = apply.apply();
+        }
+    }
+
+    /**
+     * Applies a logged batch to the repository file, the cache and the indexes.
+     *
+     * @param <T> the type of the write's result.
+     */
+    private interface BatchApplier<T> {
+        /**
+         * @return the write's result.
+         * @throws IOException if the batch cannot be applied.
+         */
+        T apply() throws IOException;
+    }
+
+    /**
+     * Reads something out of the current row of a cursor.
+     *
+     * @param <T> the type of what is read.
+     */
+    private interface RowReader<T> {
+        /**
+         * @param cursor a cursor positioned on a row.
+         * @return what is read from the row.
+         * @throws IOException if the row cannot be read.
+         */
+        T read(RowCursor cursor) throws IOException;
+    }
 }
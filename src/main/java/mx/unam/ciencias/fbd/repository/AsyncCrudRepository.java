@@ -0,0 +1,76 @@
+package mx.unam.ciencias.fbd.repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non blocking companion of {@link CrudRepository}: every operation runs in the background and its result is delivered
+ * through a {@link CompletableFuture}, so callers can overlap operations over several repositories.
+ *
+ * @param <T>  The type of the resources served by this repository.
+ * @param <ID> The type of the identifier of the server resources.
+ */
+public interface AsyncCrudRepository<T, ID> {
+    /**
+     * Creates or saves an entity to the repository.
+     *
+     * @param entity the entity that will be persisted, must not be null.
+     * @return the saved entity, or null if it couldn't be persisted.
+     * @see CrudRepository#save(Object)
+     */
+    CompletableFuture<T> saveAsync(T entity);
+
+    /**
+     * Creates or saves a batch of entities to the repository in a single operation.
+     *
+     * @param entities the entities that will be persisted, none of them may be null.
+     * @return the saved entities or an empty list if the batch couldn't be persisted.
+     * @see CrudRepository#saveAll(Iterable)
+     */
+    CompletableFuture<List<T>> saveAllAsync(Iterable<T> entities);
+
+    /**
+     * Retrieves an entity from the repository using its id.
+     *
+     * @param id the entity's id, must not be null.
+     * @return the entity with a matching id or {@link Optional#empty()} if no such entity exists.
+     * @see CrudRepository#findById(Object)
+     */
+    CompletableFuture<Optional<T>> findByIdAsync(ID id);
+
+    /**
+     * Retrieves all the persisted entities. Unlike {@link CrudRepository#findAll()} the entities are collected before
+     * the future completes, nothing is left open.
+     *
+     * @return all the persisted entities, unmodifiable.
+     */
+    CompletableFuture<List<T>> findAllAsync();
+
+    /**
+     * Retrieves some columns of every persisted entity, collected before the future completes.
+     *
+     * @param columns columns of the repository's schema.
+     * @return the values of the given columns of every entity, unmodifiable.
+     * @see CrudRepository#findAllColumns(Enum[])
+     */
+    CompletableFuture<List<String[]>> findAllColumnsAsync(Enum<?>... columns);
+
+    /**
+     * Deletes an entity from the repository using its id.
+     *
+     * @param id the entity's id, must not be null.
+     * @return whether the entity existed.
+     * @see CrudRepository#deleteById(Object)
+     */
+    CompletableFuture<Boolean> deleteByIdAsync(ID id);
+
+    /**
+     * Deletes a batch of entities from the repository in a single operation.
+     *
+     * @param ids the entities' ids, must not be null.
+     * @return the number of deleted entities.
+     * @see CrudRepository#deleteAllById(Iterable)
+     */
+    CompletableFuture<Integer> deleteAllByIdAsync(Iterable<ID> ids);
+}
@@ -0,0 +1,197 @@
+package mx.unam.ciencias.fbd.repository;
+
+import mx.unam.ciencias.fbd.util.Validate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the operations of a repository on a shared I/O executor. The executor has a fixed number of threads, given by
+ * the {@code fbd.repository.async.threads} system property, and a bounded queue, given by
+ * {@code fbd.repository.async.queue}. Once the queue is full, operations fail right away with a
+ * {@link RejectedExecutionException} through their future, so the blocking I/O never runs on the caller's thread.
+ * <p>
+ * Identical reads are coalesced: a lookup of an id, or a full read, that is still waiting in the queue is shared with
+ * every caller asking for the same thing in the meantime. Each caller gets its own copies of the entities when the
+ * repository can copy them, as CSV repositories can, otherwise they share the same instances and must not change
+ * them. A read that already started is never shared, so every caller sees the writes that completed before it asked.
+ *
+ * @param <S>  The type of the resources served by the repository.
+ * @param <ID> The type of the identifier of the served resources.
+ */
+public final class AsyncRepository<S, ID> implements AsyncCrudRepository<S, ID> {
+    /**
+     * Number of I/O threads.
+     */
+    private static final int THREADS = Integer.getInteger("fbd.repository.async.threads", 4);
+    /**
+     * Number of operations that may wait for an I/O thread.
+     */
+    private static final int QUEUE = Integer.getInteger("fbd.repository.async.queue", 1024);
+    /**
+     * Executor shared by every asynchronous repository.
+     */
+    private static final ExecutorService IO_EXECUTOR;
+    /**
+     * Key of the pending full read.
+     */
+    private static final Object FIND_ALL = new Object();
+
+    static {
+        AtomicInteger threads = new AtomicInteger();
+        IO_EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE), task -> {
+            Thread thread = new Thread(task, "fbd-io-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * The blocking repository.
+     */
+    private final CrudRepository<S, ID> repository;
+    /**
+     * Copies an entity for each caller of a coalesced read.
+     */
+    private final UnaryOperator<S> copy;
+    /**
+     * Reads waiting in the queue, keyed by id or {@link #FIND_ALL}.
+     */
+    private final Map<Object, CompletableFuture<?>> pendingReads = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps a blocking repository.
+     *
+     * @param repository the repository.
+     */
+    @SuppressWarnings("unchecked")
+    public AsyncRepository(CrudRepository<S, ID> repository) {
+        Validate.notNull(repository);
+        this.repository = repository;
+        this.copy = repository instanceof AbstractCSVCrudRepository
+                ? ((AbstractCSVCrudRepository<S, ID>) repository)::copy
+                : UnaryOperator.identity();
+    }
+
+    @Override
+    public CompletableFuture<S> saveAsync(S entity) {
+        Validate.notNull(entity);
+        return supply(() -> repository.save(entity));
+    }
+
+    @Override
+    public CompletableFuture<List<S>> saveAllAsync(Iterable<S> entities) {
+        Validate.notNull(entities);
+        // the caller may change its collection while the batch waits
+        List<S> batch = new ArrayList<>();
+        entities.forEach(batch::add);
+        return supply(() -> repository.saveAll(batch));
+    }
+
+    @Override
+    public CompletableFuture<Optional<S>> findByIdAsync(ID id) {
+        Validate.notNull(id);
+        return coalesce(id, () -> repository.findById(id), found -> found.map(copy));
+    }
+
+    @Override
+    public CompletableFuture<List<S>> findAllAsync() {
+        return coalesce(FIND_ALL, () -> {
+            try (Stream<S> all = repository.findAll()) {
+                return Collections.unmodifiableList(all.collect(Collectors.toList()));
+            }
+        }, all -> Collections.unmodifiableList(all.stream().map(copy).collect(Collectors.toList())));
+    }
+
+    @Override
+    public CompletableFuture<List<String[]>> findAllColumnsAsync(Enum<?>... columns) {
+        Validate.notNull((Object[]) columns);
+        Enum<?>[] projection = columns.clone();
+        return supply(() -> {
+            try (Stream<String[]> all = repository.findAllColumns(projection)) {
+                return Collections.unmodifiableList(all.collect(Collectors.toList()));
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteByIdAsync(ID id) {
+        Validate.notNull(id);
+        return supply(() -> repository.deleteById(id));
+    }
+
+    @Override
+    public CompletableFuture<Integer> deleteAllByIdAsync(Iterable<ID> ids) {
+        Validate.notNull(ids);
+        List<ID> batch = new ArrayList<>();
+        ids.forEach(batch::add);
+        return supply(() -> repository.deleteAllById(batch));
+    }
+
+    /**
+     * Runs an operation on the I/O executor.
+     *
+     * @param operation the operation.
+     * @param <T>       the type of the operation's result.
+     * @return the operation's result, failed with a {@link RejectedExecutionException} if the queue is full.
+     */
+    private static <T> CompletableFuture<T> supply(Supplier<T> operation) {
+        try {
+            return CompletableFuture.supplyAsync(operation, IO_EXECUTOR);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    /**
+     * Queues a read unless an identical one is already waiting, in which case its result is shared.
+     *
+     * @param key   what the read looks for.
+     * @param read  the read.
+     * @param share copies the read's result for a caller that joined it.
+     * @param <T>   the type of the read's result.
+     * @return the read's result, each caller gets its own future.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> coalesce(Object key, Supplier<T> read, UnaryOperator<T> share) {
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> pending = (CompletableFuture<T>) pendingReads.putIfAbsent(key, created);
+        if (pending != null)
+            return pending.thenApply(share);
+        try {
+            IO_EXECUTOR.execute(() -> {
+                // callers arriving from now on may have seen writes this read would miss
+                pendingReads.remove(key, created);
+                try {
+                    created.complete(read.get());
+                } catch (RuntimeException e) {
+                    created.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // callers that joined in the meantime fail along
+            pendingReads.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created.thenApply(Function.identity());
+    }
+}
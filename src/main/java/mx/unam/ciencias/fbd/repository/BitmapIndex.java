@@ -0,0 +1,128 @@
+package mx.unam.ciencias.fbd.repository;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bitmap index over columns holding enum constants. Every live record takes a slot, a small integer, and every value
+ * of every indexed column keeps a bitmap of the slots of the records holding it, so filters combine with bitwise
+ * operations and are counted without touching the records. Slots freed by deletions are reused, which keeps the
+ * bitmaps dense; with only a handful of values per column a plain bitmap is then as small as a compressed one.
+ */
+final class BitmapIndex implements RecordIndex {
+    /**
+     * Position in the schema of every indexed column, by name.
+     */
+    private final Map<String, Integer> columns = new LinkedHashMap<>();
+    /**
+     * Slots of the records holding every value, by column name and value.
+     */
+    private final Map<String, Map<String, BitSet>> bitmaps = new HashMap<>();
+    /**
+     * Slot of every indexed record, by id.
+     */
+    private final Map<String, Integer> slots = new HashMap<>();
+    /**
+     * Id of the record in every slot, null for free slots.
+     */
+    private final List<String> ids = new ArrayList<>();
+    /**
+     * Slots holding a record.
+     */
+    private final BitSet live = new BitSet();
+
+    /**
+     * Indexes a column, must be called before any record is indexed.
+     *
+     * @param column the column.
+     * @param values the enum whose constants the column holds.
+     * @param <E>    the type of the column's values.
+     */
+    <E extends Enum<E>> void addColumn(Enum<?> column, Class<E> values) {
+        Map<String, BitSet> columnBitmaps = new HashMap<>();
+        for (E value : values.getEnumConstants())
+            columnBitmaps.put(value.name(), new BitSet());
+        columns.put(column.name(), column.ordinal());
+        bitmaps.put(column.name(), columnBitmaps);
+    }
+
+    @Override
+    public void clear() {
+        slots.clear();
+        ids.clear();
+        live.clear();
+        bitmaps.values().forEach(columnBitmaps -> columnBitmaps.values().forEach(BitSet::clear));
+    }
+
+    @Override
+    public void put(String id, CSVRecord record) {
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            slot = live.nextClearBit(0);
+            slots.put(id, slot);
+            if (slot == ids.size())
+                ids.add(id);
+            else
+                ids.set(slot, id);
+            live.set(slot);
+        }
+        for (Map.Entry<String, Integer> column : columns.entrySet()) {
+            Map<String, BitSet> columnBitmaps = bitmaps.get(column.getKey());
+            for (BitSet bitmap : columnBitmaps.values())
+                bitmap.clear(slot);
+            BitSet bitmap = columnBitmaps.get(record.get(column.getValue()));
+            if (bitmap != null)
+                bitmap.set(slot);
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        Integer slot = slots.remove(id);
+        if (slot == null)
+            return;
+        live.clear(slot);
+        ids.set(slot, null);
+        bitmaps.values().forEach(columnBitmaps -> columnBitmaps.values().forEach(bitmap -> bitmap.clear(slot)));
+    }
+
+    /**
+     * @param column the name of an indexed column.
+     * @param value  one of the column's values.
+     * @return a copy of the slots of the records holding the value.
+     * @throws IllegalArgumentException if the column isn't indexed or the value isn't one of its values.
+     */
+    BitSet get(String column, String value) {
+        Map<String, BitSet> columnBitmaps = bitmaps.get(column);
+        if (columnBitmaps == null)
+            throw new IllegalArgumentException("Column " + column + " has no bitmap index");
+        BitSet bitmap = columnBitmaps.get(value);
+        if (bitmap == null)
+            throw new IllegalArgumentException("Unknown value " + value + " for column " + column);
+        return (BitSet) bitmap.clone();
+    }
+
+    /**
+     * @return a copy of the slots holding a record.
+     */
+    BitSet all() {
+        return (BitSet) live.clone();
+    }
+
+    /**
+     * @param slots a set of slots.
+     * @return the ids of the records in the given slots, in slot order.
+     */
+    List<String> ids(BitSet slots) {
+        List<String> result = new ArrayList<>(slots.cardinality());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1))
+            result.add(ids.get(slot));
+        return result;
+    }
+}
@@ -0,0 +1,245 @@
+package mx.unam.ciencias.fbd.repository;
+
+import mx.unam.ciencias.fbd.util.Validate;
+import org.apache.commons.csv.CSVRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Conjunction of conditions over the raw text of the columns of a repository's schema, see
+ * {@link AbstractCSVCrudRepository#findAll(ColumnFilter)}. Conditions are tested on the fields of every row as they
+ * are stored, so rows read from the file are only decoded and turned into entities if they match.
+ * <p>
+ * Values are compared by their text, as given by {@code toString()}. Ranges compare it character by character, which
+ * only follows the values' own order for fixed width values like ISO dates.
+ */
+public final class ColumnFilter {
+    /**
+     * The schema of the filtered columns.
+     */
+    private final Class<?> schema;
+    /**
+     * The conditions, all of which must hold.
+     */
+    private final List<Condition> conditions;
+
+    /**
+     * @param schema     the schema of the filtered columns.
+     * @param conditions the conditions.
+     */
+    private ColumnFilter(Class<?> schema, List<Condition> conditions) {
+        this.schema = schema;
+        this.conditions = conditions;
+    }
+
+    /**
+     * @param column a column of a repository's schema.
+     * @param value  the value.
+     * @return a filter matching the records whose column holds the given value.
+     */
+    public static ColumnFilter equalTo(Enum<?> column, Object value) {
+        Validate.notNull(column, value);
+        byte[] encoded = encode(value);
+        String text = value.toString();
+        return of(column, new Condition(column.ordinal()) {
+            @Override
+            boolean test(RowCursor row) {
+                return row.fieldEquals(column, encoded);
+            }
+
+            @Override
+            boolean test(String field) {
+                return field.equals(text);
+            }
+        });
+    }
+
+    /**
+     * @param column a column of a repository's schema.
+     * @param values the values.
+     * @return a filter matching the records whose column holds any of the given values.
+     */
+    public static ColumnFilter in(Enum<?> column, Iterable<?> values) {
+        Validate.notNull(column, values);
+        List<byte[]> encoded = new ArrayList<>();
+        Set<String> texts = new HashSet<>();
+        for (Object value : values) {
+            Validate.notNull(value);
+            if (texts.add(value.toString()))
+                encoded.add(encode(value));
+        }
+        return of(column, new Condition(column.ordinal()) {
+            @Override
+            boolean test(RowCursor row) {
+                for (byte[] value : encoded)
+                    if (row.fieldEquals(column, value))
+                        return true;
+                return false;
+            }
+
+            @Override
+            boolean test(String field) {
+                return texts.contains(field);
+            }
+        });
+    }
+
+    /**
+     * @param column a column of a repository's schema.
+     * @param from   the lowest value, null for no lower bound.
+     * @param to     the highest value, null for no upper bound.
+     * @return a filter matching the records whose column holds a value within the given ones, both included.
+     */
+    public static ColumnFilter between(Enum<?> column, Object from, Object to) {
+        Validate.notNull(column);
+        byte[] low = from == null ? null : encode(from);
+        byte[] high = to == null ? null : encode(to);
+        return of(column, new Condition(column.ordinal()) {
+            @Override
+            boolean test(RowCursor row) {
+                return row.hasField(column) && (low == null || row.compareField(column, low) >= 0)
+                        && (high == null || row.compareField(column, high) <= 0);
+            }
+
+            @Override
+            boolean test(String field) {
+                byte[] value = field.getBytes(StandardCharsets.UTF_8);
+                return (low == null || compare(value, low) >= 0) && (high == null || compare(value, high) <= 0);
+            }
+        });
+    }
+
+    /**
+     * @param column a column of a repository's schema.
+     * @param prefix the beginning of the value.
+     * @return a filter matching the records whose column holds a value starting with the given text.
+     */
+    public static ColumnFilter startsWith(Enum<?> column, String prefix) {
+        Validate.notNull(column, prefix);
+        byte[] encoded = encode(prefix);
+        return of(column, new Condition(column.ordinal()) {
+            @Override
+            boolean test(RowCursor row) {
+                return row.fieldStartsWith(column, encoded);
+            }
+
+            @Override
+            boolean test(String field) {
+                return field.startsWith(prefix);
+            }
+        });
+    }
+
+    /**
+     * @param other another filter over the same schema.
+     * @return a filter matching the records both filters match.
+     * @throws IllegalArgumentException if the filters are over different schemas.
+     */
+    public ColumnFilter and(ColumnFilter other) {
+        Validate.notNull(other);
+        if (other.schema != schema)
+            throw new IllegalArgumentException("Cannot combine filters over " + schema.getCanonicalName() + " and "
+                    + other.schema.getCanonicalName());
+        List<Condition> both = new ArrayList<>(conditions);
+        both.addAll(other.conditions);
+        return new ColumnFilter(schema, both);
+    }
+
+    /**
+     * @return the schema of the filtered columns.
+     */
+    Class<?> getSchema() {
+        return schema;
+    }
+
+    /**
+     * @param row a raw row.
+     * @return whether the row matches, only the filtered fields are looked at.
+     */
+    boolean test(RowCursor row) {
+        for (Condition condition : conditions)
+            if (!condition.test(row))
+                return false;
+        return true;
+    }
+
+    /**
+     * @param record a parsed record.
+     * @return whether the record matches.
+     */
+    boolean test(CSVRecord record) {
+        for (Condition condition : conditions)
+            if (condition.column >= record.size() || !condition.test(record.get(condition.column)))
+                return false;
+        return true;
+    }
+
+    /**
+     * @param column    the filtered column.
+     * @param condition the condition over it.
+     * @return a filter with the single given condition.
+     */
+    private static ColumnFilter of(Enum<?> column, Condition condition) {
+        List<Condition> conditions = new ArrayList<>();
+        conditions.add(condition);
+        return new ColumnFilter(column.getDeclaringClass(), conditions);
+    }
+
+    /**
+     * @param value a value.
+     * @return its text encoded like the repository files.
+     */
+    private static byte[] encode(Object value) {
+        return value.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares two encoded values byte by byte, unsigned, which is the order of their characters.
+     *
+     * @param a a value.
+     * @param b another value.
+     * @return a negative number, zero or a positive number if the first value is lower, equal or greater.
+     */
+    static int compare(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (difference != 0)
+                return difference;
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * A condition over a single column, tested on raw rows and on parsed records alike.
+     */
+    private abstract static class Condition {
+        /**
+         * Position of the column in the schema.
+         */
+        final int column;
+
+        /**
+         * @param column position of the column in the schema.
+         */
+        Condition(int column) {
+            this.column = column;
+        }
+
+        /**
+         * @param row a raw row.
+         * @return whether the row's field holds.
+         */
+        abstract boolean test(RowCursor row);
+
+        /**
+         * @param field a decoded field.
+         * @return whether it holds.
+         */
+        abstract boolean test(String field);
+    }
+}
@@ -0,0 +1,81 @@
+package mx.unam.ciencias.fbd.repository;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the values of a single column to the ids of the records holding them. Empty values are not indexed.
+ */
+final class ColumnIndex implements RecordIndex {
+    /**
+     * Position of the indexed column in the schema.
+     */
+    private final int column;
+    /**
+     * Ids of the records holding every value.
+     */
+    private final Map<String, Set<String>> ids = new HashMap<>();
+    /**
+     * Indexed value of every record, used to find a record's entry when it changes.
+     */
+    private final Map<String, String> values = new HashMap<>();
+
+    /**
+     * Creates an empty index.
+     *
+     * @param column the indexed column.
+     */
+    ColumnIndex(Enum<?> column) {
+        this.column = column.ordinal();
+    }
+
+    @Override
+    public void clear() {
+        ids.clear();
+        values.clear();
+    }
+
+    @Override
+    public void put(String id, CSVRecord record) {
+        remove(id);
+        String value = record.get(column);
+        if (!value.isEmpty()) {
+            values.put(id, value);
+            ids.computeIfAbsent(value, key -> new LinkedHashSet<>()).add(id);
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        String value = values.remove(id);
+        if (value != null) {
+            Set<String> holders = ids.get(value);
+            holders.remove(id);
+            if (holders.isEmpty())
+                ids.remove(value);
+        }
+    }
+
+    /**
+     * @param value a column value.
+     * @return a copy of the ids of the records holding the given value.
+     */
+    Set<String> get(String value) {
+        Set<String> holders = ids.get(value);
+        return holders == null ? Collections.emptySet() : new LinkedHashSet<>(holders);
+    }
+
+    /**
+     * @param value a column value.
+     * @return the number of records holding the given value.
+     */
+    int count(String value) {
+        Set<String> holders = ids.get(value);
+        return holders == null ? 0 : holders.size();
+    }
+}
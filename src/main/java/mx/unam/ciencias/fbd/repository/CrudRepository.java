@@ -1,5 +1,6 @@
 package mx.unam.ciencias.fbd.repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -12,6 +13,14 @@ public interface CrudRepository<T, ID> {
      */
     T save(T entity);
 
+    /**
+     * Creates or saves a batch of entities to the repository in a single operation.
+     *
+     * @param entities the entities that will be persisted, none of them may be null.
+     * @return the saved entities or an empty list if the batch couldn't be persisted.
+     */
+    List<T> saveAll(Iterable<T> entities);
+
     /**
      * Retrieves an entity from the repository using its id.
      *
@@ -21,14 +30,88 @@ public interface CrudRepository<T, ID> {
     Optional<T> findById(ID id);
 
     /**
+     * Retrieves all the persisted entities. The stream may keep the underlying storage open until it is closed, callers
+     * should close it once done, e.g. with a try-with-resources statement.
+     *
      * @return all the persisted entities.
      */
     Stream<T> findAll();
 
+    /**
+     * Retrieves a page of the persisted entities in the order {@link #findAll()} returns them, resuming after a given
+     * entity, so a listing can be walked with the id of the last entity of each page as the cursor of the next. The
+     * stream must be closed like the one of {@link #findAll()}.
+     *
+     * @param after the id of the entity preceding the page, or null to start from the first entity.
+     * @param limit the maximum number of entities in the page, must not be negative.
+     * @return the page, empty if no entity has the given id.
+     */
+    Stream<T> findAllAfter(ID after, long limit);
+
+    /**
+     * Retrieves the entities matching a filter over enum columns. The stream must be closed like the one of
+     * {@link #findAll()}.
+     *
+     * @param filter the filter, must not be null.
+     * @return the matching entities.
+     * @throws IllegalArgumentException if the filter names a column the repository can't filter on, or a value the
+     *                                  column can't hold.
+     */
+    Stream<T> findAll(EnumFilter filter);
+
+    /**
+     * Retrieves the entities whose columns match a filter over their raw values. The stream must be closed like the
+     * one of {@link #findAll()}.
+     *
+     * @param filter the filter, must not be null.
+     * @return the matching entities.
+     * @throws IllegalArgumentException if the filter is over another schema.
+     */
+    Stream<T> findAll(ColumnFilter filter);
+
+    /**
+     * Retrieves some columns of every persisted entity, without building the entities. The stream must be closed like
+     * the one of {@link #findAll()}.
+     *
+     * @param columns columns of the repository's schema.
+     * @return the values of the given columns of every entity, in the same order, in the order of {@link #findAll()}.
+     * @throws IllegalArgumentException if no column is given or a column is from another schema.
+     */
+    Stream<String[]> findAllColumns(Enum<?>... columns);
+
+    /**
+     * Retrieves some columns of the entities whose columns match a filter, without building the entities. The stream
+     * must be closed like the one of {@link #findAll()}.
+     *
+     * @param filter  the filter, null to read every entity.
+     * @param columns columns of the repository's schema.
+     * @return the values of the given columns of every matching entity, in the same order.
+     * @throws IllegalArgumentException if no column is given or the filter or a column is from another schema.
+     */
+    Stream<String[]> findAllColumns(ColumnFilter filter, Enum<?>... columns);
+
+    /**
+     * Counts the entities matching a filter over enum columns without retrieving them.
+     *
+     * @param filter the filter, must not be null.
+     * @return the number of matching entities.
+     * @throws IllegalArgumentException if the filter names a column the repository can't filter on, or a value the
+     *                                  column can't hold.
+     */
+    long count(EnumFilter filter);
+
     /**
      * Deletes an entity from the repository using its id.
      *
      * @param id the entity's id, must not be null.
      */
     boolean deleteById(ID id);
+
+    /**
+     * Deletes a batch of entities from the repository in a single operation.
+     *
+     * @param ids the entities' ids, must not be null.
+     * @return the number of deleted entities.
+     */
+    int deleteAllById(Iterable<ID> ids);
 }
@@ -0,0 +1,87 @@
+package mx.unam.ciencias.fbd.repository;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Orders the records by a column holding ISO dates, so the records within a range of dates are found in
+ * O(log n + k). Empty or malformed dates are not indexed.
+ */
+final class DateIndex implements RecordIndex {
+    /**
+     * Position of the indexed column in the schema.
+     */
+    private final int column;
+    /**
+     * Ids of the records holding every date, keyed by epoch day.
+     */
+    private final NavigableMap<Long, Set<String>> ids = new TreeMap<>();
+    /**
+     * Indexed epoch day of every record, used to find a record's entry when it changes.
+     */
+    private final Map<String, Long> days = new HashMap<>();
+
+    /**
+     * Creates an empty index.
+     *
+     * @param column the indexed column.
+     */
+    DateIndex(Enum<?> column) {
+        this.column = column.ordinal();
+    }
+
+    @Override
+    public void clear() {
+        ids.clear();
+        days.clear();
+    }
+
+    @Override
+    public void put(String id, CSVRecord record) {
+        remove(id);
+        long day;
+        try {
+            day = LocalDate.parse(record.get(column)).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return;
+        }
+        days.put(id, day);
+        ids.computeIfAbsent(day, key -> new LinkedHashSet<>()).add(id);
+    }
+
+    @Override
+    public void remove(String id) {
+        Long day = days.remove(id);
+        if (day != null) {
+            Set<String> holders = ids.get(day);
+            holders.remove(id);
+            if (holders.isEmpty())
+                ids.remove(day);
+        }
+    }
+
+    /**
+     * @param from the first date of the range.
+     * @param to   the last date of the range.
+     * @return the ids of the records holding a date within the range, ordered by date.
+     */
+    List<String> between(LocalDate from, LocalDate to) {
+        if (from.isAfter(to))
+            return Collections.emptyList();
+        List<String> result = new ArrayList<>();
+        for (Set<String> holders : ids.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values())
+            result.addAll(holders);
+        return result;
+    }
+}
@@ -0,0 +1,234 @@
+package mx.unam.ciencias.fbd.repository;
+
+import mx.unam.ciencias.fbd.util.Validate;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Boolean combination of conditions of the form {@code column = value} over columns holding enum constants. Filters
+ * are answered by the bitmap indexes of a repository, see {@link AbstractCSVCrudRepository#findAll(EnumFilter)} and
+ * {@link AbstractCSVCrudRepository#count(EnumFilter)}; columns and values are given by name and only checked then.
+ * <p>
+ * Filters can also be written as text, like {@code ROLE=LIEUTENANT AND NOT (SEX=MALE OR SEX=FEMALE)}, see
+ * {@link #parse(String)}. {@code NOT} binds tighter than {@code AND}, which binds tighter than {@code OR}.
+ */
+public final class EnumFilter {
+    /**
+     * Computes the slots of the matching records.
+     */
+    private final Function<BitmapIndex, BitSet> evaluation;
+    /**
+     * The filter as text.
+     */
+    private final String text;
+
+    /**
+     * @param evaluation computes the slots of the matching records.
+     * @param text       the filter as text.
+     */
+    private EnumFilter(Function<BitmapIndex, BitSet> evaluation, String text) {
+        this.evaluation = evaluation;
+        this.text = text;
+    }
+
+    /**
+     * @param column a column of a repository's schema.
+     * @param value  the value.
+     * @return a filter matching the records whose column holds the given value.
+     */
+    public static EnumFilter is(Enum<?> column, Enum<?> value) {
+        Validate.notNull(column, value);
+        return is(column.name(), value.name());
+    }
+
+    /**
+     * @param column the name of a column.
+     * @param value  the name of the value.
+     * @return a filter matching the records whose column holds the given value.
+     */
+    public static EnumFilter is(String column, String value) {
+        Validate.notEmpty(column, value);
+        return new EnumFilter(index -> index.get(column, value), column + "=" + value);
+    }
+
+    /**
+     * @param other another filter.
+     * @return a filter matching the records both filters match.
+     */
+    public EnumFilter and(EnumFilter other) {
+        Validate.notNull(other);
+        return new EnumFilter(index -> {
+            BitSet slots = evaluate(index);
+            slots.and(other.evaluate(index));
+            return slots;
+        }, "(" + this + " AND " + other + ")");
+    }
+
+    /**
+     * @param other another filter.
+     * @return a filter matching the records either filter matches.
+     */
+    public EnumFilter or(EnumFilter other) {
+        Validate.notNull(other);
+        return new EnumFilter(index -> {
+            BitSet slots = evaluate(index);
+            slots.or(other.evaluate(index));
+            return slots;
+        }, "(" + this + " OR " + other + ")");
+    }
+
+    /**
+     * @return a filter matching the records this filter doesn't match.
+     */
+    public EnumFilter not() {
+        return new EnumFilter(index -> {
+            BitSet slots = index.all();
+            slots.andNot(evaluate(index));
+            return slots;
+        }, "NOT " + this);
+    }
+
+    /**
+     * Reads a filter written as text: conditions {@code column=value} combined with {@code AND}, {@code OR},
+     * {@code NOT} and parentheses. Names and keywords are case insensitive.
+     *
+     * @param text the filter.
+     * @return the filter.
+     * @throws IllegalArgumentException if the text isn't a filter.
+     */
+    public static EnumFilter parse(String text) {
+        Validate.notNull(text);
+        Parser parser = new Parser(text);
+        EnumFilter filter = parser.or();
+        if (parser.position < parser.tokens.size())
+            throw new IllegalArgumentException("Unexpected " + parser.tokens.get(parser.position));
+        return filter;
+    }
+
+    /**
+     * @param index the bitmap index of a repository.
+     * @return the slots of the matching records.
+     * @throws IllegalArgumentException if a column isn't indexed or a value isn't one of its values.
+     */
+    BitSet evaluate(BitmapIndex index) {
+        return evaluation.apply(index);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Recursive descent parser over the tokens of a filter.
+     */
+    private static final class Parser {
+        /**
+         * Words, upper cased, and the symbols {@code =}, {@code (} and {@code )}.
+         */
+        private final List<String> tokens = new ArrayList<>();
+        /**
+         * Position of the next token.
+         */
+        private int position;
+
+        /**
+         * @param text the filter.
+         */
+        private Parser(String text) {
+            StringBuilder word = new StringBuilder();
+            for (int i = 0; i <= text.length(); i++) {
+                char c = i == text.length() ? ' ' : text.charAt(i);
+                if (Character.isWhitespace(c) || c == '=' || c == '(' || c == ')') {
+                    if (word.length() > 0)
+                        tokens.add(word.toString().toUpperCase(Locale.ROOT));
+                    word.setLength(0);
+                    if (!Character.isWhitespace(c))
+                        tokens.add(String.valueOf(c));
+                } else {
+                    word.append(c);
+                }
+            }
+        }
+
+        /**
+         * @return the disjunction at the current position.
+         */
+        private EnumFilter or() {
+            EnumFilter filter = and();
+            while (consume("OR"))
+                filter = filter.or(and());
+            return filter;
+        }
+
+        /**
+         * @return the conjunction at the current position.
+         */
+        private EnumFilter and() {
+            EnumFilter filter = not();
+            while (consume("AND"))
+                filter = filter.and(not());
+            return filter;
+        }
+
+        /**
+         * @return the negation, parenthesized filter or condition at the current position.
+         */
+        private EnumFilter not() {
+            if (consume("NOT"))
+                return not().not();
+            if (consume("(")) {
+                EnumFilter filter = or();
+                expect(")");
+                return filter;
+            }
+            String column = name();
+            expect("=");
+            return is(column, name());
+        }
+
+        /**
+         * @return the column or value name at the current position.
+         */
+        private String name() {
+            String token = next();
+            if (token.equals("=") || token.equals("(") || token.equals(")"))
+                throw new IllegalArgumentException("Expected a name but found " + token);
+            return token;
+        }
+
+        /**
+         * @param token the token that must come next, it's consumed.
+         */
+        private void expect(String token) {
+            String found = next();
+            if (!found.equals(token))
+                throw new IllegalArgumentException("Expected " + token + " but found " + found);
+        }
+
+        /**
+         * @param token a token.
+         * @return whether the next token was the given one, in which case it's consumed.
+         */
+        private boolean consume(String token) {
+            if (position < tokens.size() && tokens.get(position).equals(token)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return the next token, consumed.
+         */
+        private String next() {
+            if (position == tokens.size())
+                throw new IllegalArgumentException("Unexpected end of filter");
+            return tokens.get(position++);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package mx.unam.ciencias.fbd.repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+/**
+ * Snapshot of a file's identity, modification time and size, along with the number of times it was rewritten. Used to
+ * detect changes made to a repository file behind the repository's back: modification times are too coarse and file
+ * identities are reused too quickly to tell rewrites apart on their own.
+ */
+final class FileStamp {
+    /**
+     * Last modification time in milliseconds.
+     */
+    private final long lastModified;
+    /**
+     * File size in bytes.
+     */
+    private final long size;
+    /**
+     * Identity of the file on its file system, null if unavailable.
+     */
+    private final Object fileKey;
+    /**
+     * Number of times the file was rewritten.
+     */
+    private final long generation;
+
+    private FileStamp(long lastModified, long size, Object fileKey, long generation) {
+        this.lastModified = lastModified;
+        this.size = size;
+        this.fileKey = fileKey;
+        this.generation = generation;
+    }
+
+    /**
+     * Takes a snapshot of the given file's current state.
+     *
+     * @param file       the file.
+     * @param generation the number of times the file was rewritten.
+     * @return the file's stamp.
+     * @throws IOException if the file's attributes cannot be read.
+     */
+    static FileStamp of(Path file, long generation) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new FileStamp(attributes.lastModifiedTime().toMillis(), attributes.size(), attributes.fileKey(),
+                generation);
+    }
+
+    /**
+     * @return the file size in bytes when the snapshot was taken.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * @param earlier an earlier snapshot of the same path.
+     * @return whether the file is still the same one and only grew since then, as it does when rows are appended.
+     */
+    boolean grewFrom(FileStamp earlier) {
+        return generation == earlier.generation && fileKey != null && fileKey.equals(earlier.fileKey)
+                && size > earlier.size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FileStamp that = (FileStamp) o;
+        return lastModified == that.lastModified && size == that.size && Objects.equals(fileKey, that.fileKey)
+                && generation == that.generation;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lastModified, size, fileKey, generation);
+    }
+}
@@ -0,0 +1,22 @@
+package mx.unam.ciencias.fbd.repository;
+
+/**
+ * When the write-ahead log of a repository is forced to the storage device.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every write waits until its log entry is on the device. Writes that reach the log while it is being forced are
+     * committed together by the next force.
+     */
+    ALWAYS,
+    /**
+     * The log is forced in the background every few milliseconds, writes don't wait for it. A crash loses at most the
+     * writes of the last interval.
+     */
+    INTERVAL,
+    /**
+     * The log is never forced, the operating system writes it back whenever it sees fit. Only survives crashes of the
+     * process.
+     */
+    OS
+}
@@ -0,0 +1,201 @@
+package mx.unam.ciencias.fbd.repository;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Closure table over the tree defined by a column referencing the id of the parent record. Keeps the set of ancestors
+ * and the set of descendants of every record, so ancestry checks take constant time and listing a subtree takes time
+ * proportional to its size. Moving a record updates its whole subtree.
+ * <p>
+ * Links to records that aren't indexed are kept aside and resolved once such record is indexed. A link that would close
+ * a cycle is kept as well but the record is then treated as a root.
+ */
+final class HierarchyIndex implements RecordIndex {
+    /**
+     * Position of the column referencing the parent in the schema.
+     */
+    private final int column;
+    /**
+     * Parent of every indexed record, indexed or not.
+     */
+    private final Map<String, String> parents = new HashMap<>();
+    /**
+     * Children of every referenced parent, indexed or not.
+     */
+    private final Map<String, Set<String>> children = new HashMap<>();
+    /**
+     * Indexed ancestors of every indexed record.
+     */
+    private final Map<String, Set<String>> ancestors = new HashMap<>();
+    /**
+     * Descendants of every indexed record.
+     */
+    private final Map<String, Set<String>> descendants = new HashMap<>();
+
+    /**
+     * Creates an empty index.
+     *
+     * @param column the column referencing the parent.
+     */
+    HierarchyIndex(Enum<?> column) {
+        this.column = column.ordinal();
+    }
+
+    @Override
+    public void clear() {
+        parents.clear();
+        children.clear();
+        ancestors.clear();
+        descendants.clear();
+    }
+
+    @Override
+    public void put(String id, CSVRecord record) {
+        String parent = record.get(column);
+        parent = parent.isEmpty() ? null : parent;
+        if (ancestors.containsKey(id)) {
+            if (parent == null ? parents.get(id) == null : parent.equals(parents.get(id)))
+                return;
+            detach(id);
+            unlink(id);
+        } else {
+            ancestors.put(id, new LinkedHashSet<>());
+            descendants.put(id, new LinkedHashSet<>());
+            adopt(id);
+        }
+        if (parent != null) {
+            parents.put(id, parent);
+            children.computeIfAbsent(parent, key -> new LinkedHashSet<>()).add(id);
+            attach(id, parent);
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        if (!ancestors.containsKey(id))
+            return;
+        detach(id);
+        unlink(id);
+        for (String descendant : descendants.get(id))
+            ancestors.get(descendant).remove(id);
+        ancestors.remove(id);
+        descendants.remove(id);
+    }
+
+    /**
+     * @param id a record's id.
+     * @return a copy of the ids of every record under the given one at any depth, or an empty set if it isn't indexed.
+     */
+    Set<String> descendants(String id) {
+        Set<String> result = descendants.get(id);
+        return result == null ? Collections.emptySet() : new LinkedHashSet<>(result);
+    }
+
+    /**
+     * @param id a record's id.
+     * @return the number of indexed records above the given one, or -1 if it isn't indexed.
+     */
+    int depth(String id) {
+        Set<String> result = ancestors.get(id);
+        return result == null ? -1 : result.size();
+    }
+
+    /**
+     * @param ancestor   a record's id.
+     * @param descendant a record's id.
+     * @return whether the first record is above the second one at any depth.
+     */
+    boolean isAncestor(String ancestor, String descendant) {
+        Set<String> result = ancestors.get(descendant);
+        return result != null && result.contains(ancestor);
+    }
+
+    /**
+     * Links a newly indexed record with the subtrees of the children that were waiting for it.
+     *
+     * @param id the record's id.
+     */
+    private void adopt(String id) {
+        Set<String> waiting = children.get(id);
+        if (waiting == null)
+            return;
+        Set<String> subtree = descendants.get(id);
+        for (String child : waiting) {
+            subtree.add(child);
+            subtree.addAll(descendants.get(child));
+        }
+        for (String descendant : subtree)
+            ancestors.get(descendant).add(id);
+    }
+
+    /**
+     * Places the subtree of a record under its parent and the parent's ancestors, unless the parent isn't indexed or
+     * belongs to the subtree.
+     *
+     * @param id     the record's id.
+     * @param parent the parent's id.
+     */
+    private void attach(String id, String parent) {
+        if (!ancestors.containsKey(parent) || parent.equals(id) || descendants.get(id).contains(parent))
+            return;
+        List<String> above = new ArrayList<>();
+        above.add(parent);
+        above.addAll(ancestors.get(parent));
+        List<String> subtree = subtree(id);
+        for (String ancestor : above)
+            descendants.get(ancestor).addAll(subtree);
+        for (String member : subtree)
+            ancestors.get(member).addAll(above);
+    }
+
+    /**
+     * Removes the subtree of a record from under its current ancestors.
+     *
+     * @param id the record's id.
+     */
+    private void detach(String id) {
+        Set<String> above = ancestors.get(id);
+        if (above.isEmpty())
+            return;
+        List<String> subtree = subtree(id);
+        for (String ancestor : above)
+            descendants.get(ancestor).removeAll(subtree);
+        for (String descendant : descendants.get(id))
+            ancestors.get(descendant).removeAll(above);
+        above.clear();
+    }
+
+    /**
+     * Forgets the link between a record and its parent.
+     *
+     * @param id the record's id.
+     */
+    private void unlink(String id) {
+        String parent = parents.remove(id);
+        if (parent == null)
+            return;
+        Set<String> siblings = children.get(parent);
+        siblings.remove(id);
+        if (siblings.isEmpty())
+            children.remove(parent);
+    }
+
+    /**
+     * @param id an indexed record's id.
+     * @return the record's id followed by the ids of its descendants.
+     */
+    private List<String> subtree(String id) {
+        List<String> result = new ArrayList<>();
+        result.add(id);
+        result.addAll(descendants.get(id));
+        return result;
+    }
+}
@@ -0,0 +1,345 @@
+package mx.unam.ciencias.fbd.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Advisory lock shared by every process working on a repository file, held on a sidecar lock file since the repository
+ * file itself is replaced by rewrites. Readers share it and writers hold it alone.
+ * <p>
+ * File locks belong to the whole process and a process can't lock the same file twice, so every lock over the same
+ * file within the process shares its state: readers share a single shared lock, taken by the first of them and
+ * released by the last, and writers wait for the readers and writers of the process before taking the exclusive
+ * lock. New readers queue behind a waiting writer so that a stream of readers can't starve it. A thread must not
+ * request the lock again while holding it. While another process holds the lock, the thread taking it retries with a
+ * growing pause spent outside the state's monitor, so the process' other threads can still release theirs. Waiting
+ * for the lock gives up after a timeout.
+ * <p>
+ * The lock file also counts the rewrites of the repository file, so that processes can tell a rewrite from an append,
+ * and records how much of the write-ahead log has been applied, so that they can tell when another process died
+ * between logging a batch and applying it.
+ */
+final class InterProcessLock {
+    /**
+     * Longest pause between two attempts to take the lock, in milliseconds.
+     */
+    private static final long MAX_BACKOFF = 50;
+    /**
+     * Offset of the rewrite count in the lock file.
+     */
+    private static final long GENERATION = 0;
+    /**
+     * Offset of the applied size of the write-ahead log in the lock file.
+     */
+    private static final long APPLIED_LOG = Long.BYTES;
+    /**
+     * State of the lock files in use within the process, by canonical path.
+     */
+    private static final Map<Path, FileState> FILES = new HashMap<>();
+    /**
+     * Logger.
+     */
+    private final Logger LOGGER;
+    /**
+     * The lock file.
+     */
+    private final Path PATH;
+    /**
+     * State of the lock file, shared with every lock over the same file.
+     */
+    private final FileState STATE;
+    /**
+     * Milliseconds to wait for the lock before giving up.
+     */
+    private volatile long timeout;
+
+    /**
+     * Creates a lock over a file, the file is only created once the lock is first taken.
+     *
+     * @param path    the lock file.
+     * @param timeout milliseconds to wait for the lock before giving up.
+     * @param logger  logger.
+     */
+    InterProcessLock(Path path, long timeout, Logger logger) {
+        this.PATH = path;
+        this.LOGGER = logger;
+        this.STATE = state(path);
+        setTimeout(timeout);
+    }
+
+    /**
+     * Takes the shared lock, or joins the readers of the process already holding it.
+     *
+     * @throws IOException if the lock cannot be taken in time.
+     */
+    void lockShared() throws IOException {
+        long deadline = deadline();
+        synchronized (STATE) {
+            while (STATE.writer || STATE.waitingWriters > 0 || STATE.acquiring)
+                await(deadline, true);
+            if (STATE.readers == 0)
+                STATE.lock = acquire(true, deadline);
+            STATE.readers++;
+        }
+    }
+
+    /**
+     * Leaves the shared lock, releasing it if this was the last reader of the process.
+     */
+    void unlockShared() {
+        synchronized (STATE) {
+            if (--STATE.readers == 0) {
+                release();
+                STATE.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Takes the exclusive lock once no other reader or writer of the process holds the lock.
+     *
+     * @throws IOException if the lock cannot be taken in time.
+     */
+    void lockExclusive() throws IOException {
+        long deadline = deadline();
+        synchronized (STATE) {
+            STATE.waitingWriters++;
+            try {
+                while (STATE.writer || STATE.readers > 0 || STATE.acquiring)
+                    await(deadline, false);
+                STATE.lock = acquire(false, deadline);
+                STATE.writer = true;
+            } finally {
+                STATE.waitingWriters--;
+                STATE.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Releases the exclusive lock.
+     */
+    void unlockExclusive() {
+        synchronized (STATE) {
+            STATE.writer = false;
+            release();
+            STATE.notifyAll();
+        }
+    }
+
+    /**
+     * @return the number of rewrites of the repository file.
+     * @throws IOException if the lock file cannot be read.
+     */
+    long generation() throws IOException {
+        return read(GENERATION);
+    }
+
+    /**
+     * Counts a rewrite of the repository file, the exclusive lock must be held.
+     *
+     * @throws IOException if the lock file cannot be written.
+     */
+    void nextGeneration() throws IOException {
+        write(GENERATION, generation() + 1);
+    }
+
+    /**
+     * @return the size of the write-ahead log whose batches have all been applied to the repository file.
+     * @throws IOException if the lock file cannot be read.
+     */
+    long appliedLog() throws IOException {
+        return read(APPLIED_LOG);
+    }
+
+    /**
+     * Records that the batches in the write-ahead log up to a size have been applied, the exclusive lock must be held.
+     * It isn't forced, the log is replayed after a crash anyway.
+     *
+     * @param size the size of the log.
+     * @throws IOException if the lock file cannot be written.
+     */
+    void setAppliedLog(long size) throws IOException {
+        write(APPLIED_LOG, size);
+    }
+
+    /**
+     * @param timeout milliseconds to wait for the lock before giving up.
+     */
+    void setTimeout(long timeout) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Lock timeout can't be negative");
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param path a lock file.
+     * @return the state of the lock file, created the first time it is used within the process.
+     */
+    private static FileState state(Path path) {
+        Path canonical;
+        try {
+            // the lock file may not exist yet, its directory should
+            Path parent = path.toAbsolutePath().getParent();
+            canonical = parent.toRealPath().resolve(path.getFileName());
+        } catch (IOException e) {
+            canonical = path.toAbsolutePath().normalize();
+        }
+        synchronized (FILES) {
+            return FILES.computeIfAbsent(canonical, key -> new FileState());
+        }
+    }
+
+    /**
+     * @return when waiting for the lock started now gives up, in {@link System#nanoTime()} terms.
+     */
+    private long deadline() {
+        return System.nanoTime() + timeout * 1000000;
+    }
+
+    /**
+     * Waits for another thread of the process to release the lock, the monitor of the state must be held.
+     *
+     * @param deadline when to give up.
+     * @param shared   whether the shared lock is requested.
+     * @throws IOException if the deadline passes or the thread is interrupted.
+     */
+    private void await(long deadline, boolean shared) throws IOException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0)
+            throw new IOException(String.format("Timed out after %d ms waiting for the %s lock on %s, another "
+                    + "repository of this process is using the file", timeout, shared ? "shared" : "exclusive", PATH));
+        try {
+            TimeUnit.NANOSECONDS.timedWait(STATE, remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the lock on " + PATH, e);
+        }
+    }
+
+    /**
+     * Takes the lock on the lock file, retrying with a growing pause while another process holds it. The monitor of the
+     * state must be held, it is left during the pauses while the state is marked as acquiring.
+     *
+     * @param shared   whether to take the shared lock.
+     * @param deadline when to give up.
+     * @return the lock.
+     * @throws IOException if the lock cannot be taken before the timeout.
+     */
+    private FileLock acquire(boolean shared, long deadline) throws IOException {
+        FileChannel channel = channel();
+        STATE.acquiring = true;
+        try {
+            long backoff = 1;
+            while (true) {
+                FileLock acquired = channel.tryLock(0, Long.MAX_VALUE, shared);
+                if (acquired != null)
+                    return acquired;
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0)
+                    throw new IOException(String.format("Timed out after %d ms waiting for the %s lock on %s, another "
+                            + "process is using the repository", timeout, shared ? "shared" : "exclusive", PATH));
+                try {
+                    STATE.wait(Math.min(backoff, remaining));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the lock on " + PATH, e);
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+        } finally {
+            STATE.acquiring = false;
+            STATE.notifyAll();
+        }
+    }
+
+    /**
+     * @param offset offset of a counter in the lock file.
+     * @return the counter, 0 if the lock file doesn't hold it yet.
+     * @throws IOException if the lock file cannot be read.
+     */
+    private long read(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        FileChannel file = channel();
+        while (buffer.hasRemaining() && file.read(buffer, offset + buffer.position()) > 0) ;
+        return buffer.hasRemaining() ? 0 : buffer.getLong(0);
+    }
+
+    /**
+     * @param offset offset of a counter in the lock file.
+     * @param value  the counter's new value.
+     * @throws IOException if the lock file cannot be written.
+     */
+    private void write(long offset, long value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, value);
+        FileChannel file = channel();
+        while (buffer.hasRemaining())
+            file.write(buffer, offset + buffer.position());
+    }
+
+    /**
+     * @return the channel over the lock file, opening it if needed.
+     * @throws IOException if the lock file cannot be opened.
+     */
+    private FileChannel channel() throws IOException {
+        if (STATE.channel == null) {
+            synchronized (STATE) {
+                if (STATE.channel == null)
+                    STATE.channel = FileChannel.open(PATH, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE);
+            }
+        }
+        return STATE.channel;
+    }
+
+    /**
+     * Releases the lock on the lock file, the monitor of the state must be held.
+     */
+    private void release() {
+        try {
+            if (STATE.lock != null)
+                STATE.lock.release();
+        } catch (IOException e) {
+            LOGGER.severe(e.getMessage());
+        }
+        STATE.lock = null;
+    }
+
+    /**
+     * State of a lock file within the process, guarded by its own monitor.
+     */
+    private static final class FileState {
+        /**
+         * Channel over the lock file. Null until the lock is first taken.
+         */
+        private volatile FileChannel channel;
+        /**
+         * The lock while held.
+         */
+        private FileLock lock;
+        /**
+         * Number of readers within the process holding the shared lock.
+         */
+        private int readers;
+        /**
+         * Whether a writer within the process holds the exclusive lock.
+         */
+        private boolean writer;
+        /**
+         * Number of writers within the process waiting for the exclusive lock.
+         */
+        private int waitingWriters;
+        /**
+         * Whether a thread within the process is taking the lock on the lock file, pausing between attempts.
+         */
+        private boolean acquiring;
+    }
+}
@@ -0,0 +1,120 @@
+package mx.unam.ciencias.fbd.repository;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of latencies in nanoseconds with logarithmic buckets: values below 32 are counted exactly and every power
+ * of two above is split into 32 buckets, so percentiles are off by less than 1/32 of the value and recording takes
+ * constant time and no allocation.
+ */
+final class LatencyHistogram {
+    /**
+     * Bits of precision kept below the highest bit of a value.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+    /**
+     * Number of buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Count of every bucket.
+     */
+    private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+    /**
+     * Number of recorded values.
+     */
+    private long count;
+    /**
+     * Sum of the recorded values.
+     */
+    private long total;
+    /**
+     * Largest recorded value.
+     */
+    private long max;
+
+    /**
+     * Records a value.
+     *
+     * @param value the value, negative values count as zero.
+     */
+    void record(long value) {
+        value = Math.max(value, 0);
+        counts[bucket(value)]++;
+        count++;
+        total += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * @param percentile a percentile between 0 and 100.
+     * @return an upper bound of the given percentile of the recorded values, or zero if nothing was recorded.
+     */
+    long percentile(double percentile) {
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * @return the number of recorded values.
+     */
+    long count() {
+        return count;
+    }
+
+    /**
+     * @return the mean of the recorded values, or zero if nothing was recorded.
+     */
+    long mean() {
+        return count == 0 ? 0 : total / count;
+    }
+
+    /**
+     * @return the largest recorded value.
+     */
+    long max() {
+        return max;
+    }
+
+    /**
+     * Forgets every recorded value.
+     */
+    void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    /**
+     * @param value a non negative value.
+     * @return the bucket the value falls in.
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int top = (int) (value >>> (exponent - SUB_BUCKET_BITS));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + top - SUB_BUCKETS;
+    }
+
+    /**
+     * @param bucket a bucket.
+     * @return the largest value that falls in the bucket.
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
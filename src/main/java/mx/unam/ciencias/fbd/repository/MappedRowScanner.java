@@ -0,0 +1,149 @@
+package mx.unam.ciencias.fbd.repository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Row cursor that scans a memory mapped view of the file. Rows are never copied, bytes are only copied out of the
+ * mapping when a field or a row is decoded. Files larger than a single mapping are scanned through a sliding window.
+ * Rows appended after the cursor was opened are not seen.
+ */
+final class MappedRowScanner extends RowCursor {
+    /**
+     * Maximum size of a single mapping.
+     */
+    private static final long WINDOW = 1L << 30;
+    /**
+     * The mapped file.
+     */
+    private final FileChannel channel;
+    /**
+     * Size of the file when the cursor was opened.
+     */
+    private final long size;
+    /**
+     * Current mapping.
+     */
+    private MappedByteBuffer window;
+    /**
+     * File offset of the current mapping.
+     */
+    private long windowOffset;
+    /**
+     * Start of the current row within the mapping.
+     */
+    private int rowStart;
+    /**
+     * Length of the current row, line terminator included.
+     */
+    private int rowLength;
+    /**
+     * Start of the next row within the mapping.
+     */
+    private int position;
+
+    /**
+     * Maps the given file and positions the cursor before its first row.
+     *
+     * @param file the CSV file.
+     * @throws IOException if the file cannot be mapped.
+     */
+    MappedRowScanner(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        map(0);
+    }
+
+    @Override
+    boolean advance() throws IOException {
+        while (windowOffset + position < size) {
+            int limit = window.limit();
+            int end = position;
+            boolean quoted = false;
+            boolean terminated = false;
+            while (end < limit) {
+                byte b = window.get(end++);
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted) {
+                    terminated = true;
+                    break;
+                }
+            }
+            if (!terminated && windowOffset + limit < size) {
+                // the row continues past the mapping, slide the window to the start of the row
+                if (position == 0)
+                    throw new IOException("Row at offset " + windowOffset + " is larger than the mapping window");
+                map(windowOffset + position);
+                continue;
+            }
+            rowStart = position;
+            rowLength = end - position;
+            position = end;
+            if (contentLength() > 0)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    long offset() {
+        return windowOffset + rowStart;
+    }
+
+    @Override
+    int length() {
+        return rowLength;
+    }
+
+    @Override
+    byte byteAt(int position) {
+        return window.get(rowStart + position);
+    }
+
+    @Override
+    String decode(int start, int end) {
+        return new String(copy(start, end), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    void writeTo(OutputStream out) throws IOException {
+        out.write(copy(0, rowLength));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Maps the file starting at the given offset.
+     *
+     * @param offset the file offset of the new mapping.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private void map(long offset) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW, size - offset));
+        windowOffset = offset;
+        position = 0;
+    }
+
+    /**
+     * Copies a range of the current row out of the mapping.
+     *
+     * @param start first byte, relative to the start of the row.
+     * @param end   position past the last byte, relative to the start of the row.
+     * @return the copied bytes.
+     */
+    private byte[] copy(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = window.get(rowStart + start + i);
+        return bytes;
+    }
+}
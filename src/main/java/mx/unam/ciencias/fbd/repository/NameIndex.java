@@ -0,0 +1,254 @@
+package mx.unam.ciencias.fbd.repository;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Word index over a column holding names. Names are normalized, without case or accents, and split into words; the
+ * distinct words are kept in a trie whose nodes hold the ids of the records using every word. Since names repeat a
+ * small vocabulary, the trie stays small however many records there are.
+ * <p>
+ * A search matches every word of the query against the trie, the last one as a prefix, tolerating a number of edits
+ * that grows with the word's length: none up to 2 letters, one up to 5 and two beyond. A record matches if every word
+ * of the query matches one of its words.
+ */
+final class NameIndex implements RecordIndex {
+    /**
+     * Combining marks left by decomposing accented letters.
+     */
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    /**
+     * Anything between words.
+     */
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    /**
+     * Position of the indexed column in the schema.
+     */
+    private final int column;
+    /**
+     * Root of the trie of words.
+     */
+    private final Node root = new Node();
+    /**
+     * Words of every indexed record.
+     */
+    private final Map<String, List<String>> words = new HashMap<>();
+
+    /**
+     * Creates an empty index.
+     *
+     * @param column the indexed column.
+     */
+    NameIndex(Enum<?> column) {
+        this.column = column.ordinal();
+    }
+
+    @Override
+    public void clear() {
+        root.children.clear();
+        words.clear();
+    }
+
+    @Override
+    public void put(String id, CSVRecord record) {
+        remove(id);
+        List<String> recordWords = normalize(record.get(column));
+        if (recordWords.isEmpty())
+            return;
+        words.put(id, recordWords);
+        for (String word : recordWords) {
+            Node node = root;
+            for (int i = 0; i < word.length(); i++)
+                node = node.children.computeIfAbsent(word.charAt(i), key -> new Node());
+            if (node.ids == null)
+                node.ids = new LinkedHashSet<>();
+            node.ids.add(id);
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        List<String> recordWords = words.remove(id);
+        if (recordWords == null)
+            return;
+        for (String word : recordWords) {
+            Node node = root;
+            for (int i = 0; i < word.length(); i++)
+                node = node.children.get(word.charAt(i));
+            node.ids.remove(id);
+            // the branch stays, the vocabulary hardly changes
+            if (node.ids.isEmpty())
+                node.ids = null;
+        }
+    }
+
+    /**
+     * Looks up the records whose name matches a query.
+     *
+     * @param text  the query.
+     * @param limit the maximum number of ids.
+     * @return the ids of the matching records, the ones needing fewer edits first.
+     */
+    List<String> search(String text, long limit) {
+        List<String> query = normalize(text);
+        if (query.isEmpty())
+            return Collections.emptyList();
+        // matching words of every query word and their edits, then start from the word with the fewest records
+        List<Map<Node, Integer>> matches = new ArrayList<>();
+        int fewest = 0;
+        long fewestRecords = Long.MAX_VALUE;
+        for (int i = 0; i < query.size(); i++) {
+            String word = query.get(i);
+            Map<Node, Integer> found = new LinkedHashMap<>();
+            int[] row = new int[word.length() + 1];
+            for (int j = 0; j < row.length; j++)
+                row[j] = j;
+            search(root, word, i == query.size() - 1, maxEdits(word.length()), null, row, '\0', Integer.MAX_VALUE,
+                    found);
+            long records = 0;
+            for (Node node : found.keySet())
+                records += node.ids.size();
+            if (records < fewestRecords) {
+                fewest = i;
+                fewestRecords = records;
+            }
+            matches.add(found);
+        }
+        // records matching with as many edits or fewer, the search stops once the limit is reached with them
+        int maxTotal = 0;
+        for (String word : query)
+            maxTotal += maxEdits(word.length());
+        long[] atMost = new long[maxTotal + 1];
+        Map<String, Integer> edits = new LinkedHashMap<>();
+        search:
+        for (int edit = 0; edit <= maxEdits(query.get(fewest).length()); edit++) {
+            for (Map.Entry<Node, Integer> match : matches.get(fewest).entrySet()) {
+                if (match.getValue() != edit)
+                    continue;
+                for (String id : match.getKey().ids) {
+                    if (atMost[edit] >= limit)
+                        break search;
+                    if (edits.containsKey(id))
+                        continue;
+                    int total = edit;
+                    for (int i = 0; i < matches.size() && total >= 0; i++)
+                        if (i != fewest) {
+                            int wordEdits = fewestEdits(matches.get(i), id);
+                            total = wordEdits < 0 ? -1 : total + wordEdits;
+                        }
+                    if (total >= 0) {
+                        edits.put(id, total);
+                        for (int i = total; i <= maxTotal; i++)
+                            atMost[i]++;
+                    }
+                }
+            }
+        }
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(edits.entrySet());
+        ranked.sort(Map.Entry.comparingByValue());
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < ranked.size() && i < limit; i++)
+            result.add(ranked.get(i).getKey());
+        return result;
+    }
+
+    /**
+     * Walks the trie below a node computing the edit distance between the query word and every word or prefix, like
+     * the rows of the Levenshtein table, and stops where no word below can be close enough. Swapping two adjacent
+     * letters counts as a single edit.
+     *
+     * @param node      the node whose children are visited.
+     * @param word      the query word.
+     * @param prefix    whether the query word may be a prefix of the matching words.
+     * @param maxEdits  the maximum number of edits.
+     * @param previous  the row of the node's parent, null for the root.
+     * @param row       edits between the node's word and every prefix of the query word.
+     * @param last      the last letter of the node's word.
+     * @param inherited fewest edits of a prefix matched above the node, {@link Integer#MAX_VALUE} if none.
+     * @param found     receives the nodes of the matching words and their edits.
+     */
+    private static void search(Node node, String word, boolean prefix, int maxEdits, int[] previous, int[] row,
+                               char last, int inherited, Map<Node, Integer> found) {
+        for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+            char c = child.getKey();
+            int[] next = new int[row.length];
+            next[0] = row[0] + 1;
+            int fewest = next[0];
+            for (int j = 1; j < row.length; j++) {
+                int substitution = row[j - 1] + (word.charAt(j - 1) == c ? 0 : 1);
+                next[j] = Math.min(substitution, Math.min(row[j], next[j - 1]) + 1);
+                if (previous != null && j > 1 && word.charAt(j - 1) == last && word.charAt(j - 2) == c)
+                    next[j] = Math.min(next[j], previous[j - 2] + 1);
+                fewest = Math.min(fewest, next[j]);
+            }
+            int edits = next[row.length - 1];
+            int matched = prefix && edits <= maxEdits ? Math.min(inherited, edits) : inherited;
+            Node target = child.getValue();
+            int wordEdits = prefix ? matched : edits;
+            if (target.ids != null && wordEdits <= maxEdits)
+                found.put(target, wordEdits);
+            if (fewest <= maxEdits || matched <= maxEdits)
+                search(target, word, prefix, maxEdits, row, next, c, matched, found);
+        }
+    }
+
+    /**
+     * @param matches the nodes of the words matching a query word and their edits.
+     * @param id      a record's id.
+     * @return the fewest edits of the record's words matching the query word, or -1 if none matches.
+     */
+    private static int fewestEdits(Map<Node, Integer> matches, String id) {
+        int fewest = -1;
+        for (Map.Entry<Node, Integer> match : matches.entrySet())
+            if ((fewest < 0 || match.getValue() < fewest) && match.getKey().ids.contains(id))
+                fewest = match.getValue();
+        return fewest;
+    }
+
+    /**
+     * @param length the length of a query word.
+     * @return the number of edits tolerated.
+     */
+    private static int maxEdits(int length) {
+        return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+    }
+
+    /**
+     * @param name a name or a query.
+     * @return its words in lower case and without accents.
+     */
+    static List<String> normalize(String name) {
+        String plain = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        List<String> result = new ArrayList<>();
+        for (String word : SEPARATORS.split(plain.toLowerCase(Locale.ROOT)))
+            if (!word.isEmpty())
+                result.add(word);
+        return result;
+    }
+
+    /**
+     * A node of the trie, reached by a word or a prefix.
+     */
+    private static final class Node {
+        /**
+         * The nodes reached by appending a letter, in alphabetical order.
+         */
+        private final Map<Character, Node> children = new TreeMap<>();
+        /**
+         * Ids of the records using the node's word, null if no record does.
+         */
+        private Set<String> ids;
+    }
+}
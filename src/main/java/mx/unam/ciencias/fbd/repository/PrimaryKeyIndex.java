@@ -0,0 +1,120 @@
+package mx.unam.ciencias.fbd.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the id of every row in a repository file to the row's byte offset and length, so that a single row can be read
+ * without scanning the file.
+ */
+final class PrimaryKeyIndex {
+    /**
+     * Location of every row, keyed by id.
+     */
+    private final Map<String, Extent> extents = new HashMap<>();
+
+    /**
+     * @param id a row id.
+     * @return the row's location or null if no row has the given id.
+     */
+    Extent get(String id) {
+        return extents.get(id);
+    }
+
+    /**
+     * Records the location of a row, replacing any previous location.
+     *
+     * @param id     the row's id.
+     * @param offset the row's byte offset.
+     * @param length the row's length in bytes, line terminator included.
+     */
+    void put(String id, long offset, int length) {
+        extents.put(id, new Extent(offset, length));
+    }
+
+    /**
+     * Forgets the location of a row.
+     *
+     * @param id the row's id.
+     * @return the row's former location or null if it wasn't indexed.
+     */
+    Extent remove(String id) {
+        return extents.remove(id);
+    }
+
+    /**
+     * Accounts for ranges of bytes removed from the file, moving every row that followed them.
+     *
+     * @param removed the removed ranges, sorted by offset.
+     */
+    void shift(List<Extent> removed) {
+        long[] offsets = new long[removed.size()];
+        long[] removedBefore = new long[removed.size() + 1];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = removed.get(i).offset;
+            removedBefore[i + 1] = removedBefore[i] + removed.get(i).length;
+        }
+        for (Map.Entry<String, Extent> entry : extents.entrySet()) {
+            Extent extent = entry.getValue();
+            int preceding = Arrays.binarySearch(offsets, extent.offset);
+            preceding = preceding < 0 ? -preceding - 1 : preceding;
+            if (removedBefore[preceding] > 0)
+                entry.setValue(new Extent(extent.offset - removedBefore[preceding], extent.length));
+        }
+    }
+
+    /**
+     * @return the offsets of every indexed row, sorted.
+     */
+    long[] offsets() {
+        long[] offsets = new long[extents.size()];
+        int i = 0;
+        for (Extent extent : extents.values())
+            offsets[i++] = extent.offset;
+        Arrays.sort(offsets);
+        return offsets;
+    }
+
+    /**
+     * @param offset a byte offset.
+     * @return the locations of the indexed rows at or after the given offset, sorted by offset.
+     */
+    List<Extent> extentsFrom(long offset) {
+        List<Extent> result = new ArrayList<>();
+        for (Extent extent : extents.values())
+            if (extent.offset >= offset)
+                result.add(extent);
+        result.sort(Comparator.comparingLong(extent -> extent.offset));
+        return result;
+    }
+
+    /**
+     * @return the number of indexed rows.
+     */
+    int size() {
+        return extents.size();
+    }
+
+    /**
+     * Location of a row within the repository file.
+     */
+    static final class Extent {
+        /**
+         * Byte offset of the row.
+         */
+        final long offset;
+        /**
+         * Length in bytes of the row, line terminator included.
+         */
+        final int length;
+
+        Extent(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
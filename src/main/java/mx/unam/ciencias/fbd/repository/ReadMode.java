@@ -0,0 +1,17 @@
+package mx.unam.ciencias.fbd.repository;
+
+/**
+ * How a repository scans its file when it has to look at raw rows: building the primary key index, compacting, and
+ * looking rows up with neither the cache nor the index.
+ */
+public enum ReadMode {
+    /**
+     * Reads the file through a buffered stream.
+     */
+    STREAM,
+    /**
+     * Scans a memory mapped view of the file, comparing ids against their encoded bytes and decoding only the rows
+     * that match.
+     */
+    MAPPED
+}
@@ -0,0 +1,30 @@
+package mx.unam.ciencias.fbd.repository;
+
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Secondary index over the live records of a repository. The repository builds its indexes with a single pass over its
+ * records the first time they are queried, keeps them in step with every save and delete, and rebuilds them whenever
+ * its file changes on disk.
+ */
+interface RecordIndex {
+    /**
+     * Forgets every indexed record.
+     */
+    void clear();
+
+    /**
+     * Indexes a record, replacing any previous version of it.
+     *
+     * @param id     the record's id.
+     * @param record the record.
+     */
+    void put(String id, CSVRecord record);
+
+    /**
+     * Forgets a record, does nothing if it wasn't indexed.
+     *
+     * @param id the record's id.
+     */
+    void remove(String id);
+}
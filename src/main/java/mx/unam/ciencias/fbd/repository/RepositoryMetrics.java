@@ -0,0 +1,449 @@
+package mx.unam.ciencias.fbd.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and I/O counters of a repository. Every public operation records its latency and the rows and bytes it read
+ * and wrote, the repository also keeps running totals of its I/O. The operations returning a stream, like
+ * {@link Operation#FIND_ALL}, are recorded once their stream is read to the end or closed, whichever comes first.
+ * <p>
+ * Rows read count the rows scanned or parsed from the file, rows written count the rows encoded into it. Bytes read
+ * and written also include the bytes copied around replaced rows.
+ * <p>
+ * Each run counts its own I/O: the run started on a thread is credited with the I/O done on that thread until it
+ * stops, lazy streams are credited to the run that opened them whichever thread reads them, and batches committed
+ * together are credited to the writes that queued them.
+ */
+public final class RepositoryMetrics {
+    /**
+     * Name of the measured repository.
+     */
+    private final String name;
+    /**
+     * Counters of every operation.
+     */
+    private final Map<Operation, OperationMetrics> operations = new EnumMap<>(Operation.class);
+    /**
+     * Rows read from the file.
+     */
+    private final LongAdder rowsRead = new LongAdder();
+    /**
+     * Bytes read from the file.
+     */
+    private final LongAdder bytesRead = new LongAdder();
+    /**
+     * Rows written to the file.
+     */
+    private final LongAdder rowsWritten = new LongAdder();
+    /**
+     * Bytes written to the file.
+     */
+    private final LongAdder bytesWritten = new LongAdder();
+    /**
+     * The run being measured on each thread.
+     */
+    private final ThreadLocal<Timer> running = new ThreadLocal<>();
+
+    /**
+     * Creates empty metrics.
+     *
+     * @param name the name of the measured repository.
+     */
+    RepositoryMetrics(String name) {
+        this.name = name;
+        for (Operation operation : Operation.values())
+            operations.put(operation, new OperationMetrics());
+    }
+
+    /**
+     * Starts measuring an operation.
+     *
+     * @param operation the operation.
+     * @return the timer to stop once the operation is over.
+     */
+    Timer start(Operation operation) {
+        Timer timer = new Timer(operations.get(operation));
+        running.set(timer);
+        return timer;
+    }
+
+    /**
+     * @return the run being measured on the calling thread, null if none. Lazy readers keep it to count their I/O.
+     */
+    Timer running() {
+        return running.get();
+    }
+
+    /**
+     * Credits the I/O done on the calling thread to another run, until the returned one is bound back.
+     *
+     * @param timer the run, null for none.
+     * @return the run measured on the thread so far.
+     */
+    Timer bind(Timer timer) {
+        Timer previous = running.get();
+        if (timer == null)
+            running.remove();
+        else
+            running.set(timer);
+        return previous;
+    }
+
+    /**
+     * Accounts for data read from the file by the run measured on the calling thread.
+     *
+     * @param rows  number of rows.
+     * @param bytes number of bytes.
+     */
+    void read(long rows, long bytes) {
+        read(running.get(), rows, bytes);
+    }
+
+    /**
+     * Accounts for data read from the file by a run.
+     *
+     * @param timer the run, null for none.
+     * @param rows  number of rows.
+     * @param bytes number of bytes.
+     */
+    void read(Timer timer, long rows, long bytes) {
+        rowsRead.add(rows);
+        bytesRead.add(bytes);
+        if (timer != null) {
+            timer.io[0].add(rows);
+            timer.io[1].add(bytes);
+        }
+    }
+
+    /**
+     * Accounts for data written to the file by the run measured on the calling thread.
+     *
+     * @param rows  number of rows.
+     * @param bytes number of bytes.
+     */
+    void written(long rows, long bytes) {
+        rowsWritten.add(rows);
+        bytesWritten.add(bytes);
+        Timer timer = running.get();
+        if (timer != null) {
+            timer.io[2].add(rows);
+            timer.io[3].add(bytes);
+        }
+    }
+
+    /**
+     * @return the current value of every counter.
+     */
+    public Snapshot snapshot() {
+        Map<Operation, OperationSnapshot> result = new EnumMap<>(Operation.class);
+        operations.forEach((operation, metrics) -> result.put(operation, metrics.snapshot()));
+        return new Snapshot(name, rowsRead.sum(), bytesRead.sum(), rowsWritten.sum(), bytesWritten.sum(), result);
+    }
+
+    /**
+     * Sets every counter back to zero.
+     */
+    public void reset() {
+        operations.values().forEach(OperationMetrics::reset);
+        rowsRead.reset();
+        bytesRead.reset();
+        rowsWritten.reset();
+        bytesWritten.reset();
+    }
+
+    /**
+     * Measured repository operations.
+     */
+    public enum Operation {
+        SAVE, SAVE_ALL, FIND_BY_ID, FIND_ALL, FIND_ALL_AFTER, FIND_ALL_WHERE, FIND_ALL_COLUMNS, DELETE_BY_ID,
+        DELETE_ALL_BY_ID
+    }
+
+    /**
+     * Measures a single run of an operation.
+     */
+    final class Timer {
+        /**
+         * Counters of the measured operation.
+         */
+        private final OperationMetrics metrics;
+        /**
+         * Rows read, bytes read, rows written and bytes written by the run, possibly from several threads.
+         */
+        private final LongAdder[] io = {new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()};
+        /**
+         * Start time in nanoseconds.
+         */
+        private final long start = System.nanoTime();
+        /**
+         * Whether the run was already recorded, a stream may be closed on another thread than the one reading it.
+         */
+        private final AtomicBoolean stopped = new AtomicBoolean();
+
+        private Timer(OperationMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        /**
+         * Records the run, later calls do nothing.
+         */
+        void stop() {
+            if (!stopped.compareAndSet(false, true))
+                return;
+            long nanos = System.nanoTime() - start;
+            if (running.get() == this)
+                running.remove();
+            long[] counts = new long[io.length];
+            for (int i = 0; i < io.length; i++)
+                counts[i] = io[i].sum();
+            metrics.record(nanos, counts);
+        }
+    }
+
+    /**
+     * Counters of a single operation.
+     */
+    private static final class OperationMetrics {
+        /**
+         * Latency of every run.
+         */
+        private final LatencyHistogram latency = new LatencyHistogram();
+        /**
+         * Rows read, bytes read, rows written and bytes written by every run.
+         */
+        private final long[] io = new long[4];
+
+        /**
+         * Records a run.
+         *
+         * @param nanos the run's latency.
+         * @param io    the rows read, bytes read, rows written and bytes written by the run.
+         */
+        synchronized void record(long nanos, long[] io) {
+            latency.record(nanos);
+            for (int i = 0; i < io.length; i++)
+                this.io[i] += io[i];
+        }
+
+        /**
+         * @return the current value of every counter.
+         */
+        synchronized OperationSnapshot snapshot() {
+            return new OperationSnapshot(latency.count(), latency.percentile(50), latency.percentile(99),
+                    latency.max(), latency.mean(), io[0], io[1], io[2], io[3]);
+        }
+
+        /**
+         * Sets every counter back to zero.
+         */
+        synchronized void reset() {
+            latency.clear();
+            Arrays.fill(io, 0);
+        }
+    }
+
+    /**
+     * Counters of a repository at a point in time.
+     */
+    public static final class Snapshot {
+        /**
+         * Name of the measured repository.
+         */
+        private final String name;
+        /**
+         * Rows read from the file.
+         */
+        private final long rowsRead;
+        /**
+         * Bytes read from the file.
+         */
+        private final long bytesRead;
+        /**
+         * Rows written to the file.
+         */
+        private final long rowsWritten;
+        /**
+         * Bytes written to the file.
+         */
+        private final long bytesWritten;
+        /**
+         * Counters of every operation.
+         */
+        private final Map<Operation, OperationSnapshot> operations;
+
+        private Snapshot(String name, long rowsRead, long bytesRead, long rowsWritten, long bytesWritten,
+                         Map<Operation, OperationSnapshot> operations) {
+            this.name = name;
+            this.rowsRead = rowsRead;
+            this.bytesRead = bytesRead;
+            this.rowsWritten = rowsWritten;
+            this.bytesWritten = bytesWritten;
+            this.operations = Collections.unmodifiableMap(operations);
+        }
+
+        /**
+         * @return the name of the measured repository.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the rows read from the file.
+         */
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        /**
+         * @return the bytes read from the file.
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * @return the rows written to the file.
+         */
+        public long getRowsWritten() {
+            return rowsWritten;
+        }
+
+        /**
+         * @return the bytes written to the file.
+         */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * @return the counters of every operation.
+         */
+        public Map<Operation, OperationSnapshot> getOperations() {
+            return operations;
+        }
+    }
+
+    /**
+     * Counters of a single operation at a point in time. Latencies are in nanoseconds.
+     */
+    public static final class OperationSnapshot {
+        /**
+         * Number of runs.
+         */
+        private final long count;
+        /**
+         * Median latency.
+         */
+        private final long p50;
+        /**
+         * 99th percentile latency.
+         */
+        private final long p99;
+        /**
+         * Largest latency.
+         */
+        private final long max;
+        /**
+         * Mean latency.
+         */
+        private final long mean;
+        /**
+         * Rows read by every run.
+         */
+        private final long rowsRead;
+        /**
+         * Bytes read by every run.
+         */
+        private final long bytesRead;
+        /**
+         * Rows written by every run.
+         */
+        private final long rowsWritten;
+        /**
+         * Bytes written by every run.
+         */
+        private final long bytesWritten;
+
+        private OperationSnapshot(long count, long p50, long p99, long max, long mean,
+                                  long rowsRead, long bytesRead, long rowsWritten, long bytesWritten) {
+            this.count = count;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+            this.mean = mean;
+            this.rowsRead = rowsRead;
+            this.bytesRead = bytesRead;
+            this.rowsWritten = rowsWritten;
+            this.bytesWritten = bytesWritten;
+        }
+
+        /**
+         * @return the number of runs.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the median latency.
+         */
+        public long getP50() {
+            return p50;
+        }
+
+        /**
+         * @return the 99th percentile latency.
+         */
+        public long getP99() {
+            return p99;
+        }
+
+        /**
+         * @return the largest latency.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return the mean latency.
+         */
+        public long getMean() {
+            return mean;
+        }
+
+        /**
+         * @return the rows read by every run.
+         */
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        /**
+         * @return the bytes read by every run.
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * @return the rows written by every run.
+         */
+        public long getRowsWritten() {
+            return rowsWritten;
+        }
+
+        /**
+         * @return the bytes written by every run.
+         */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+    }
+}
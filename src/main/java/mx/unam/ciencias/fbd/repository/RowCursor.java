@@ -0,0 +1,248 @@
+package mx.unam.ciencias.fbd.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Forward only cursor over the raw rows of a CSV file. Implementations expose the bytes of the current row together
+ * with its byte offset and length within the file, fields are only decoded on demand. Quoted fields may span several
+ * lines, blank lines are skipped.
+ */
+abstract class RowCursor implements Closeable {
+    /**
+     * First byte of the last located field, relative to the start of the row.
+     */
+    private int fieldStart;
+    /**
+     * Position past the last byte of the last located field, relative to the start of the row.
+     */
+    private int fieldEnd;
+    /**
+     * Whether the last located field is enclosed in quotes.
+     */
+    private boolean fieldQuoted;
+    /**
+     * Metrics the scanned rows are accounted to, if any.
+     */
+    private RepositoryMetrics metrics;
+    /**
+     * The run the scanned rows are credited to, if any.
+     */
+    private RepositoryMetrics.Timer timer;
+
+    /**
+     * Moves to the next non blank row, implemented by every kind of cursor.
+     *
+     * @return false if the end of the file was reached.
+     * @throws IOException if the file cannot be read.
+     */
+    abstract boolean advance() throws IOException;
+
+    /**
+     * @return the file offset of the current row.
+     */
+    abstract long offset();
+
+    /**
+     * @return the length in bytes of the current row, line terminator included.
+     */
+    abstract int length();
+
+    /**
+     * @param position a position relative to the start of the current row.
+     * @return the byte at the given position.
+     */
+    abstract byte byteAt(int position);
+
+    /**
+     * Decodes a range of the current row as UTF-8 text.
+     *
+     * @param start first byte, relative to the start of the row.
+     * @param end   position past the last byte, relative to the start of the row.
+     * @return the decoded text.
+     */
+    abstract String decode(int start, int end);
+
+    /**
+     * Copies the raw bytes of the current row, line terminator included.
+     *
+     * @param out the destination.
+     * @throws IOException if the destination cannot be written.
+     */
+    abstract void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Accounts every row scanned from now on as read by the run measured on the calling thread.
+     *
+     * @param metrics the repository's metrics.
+     * @return this cursor.
+     */
+    final RowCursor countingInto(RepositoryMetrics metrics) {
+        this.metrics = metrics;
+        this.timer = metrics.running();
+        return this;
+    }
+
+    /**
+     * Advances to the next non blank row.
+     *
+     * @return false if the end of the file was reached.
+     * @throws IOException if the file cannot be read.
+     */
+    final boolean next() throws IOException {
+        if (!advance())
+            return false;
+        if (metrics != null)
+            metrics.read(timer, 1, length());
+        return true;
+    }
+
+    /**
+     * Decodes a single field of the current row.
+     *
+     * @param column the field's index.
+     * @return the field's value, unquoted and trimmed like {@link String#trim()}, or null if the row doesn't have
+     * such a field.
+     */
+    final String field(int column) {
+        if (!locate(column))
+            return null;
+        if (fieldQuoted)
+            return decode(fieldStart + 1, fieldEnd - 1).replace("\"\"", "\"").trim();
+        return decode(fieldStart, fieldEnd);
+    }
+
+    /**
+     * Compares a single field of the current row against an encoded value without decoding the field.
+     *
+     * @param column the field's index.
+     * @param value  the UTF-8 encoded value.
+     * @return whether the row has such a field and its value is equal to the given one.
+     */
+    final boolean fieldEquals(int column, byte[] value) {
+        if (!locate(column))
+            return false;
+        if (fieldQuoted)
+            return field(column).equals(new String(value, StandardCharsets.UTF_8));
+        if (fieldEnd - fieldStart != value.length)
+            return false;
+        for (int i = 0; i < value.length; i++)
+            if (byteAt(fieldStart + i) != value[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Checks whether a single field of the current row starts with an encoded value without decoding the field.
+     *
+     * @param column the field's index.
+     * @param prefix the UTF-8 encoded beginning of the value.
+     * @return whether the row has such a field and its value starts with the given one.
+     */
+    final boolean fieldStartsWith(int column, byte[] prefix) {
+        if (!locate(column))
+            return false;
+        if (fieldQuoted)
+            return field(column).startsWith(new String(prefix, StandardCharsets.UTF_8));
+        if (fieldEnd - fieldStart < prefix.length)
+            return false;
+        for (int i = 0; i < prefix.length; i++)
+            if (byteAt(fieldStart + i) != prefix[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Compares a single field of the current row against an encoded value byte by byte, without decoding the field.
+     * The row must have such a field.
+     *
+     * @param column the field's index.
+     * @param value  the UTF-8 encoded value.
+     * @return a negative number, zero or a positive number if the field's value is lower, equal or greater.
+     */
+    final int compareField(int column, byte[] value) {
+        locate(column);
+        if (fieldQuoted)
+            return ColumnFilter.compare(field(column).getBytes(StandardCharsets.UTF_8), value);
+        int length = Math.min(fieldEnd - fieldStart, value.length);
+        for (int i = 0; i < length; i++) {
+            int difference = (byteAt(fieldStart + i) & 0xFF) - (value[i] & 0xFF);
+            if (difference != 0)
+                return difference;
+        }
+        return fieldEnd - fieldStart - value.length;
+    }
+
+    /**
+     * @param column a field's index.
+     * @return whether the current row has such a field.
+     */
+    final boolean hasField(int column) {
+        return locate(column);
+    }
+
+    /**
+     * @return the current row as text, without its line terminator.
+     */
+    final String text() {
+        return decode(0, contentLength());
+    }
+
+    /**
+     * @return the length of the current row without its line terminator.
+     */
+    final int contentLength() {
+        int end = length();
+        while (end > 0 && (byteAt(end - 1) == '\n' || byteAt(end - 1) == '\r'))
+            end--;
+        return end;
+    }
+
+    /**
+     * Finds the bounds of a field of the current row the way the repository's CSV format parses it: a field starting
+     * with a quote is enclosed up to its closing quote and only blanks may follow it, any other field is taken as is,
+     * quotes included. Plain fields are trimmed like {@link String#trim()}, every byte up to a space being a blank in
+     * UTF-8, enclosed fields are trimmed once unquoted.
+     *
+     * @param column the field's index.
+     * @return false if the row doesn't have such a field.
+     */
+    private boolean locate(int column) {
+        int end = contentLength();
+        int start = 0;
+        int current = 0;
+        boolean quoted = false;
+        for (int i = 0; i <= end; i++) {
+            byte b = i == end ? (byte) ',' : byteAt(i);
+            if (b == ',' && !quoted) {
+                if (current == column) {
+                    fieldQuoted = start < i && byteAt(start) == '"';
+                    if (!fieldQuoted)
+                        while (start < i && isBlank(byteAt(start)))
+                            start++;
+                    while (i > start && isBlank(byteAt(i - 1)))
+                        i--;
+                    fieldStart = start;
+                    fieldEnd = i;
+                    return true;
+                }
+                current++;
+                start = i + 1;
+            } else if (b == '"' && byteAt(start) == '"') {
+                // quotes only enclose a field that starts with one, doubled quotes toggle twice
+                quoted = !quoted;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param b a byte of a row.
+     * @return whether {@link String#trim()} strips it.
+     */
+    private static boolean isBlank(byte b) {
+        return (b & 0xFF) <= ' ';
+    }
+}
@@ -0,0 +1,154 @@
+package mx.unam.ciencias.fbd.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Row cursor that reads the file through a buffered stream, copying the raw bytes of the current row into a reusable
+ * array. Rows appended after the cursor was opened are not seen.
+ */
+final class RowScanner extends RowCursor {
+    /**
+     * Size of the read buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * The file's contents.
+     */
+    private final InputStream in;
+    /**
+     * Bytes of the file not yet read into the buffer, up to its size when the cursor was opened.
+     */
+    private long remaining;
+    /**
+     * Read buffer.
+     */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    /**
+     * Next unread position in the buffer.
+     */
+    private int position;
+    /**
+     * Number of valid bytes in the buffer.
+     */
+    private int limit;
+    /**
+     * File offset of the next unread byte.
+     */
+    private long offset;
+    /**
+     * Raw bytes of the current row, line terminator included.
+     */
+    private byte[] row = new byte[256];
+    /**
+     * Length of the current row, line terminator included.
+     */
+    private int rowLength;
+    /**
+     * File offset of the current row.
+     */
+    private long rowOffset;
+
+    /**
+     * Opens a scanner positioned before the first row of the given file.
+     *
+     * @param file the CSV file.
+     * @throws IOException if the file cannot be opened.
+     */
+    RowScanner(Path file) throws IOException {
+        this(file, 0);
+    }
+
+    /**
+     * Opens a scanner positioned before the row starting at the given offset of the given file.
+     *
+     * @param file the CSV file.
+     * @param from offset of the first row to scan.
+     * @throws IOException if the file cannot be opened.
+     */
+    RowScanner(Path file, long from) throws IOException {
+        SeekableByteChannel channel = Files.newByteChannel(file);
+        this.remaining = Math.max(channel.size() - from, 0);
+        this.in = Channels.newInputStream(channel.position(from));
+        this.offset = from;
+    }
+
+    @Override
+    boolean advance() throws IOException {
+        do {
+            rowOffset = offset;
+            rowLength = 0;
+            boolean quoted = false;
+            int b;
+            while ((b = read()) != -1) {
+                if (rowLength == row.length)
+                    row = Arrays.copyOf(row, row.length * 2);
+                row[rowLength++] = (byte) b;
+                if (b == '"')
+                    quoted = !quoted;
+                else if (b == '\n' && !quoted)
+                    break;
+            }
+            if (rowLength == 0)
+                return false;
+        } while (contentLength() == 0);
+        return true;
+    }
+
+    @Override
+    long offset() {
+        return rowOffset;
+    }
+
+    @Override
+    int length() {
+        return rowLength;
+    }
+
+    @Override
+    byte byteAt(int position) {
+        return row[position];
+    }
+
+    @Override
+    String decode(int start, int end) {
+        return new String(row, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    void writeTo(OutputStream out) throws IOException {
+        out.write(row, 0, rowLength);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the next byte of the file.
+     *
+     * @return the byte or -1 at the end of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = remaining > 0 ? in.read(buffer, 0, (int) Math.min(BUFFER_SIZE, remaining)) : -1;
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+            remaining -= limit;
+        }
+        offset++;
+        return buffer[position++] & 0xFF;
+    }
+}
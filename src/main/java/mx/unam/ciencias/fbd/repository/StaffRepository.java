@@ -2,13 +2,16 @@ package mx.unam.ciencias.fbd.repository;
 
 import mx.unam.ciencias.fbd.domain.Staff;
 import mx.unam.ciencias.fbd.util.Safe;
+import mx.unam.ciencias.fbd.util.Validate;
 import org.apache.commons.csv.CSVRecord;
 
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * Concrete Staff entities repository. Provides transformer functions from and to CSVRecords. It also set's the
@@ -23,12 +26,48 @@ public class StaffRepository extends AbstractCSVCrudRepository<Staff, UUID> {
      * Singleton instance.
      */
     private static final StaffRepository singleton = new StaffRepository();
+    /**
+     * Ids of the subordinates of every supervisor.
+     */
+    private final ColumnIndex SUPERVISOR_INDEX = new ColumnIndex(Schema.SUPERVISOR_ID);
+    /**
+     * Chain of command defined by the supervisor links.
+     */
+    private final HierarchyIndex HIERARCHY = new HierarchyIndex(Schema.SUPERVISOR_ID);
+    /**
+     * Elements ordered by date of birth.
+     */
+    private final DateIndex DOB_INDEX = new DateIndex(Schema.DOB);
+    /**
+     * Elements ordered by date of hire.
+     */
+    private final DateIndex DOH_INDEX = new DateIndex(Schema.DOH);
+    /**
+     * Words of the elements' names.
+     */
+    private final NameIndex NAME_INDEX = new NameIndex(Schema.NAME);
 
     /**
      * Constructs a Staff repository.
      */
     private StaffRepository() {
-        super(CSV_FILE, Schema.class, Logger.getLogger(StaffRepository.class.getName()));
+        this(DEFAULT_HOME);
+    }
+
+    /**
+     * Constructs a Staff repository in the given directory.
+     *
+     * @param directory directory holding the repository's file.
+     */
+    private StaffRepository(Path directory) {
+        super(directory, CSV_FILE, Schema.class, Logger.getLogger(StaffRepository.class.getName()));
+        addIndex(SUPERVISOR_INDEX);
+        addIndex(HIERARCHY);
+        addIndex(DOB_INDEX);
+        addIndex(DOH_INDEX);
+        addIndex(NAME_INDEX);
+        addBitmapIndex(Schema.SEX, Staff.Sex.class);
+        addBitmapIndex(Schema.ROLE, Staff.Role.class);
     }
 
     /**
@@ -38,8 +77,107 @@ public class StaffRepository extends AbstractCSVCrudRepository<Staff, UUID> {
         return singleton;
     }
 
+    /**
+     * Creates a repository over the file in the given directory, independent of the unique instance. Meant for tools
+     * and benchmarks working on other data sets.
+     *
+     * @param directory directory holding the repository's file.
+     * @return a new repository.
+     */
+    public static StaffRepository at(Path directory) {
+        return new StaffRepository(directory);
+    }
+
+    /**
+     * Retrieves the direct subordinates of a supervisor through the supervisor index.
+     *
+     * @param supervisorId the supervisor's id.
+     * @return the subordinates.
+     */
+    public Stream<Staff> findBySupervisorId(UUID supervisorId) {
+        return withIndexes(() -> findAllByKeys(SUPERVISOR_INDEX.get(supervisorId.toString())), Stream.empty());
+    }
+
+    /**
+     * Counts the direct subordinates of a supervisor without reading them.
+     *
+     * @param supervisorId the supervisor's id.
+     * @return the number of subordinates.
+     */
+    public int countBySupervisorId(UUID supervisorId) {
+        return withIndexes(() -> SUPERVISOR_INDEX.count(supervisorId.toString()), 0);
+    }
+
+    /**
+     * Retrieves everyone under a supervisor at any depth through the chain of command.
+     *
+     * @param supervisorId the supervisor's id.
+     * @return the direct and indirect subordinates.
+     */
+    public Stream<Staff> findAllUnder(UUID supervisorId) {
+        return withIndexes(() -> findAllByKeys(HIERARCHY.descendants(supervisorId.toString())), Stream.empty());
+    }
+
+    /**
+     * Computes the depth of an element within the chain of command.
+     *
+     * @param id the element's id.
+     * @return the number of superiors above the element, or -1 if it doesn't exist.
+     */
+    public int depthOf(UUID id) {
+        return withIndexes(() -> HIERARCHY.depth(id.toString()), -1);
+    }
+
+    /**
+     * Checks whether an element is in the chain of command of another one.
+     *
+     * @param id         the subordinate's id.
+     * @param superiorId the superior's id.
+     * @return whether the superior is above the subordinate at any depth.
+     */
+    public boolean isUnder(UUID id, UUID superiorId) {
+        return withIndexes(() -> HIERARCHY.isAncestor(superiorId.toString(), id.toString()), false);
+    }
+
+    /**
+     * Retrieves the elements born within a range of dates through the date of birth index.
+     *
+     * @param from the first date of the range, {@link LocalDate#MIN} for no lower bound.
+     * @param to   the last date of the range, {@link LocalDate#MAX} for no upper bound.
+     * @return the elements, ordered by date of birth.
+     */
+    public Stream<Staff> findByDobBetween(LocalDate from, LocalDate to) {
+        Validate.notNull(from, to);
+        return withIndexes(() -> findAllByKeys(DOB_INDEX.between(from, to)), Stream.empty());
+    }
+
+    /**
+     * Retrieves the elements hired within a range of dates through the date of hire index.
+     *
+     * @param from the first date of the range, {@link LocalDate#MIN} for no lower bound.
+     * @param to   the last date of the range, {@link LocalDate#MAX} for no upper bound.
+     * @return the elements, ordered by date of hire.
+     */
+    public Stream<Staff> findByDohBetween(LocalDate from, LocalDate to) {
+        Validate.notNull(from, to);
+        return withIndexes(() -> findAllByKeys(DOH_INDEX.between(from, to)), Stream.empty());
+    }
+
+    /**
+     * Searches the elements by name through the name index. Case and accents are ignored, the last word of the text
+     * may be the beginning of a word and small typos are tolerated, see {@link NameIndex}.
+     *
+     * @param text  words of the name.
+     * @param limit the maximum number of elements.
+     * @return the elements whose name matches every word of the text, the closest matches first.
+     */
+    public Stream<Staff> findByName(String text, long limit) {
+        Validate.notNull(text);
+        return withIndexes(() -> findAllByKeys(NAME_INDEX.search(text, limit)), Stream.empty());
+    }
+
     @Override
-    List<String> asRecord(Staff entity) {
+    public List<String> asRecord(Staff entity) {
         String supervisor = Safe.safeToString(entity.getSupervisorID());
         return Arrays.asList(
                 entity.getId().toString(),
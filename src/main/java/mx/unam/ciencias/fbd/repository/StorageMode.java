@@ -0,0 +1,16 @@
+package mx.unam.ciencias.fbd.repository;
+
+/**
+ * How a repository applies updates and deletions to its file.
+ */
+public enum StorageMode {
+    /**
+     * Updates and deletions rewrite the file so that it only ever holds the current version of every row.
+     */
+    IN_PLACE,
+    /**
+     * Updates are appended as new versions and deletions as tombstones (rows holding nothing but the id). Reads
+     * resolve the latest version of every row and the file is compacted once enough of it is dead.
+     */
+    LOG
+}
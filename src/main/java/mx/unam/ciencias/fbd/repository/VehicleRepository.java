@@ -4,10 +4,12 @@ import mx.unam.ciencias.fbd.domain.Vehicle;
 import mx.unam.ciencias.fbd.util.Safe;
 import org.apache.commons.csv.CSVRecord;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * Concrete Vehicle entities repository. Provides transformer functions from and to CSVRecords. It also sets the
@@ -23,12 +25,27 @@ public class VehicleRepository extends AbstractCSVCrudRepository<Vehicle, String
      * Singleton instance.
      */
     private static final VehicleRepository singleton = new VehicleRepository();
+    /**
+     * Ids of the vehicles assigned to every driver.
+     */
+    private final ColumnIndex DRIVER_INDEX = new ColumnIndex(Schema.DRIVER_ID);
 
     /**
      * Constructs a Vehicle repository.
      */
     private VehicleRepository() {
-        super(CSV_FILE, Schema.class, Logger.getLogger(VehicleRepository.class.getName()));
+        this(DEFAULT_HOME);
+    }
+
+    /**
+     * Constructs a Vehicle repository in the given directory.
+     *
+     * @param directory directory holding the repository's file.
+     */
+    private VehicleRepository(Path directory) {
+        super(directory, CSV_FILE, Schema.class, Logger.getLogger(VehicleRepository.class.getName()));
+        addIndex(DRIVER_INDEX);
+        addBitmapIndex(Schema.TYPE, Vehicle.Type.class);
     }
 
     /**
@@ -38,8 +55,29 @@ public class VehicleRepository extends AbstractCSVCrudRepository<Vehicle, String
         return singleton;
     }
 
+    /**
+     * Creates a repository over the file in the given directory, independent of the unique instance. Meant for tools
+     * and benchmarks working on other data sets.
+     *
+     * @param directory directory holding the repository's file.
+     * @return a new repository.
+     */
+    public static VehicleRepository at(Path directory) {
+        return new VehicleRepository(directory);
+    }
+
+    /**
+     * Retrieves the vehicles assigned to a driver through the driver id index.
+     *
+     * @param driverId the driver's id.
+     * @return the vehicles.
+     */
+    public Stream<Vehicle> findByDriverId(UUID driverId) {
+        return withIndexes(() -> findAllByKeys(DRIVER_INDEX.get(driverId.toString())), Stream.empty());
+    }
+
     @Override
-    List<String> asRecord(Vehicle entity) {
+    public List<String> asRecord(Vehicle entity) {
         String zone = Safe.safeToString(entity.getZone());
         String driverId = Safe.safeToString(entity.getDriverId());
         return Arrays.asList(
@@ -4,10 +4,12 @@ import mx.unam.ciencias.fbd.domain.Weapon;
 import mx.unam.ciencias.fbd.util.Safe;
 import org.apache.commons.csv.CSVRecord;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * Weapon repository.
@@ -21,12 +23,27 @@ public class WeaponRepository extends AbstractCSVCrudRepository<Weapon, UUID> {
      * Singleton instance.
      */
     private static final WeaponRepository singleton = new WeaponRepository();
+    /**
+     * Ids of the weapons assigned to every element.
+     */
+    private final ColumnIndex USER_INDEX = new ColumnIndex(Schema.USER_ID);
 
     /**
      * Constructs a weapon repository.
      */
     private WeaponRepository() {
-        super(CSV_FILE, Schema.class, Logger.getLogger(WeaponRepository.class.getName()));
+        this(DEFAULT_HOME);
+    }
+
+    /**
+     * Constructs a weapon repository in the given directory.
+     *
+     * @param directory directory holding the repository's file.
+     */
+    private WeaponRepository(Path directory) {
+        super(directory, CSV_FILE, Schema.class, Logger.getLogger(WeaponRepository.class.getName()));
+        addIndex(USER_INDEX);
+        addBitmapIndex(Schema.TYPE, Weapon.Type.class);
     }
 
     /**
@@ -36,8 +53,29 @@ public class WeaponRepository extends AbstractCSVCrudRepository<Weapon, UUID> {
         return singleton;
     }
 
+    /**
+     * Creates a repository over the file in the given directory, independent of the unique instance. Meant for tools
+     * and benchmarks working on other data sets.
+     *
+     * @param directory directory holding the repository's file.
+     * @return a new repository.
+     */
+    public static WeaponRepository at(Path directory) {
+        return new WeaponRepository(directory);
+    }
+
+    /**
+     * Retrieves the weapons assigned to an element through the user id index.
+     *
+     * @param userId the element's id.
+     * @return the weapons.
+     */
+    public Stream<Weapon> findByUserId(UUID userId) {
+        return withIndexes(() -> findAllByKeys(USER_INDEX.get(userId.toString())), Stream.empty());
+    }
+
     @Override
-    List<String> asRecord(Weapon entity) {
+    public List<String> asRecord(Weapon entity) {
         return Arrays.asList(
                 Safe.safeToString(entity.getId()),
                 Safe.safeToString(entity.getType()),
@@ -0,0 +1,269 @@
+package mx.unam.ciencias.fbd.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append only log of the batches written to a repository file. Every batch is logged and committed according to the
+ * {@link FsyncPolicy} before the repository file is touched, so that an interrupted write can be redone by replaying
+ * the log.
+ * <p>
+ * Each entry is framed as its length, the CRC32 of its payload and the payload itself. Replay stops at the first torn
+ * or corrupt entry. Concurrent commits share a single force: whoever forces the log covers every entry appended so
+ * far.
+ */
+final class WriteAheadLog {
+    /**
+     * Size of an entry's frame header: payload length and checksum.
+     */
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    /**
+     * Forces the logs with {@link FsyncPolicy#INTERVAL} policy.
+     */
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "wal-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Logger.
+     */
+    private final Logger LOGGER;
+    /**
+     * The log file.
+     */
+    private final Path PATH;
+    /**
+     * Guards the force of the log.
+     */
+    private final Object FORCE_LOCK = new Object();
+    /**
+     * Channel appending to the log. Null until the first entry is appended.
+     */
+    private FileChannel channel;
+    /**
+     * Sequence number of the last appended entry.
+     */
+    private volatile long appended;
+    /**
+     * Sequence number of the last entry known to be on the device.
+     */
+    private volatile long durable;
+    /**
+     * When the log is forced.
+     */
+    private volatile FsyncPolicy policy;
+    /**
+     * Milliseconds between background forces with {@link FsyncPolicy#INTERVAL} policy.
+     */
+    private long interval;
+    /**
+     * Background force, null unless the policy is {@link FsyncPolicy#INTERVAL}.
+     */
+    private ScheduledFuture<?> flush;
+
+    /**
+     * Opens a log, the file is only created once the first entry is appended.
+     *
+     * @param path     the log file.
+     * @param policy   when the log is forced.
+     * @param interval milliseconds between background forces with {@link FsyncPolicy#INTERVAL} policy.
+     * @param logger   logger.
+     */
+    WriteAheadLog(Path path, FsyncPolicy policy, long interval, Logger logger) {
+        this.PATH = path;
+        this.LOGGER = logger;
+        setPolicy(policy, interval);
+    }
+
+    /**
+     * Appends an entry, it is not necessarily on the device until committed.
+     *
+     * @param payload the entry's contents.
+     * @return the entry's sequence number.
+     * @throws IOException if the log cannot be written.
+     */
+    synchronized long append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        FileChannel log = channel();
+        // other processes may have appended to the log or emptied it
+        log.position(log.size());
+        while (frame.hasRemaining())
+            log.write(frame);
+        return ++appended;
+    }
+
+    /**
+     * Makes an entry as durable as the policy asks for: with {@link FsyncPolicy#ALWAYS} it waits until the entry is on
+     * the device, forcing the log unless a concurrent commit already did.
+     *
+     * @param sequence the entry's sequence number.
+     * @throws IOException if the log cannot be forced.
+     */
+    void commit(long sequence) throws IOException {
+        if (policy == FsyncPolicy.ALWAYS)
+            force(sequence);
+    }
+
+    /**
+     * Forces the log up to a given entry, every entry appended in the meantime rides along.
+     *
+     * @param sequence the entry's sequence number.
+     * @throws IOException if the log cannot be forced.
+     */
+    private void force(long sequence) throws IOException {
+        if (durable >= sequence)
+            return;
+        synchronized (FORCE_LOCK) {
+            if (durable >= sequence)
+                return;
+            long target = appended;
+            FileChannel log;
+            synchronized (this) {
+                log = channel;
+            }
+            if (log != null)
+                log.force(false);
+            durable = target;
+        }
+    }
+
+    /**
+     * Reads every intact entry, cutting the log at the first torn or corrupt one.
+     *
+     * @return the payloads of the entries in the order they were appended.
+     * @throws IOException if the log cannot be read.
+     */
+    synchronized List<byte[]> replay() throws IOException {
+        List<byte[]> entries = new ArrayList<>();
+        if (!Files.exists(PATH))
+            return entries;
+        byte[] bytes = Files.readAllBytes(PATH);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int valid = 0;
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining())
+                break;
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum)
+                break;
+            entries.add(payload);
+            valid = buffer.position();
+        }
+        if (valid < bytes.length) {
+            LOGGER.warning("Discarding torn write-ahead log tail of " + PATH);
+            channel().truncate(valid);
+        }
+        return entries;
+    }
+
+    /**
+     * Empties the log, to be called once every logged batch is on the device in the repository file.
+     *
+     * @throws IOException if the log cannot be truncated.
+     */
+    void truncate() throws IOException {
+        truncate(0);
+    }
+
+    /**
+     * Cuts the log back to a given size, dropping the entries appended past it.
+     *
+     * @param size the size in bytes.
+     * @throws IOException if the log cannot be truncated.
+     */
+    synchronized void truncate(long size) throws IOException {
+        if (channel == null && !Files.exists(PATH))
+            return;
+        FileChannel log = channel();
+        log.truncate(size);
+        log.position(size);
+        if (policy != FsyncPolicy.OS)
+            log.force(false);
+    }
+
+    /**
+     * @return the size of the log in bytes.
+     * @throws IOException if the log cannot be read.
+     */
+    synchronized long size() throws IOException {
+        if (channel != null)
+            return channel.size();
+        return Files.exists(PATH) ? Files.size(PATH) : 0;
+    }
+
+    /**
+     * @return when the log is forced.
+     */
+    synchronized FsyncPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Changes when the log is forced.
+     *
+     * @param policy   the new policy.
+     * @param interval milliseconds between background forces with {@link FsyncPolicy#INTERVAL} policy.
+     */
+    synchronized void setPolicy(FsyncPolicy policy, long interval) {
+        if (interval <= 0)
+            throw new IllegalArgumentException("Fsync interval must be positive");
+        if (flush != null)
+            flush.cancel(false);
+        flush = null;
+        this.policy = policy;
+        this.interval = interval;
+        if (policy == FsyncPolicy.INTERVAL)
+            flush = FLUSHER.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return milliseconds between background forces with {@link FsyncPolicy#INTERVAL} policy.
+     */
+    synchronized long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Forces every appended entry, run in the background with {@link FsyncPolicy#INTERVAL} policy.
+     */
+    private void flush() {
+        try {
+            force(appended);
+        } catch (IOException e) {
+            LOGGER.severe(e.getMessage());
+        }
+    }
+
+    /**
+     * @return the channel appending to the log, opening the file if needed.
+     * @throws IOException if the log cannot be opened.
+     */
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(PATH, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+        return channel;
+    }
+}
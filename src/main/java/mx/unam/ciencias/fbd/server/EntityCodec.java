@@ -0,0 +1,41 @@
+package mx.unam.ciencias.fbd.server;
+
+import java.util.Map;
+
+/**
+ * Turns the entities of a resource into JSON and back.
+ *
+ * @param <S>  The type of the entities.
+ * @param <ID> The type of the entities' identifier.
+ */
+interface EntityCodec<S, ID> {
+    /**
+     * @param text an identifier as it appears in a path.
+     * @return the identifier.
+     * @throws IllegalArgumentException if the text isn't a valid identifier.
+     */
+    ID parseId(String text);
+
+    /**
+     * @param entity an entity.
+     * @return the entity's identifier.
+     */
+    ID getId(S entity);
+
+    /**
+     * Writes an entity as a JSON object.
+     *
+     * @param entity the entity.
+     * @param json   where the object is written.
+     */
+    void write(S entity, StringBuilder json);
+
+    /**
+     * Builds an entity from the members of a JSON object.
+     *
+     * @param members the object's members.
+     * @return the entity, with a new identifier unless the object has one and the resource allows it.
+     * @throws IllegalArgumentException if a member is missing or invalid.
+     */
+    S read(Map<String, String> members);
+}
@@ -0,0 +1,258 @@
+package mx.unam.ciencias.fbd.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Minimal JSON support for the server: writing strings and reading flat objects, the only shapes the entities need.
+ */
+final class Json {
+    private Json() {
+    }
+
+    /**
+     * Appends a member to an object being written, preceded by a comma unless it's the first one.
+     *
+     * @param json  the object being written, after its opening brace.
+     * @param name  the member's name.
+     * @param value the member's value, written as a string or null.
+     */
+    static void member(StringBuilder json, String name, Object value) {
+        if (json.charAt(json.length() - 1) != '{')
+            json.append(',');
+        string(json, name);
+        json.append(':');
+        if (value == null)
+            json.append("null");
+        else
+            string(json, value.toString());
+    }
+
+    /**
+     * Appends a quoted and escaped string.
+     *
+     * @param json  where the string is written.
+     * @param value the string.
+     */
+    static void string(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        json.append(String.format("\\u%04x", (int) c));
+                    else
+                        json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * @param members the members of an object.
+     * @param name    a member's name.
+     * @return the member's value.
+     * @throws IllegalArgumentException if the member is missing or null.
+     */
+    static String required(Map<String, String> members, String name) {
+        String value = members.get(name);
+        if (value == null)
+            throw new IllegalArgumentException("Falta el campo " + name);
+        return value;
+    }
+
+    /**
+     * Reads an object whose members are strings, numbers, booleans or null.
+     *
+     * @param json the object.
+     * @return the members by name, numbers and booleans as written and null values as null.
+     * @throws IllegalArgumentException if the text isn't such an object.
+     */
+    static Map<String, String> parseObject(String json) {
+        Parser parser = new Parser(json);
+        Map<String, String> members = parser.object();
+        parser.skipWhitespace();
+        if (parser.position != json.length())
+            throw parser.error();
+        return members;
+    }
+
+    /**
+     * Recursive descent parser over a flat object.
+     */
+    private static final class Parser {
+        /**
+         * The parsed text.
+         */
+        private final String text;
+        /**
+         * Position of the next character.
+         */
+        private int position;
+
+        /**
+         * @param text the parsed text.
+         */
+        private Parser(String text) {
+            this.text = text;
+        }
+
+        /**
+         * @return the members of the object at the current position.
+         */
+        private Map<String, String> object() {
+            Map<String, String> members = new LinkedHashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return members;
+            }
+            do {
+                skipWhitespace();
+                String name = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                members.put(name, value());
+                skipWhitespace();
+            } while (consume(','));
+            expect('}');
+            return members;
+        }
+
+        /**
+         * @return the scalar value at the current position.
+         */
+        private String value() {
+            char c = peek();
+            if (c == '"')
+                return string();
+            int start = position;
+            while (position < text.length() && "-+.eE0123456789truefalsn".indexOf(text.charAt(position)) >= 0)
+                position++;
+            String literal = text.substring(start, position);
+            if (literal.equals("null"))
+                return null;
+            if (literal.isEmpty() || !literal.matches("true|false|-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?"))
+                throw error();
+            return literal;
+        }
+
+        /**
+         * @return the unescaped string at the current position.
+         */
+        private String string() {
+            expect('"');
+            StringBuilder result = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"')
+                    return result.toString();
+                if (c != '\\') {
+                    result.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'b':
+                        result.append('\b');
+                        break;
+                    case 'f':
+                        result.append('\f');
+                        break;
+                    case 'n':
+                        result.append('\n');
+                        break;
+                    case 'r':
+                        result.append('\r');
+                        break;
+                    case 't':
+                        result.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length())
+                            throw error();
+                        try {
+                            result.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error();
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        result.append(escaped);
+                }
+            }
+        }
+
+        /**
+         * Moves past any whitespace.
+         */
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position)))
+                position++;
+        }
+
+        /**
+         * @param c a character.
+         * @return whether the next character was the given one, in which case it's consumed.
+         */
+        private boolean consume(char c) {
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @param c the character that must come next, it's consumed.
+         */
+        private void expect(char c) {
+            if (!consume(c))
+                throw error();
+        }
+
+        /**
+         * @return the next character, without consuming it.
+         */
+        private char peek() {
+            if (position >= text.length())
+                throw error();
+            return text.charAt(position);
+        }
+
+        /**
+         * @return the next character, consumed.
+         */
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        /**
+         * @return the error reporting the current position.
+         */
+        private IllegalArgumentException error() {
+            return new IllegalArgumentException("JSON inválido en la posición " + position);
+        }
+    }
+}
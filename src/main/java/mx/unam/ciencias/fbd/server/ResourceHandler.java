@@ -0,0 +1,327 @@
+package mx.unam.ciencias.fbd.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import mx.unam.ciencias.fbd.service.AbstractResourceService;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Serves the entities of a service as JSON:
+ * <ul>
+ * <li>{@code GET /resource} lists every entity.</li>
+ * <li>{@code POST /resource} saves the entity in the body and returns it with status 201.</li>
+ * <li>{@code GET /resource/id} returns an entity or status 404.</li>
+ * <li>{@code PUT /resource/id} saves the entity in the body under the given id.</li>
+ * <li>{@code DELETE /resource/id} deletes an entity, status 204 or 404.</li>
+ * <li>{@code GET /resource/id/relation} lists the entities related to an entity.</li>
+ * </ul>
+ * Entities failing the handler's check are rejected with status 400. Errors are returned as
+ * {@code {"error": "..."}}. Responses always declare their length or are chunked, so the connection is kept alive
+ * between requests.
+ *
+ * @param <S>  The type of the served entities.
+ * @param <ID> The type of the entities' identifier.
+ */
+final class ResourceHandler<S, ID> implements HttpHandler {
+    /**
+     * Logger of every resource.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ResourceHandler.class.getName());
+    /**
+     * Largest accepted request body.
+     */
+    private static final int MAX_BODY = 1 << 16;
+    /**
+     * Size of the buffer used to write lists.
+     */
+    private static final int BUFFER = 1 << 14;
+    /**
+     * The service holding the entities.
+     */
+    private final AbstractResourceService<S, ID> service;
+    /**
+     * JSON form of the entities.
+     */
+    private final EntityCodec<S, ID> codec;
+    /**
+     * Lookups of related entities, by path segment.
+     */
+    private final Map<String, Function<S, Stream<S>>> relations = new HashMap<>();
+    /**
+     * Validates the entities before they are saved.
+     */
+    private Consumer<S> check = entity -> {
+    };
+
+    /**
+     * Creates a handler.
+     *
+     * @param service the service holding the entities.
+     * @param codec   JSON form of the entities.
+     */
+    ResourceHandler(AbstractResourceService<S, ID> service, EntityCodec<S, ID> codec) {
+        this.service = service;
+        this.codec = codec;
+    }
+
+    /**
+     * Serves the entities related to an entity under {@code /resource/id/name}.
+     *
+     * @param name   the path segment.
+     * @param lookup finds the related entities, the stream is closed after the response is written.
+     * @return this handler.
+     */
+    ResourceHandler<S, ID> relation(String name, Function<S, Stream<S>> lookup) {
+        relations.put(name, lookup);
+        return this;
+    }
+
+    /**
+     * Validates the entities in the body of {@code POST} and {@code PUT} requests before they are saved.
+     *
+     * @param check throws {@link IllegalArgumentException} with the reason to reject an entity.
+     * @return this handler.
+     */
+    ResourceHandler<S, ID> check(Consumer<S> check) {
+        this.check = check;
+        return this;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            List<String> segments = segments(exchange);
+            String method = exchange.getRequestMethod();
+            switch (segments == null ? -1 : segments.size()) {
+                case 0:
+                    if (method.equals("GET")) {
+                        try (Stream<S> all = service.findAll()) {
+                            sendList(exchange, all);
+                        }
+                    } else if (method.equals("POST")) {
+                        save(exchange, codec.read(Json.parseObject(body(exchange))), 201);
+                    } else {
+                        notAllowed(exchange, "GET, POST");
+                    }
+                    break;
+                case 1:
+                    ID id = codec.parseId(segments.get(0));
+                    if (method.equals("GET")) {
+                        Optional<S> entity = service.findById(id);
+                        if (entity.isPresent())
+                            sendEntity(exchange, 200, entity.get());
+                        else
+                            sendError(exchange, 404, "No se encontró el registro con id " + segments.get(0));
+                    } else if (method.equals("PUT")) {
+                        Map<String, String> members = Json.parseObject(body(exchange));
+                        members.put("id", segments.get(0));
+                        save(exchange, codec.read(members), 200);
+                    } else if (method.equals("DELETE")) {
+                        if (service.deleteById(id))
+                            send(exchange, 204, null);
+                        else
+                            sendError(exchange, 404, "No se encontró el registro con id " + segments.get(0));
+                    } else {
+                        notAllowed(exchange, "GET, PUT, DELETE");
+                    }
+                    break;
+                case 2:
+                    Function<S, Stream<S>> lookup = relations.get(segments.get(1));
+                    if (lookup == null) {
+                        sendError(exchange, 404, "Recurso desconocido " + exchange.getRequestURI().getPath());
+                    } else if (!method.equals("GET")) {
+                        notAllowed(exchange, "GET");
+                    } else {
+                        Optional<S> entity = service.findById(codec.parseId(segments.get(0)));
+                        if (entity.isPresent()) {
+                            try (Stream<S> related = lookup.apply(entity.get())) {
+                                sendList(exchange, related);
+                            }
+                        } else {
+                            sendError(exchange, 404, "No se encontró el registro con id " + segments.get(0));
+                        }
+                    }
+                    break;
+                default:
+                    sendError(exchange, 404, "Recurso desconocido " + exchange.getRequestURI().getPath());
+            }
+        } catch (IllegalArgumentException e) {
+            if (exchange.getResponseCode() == -1)
+                sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            LOGGER.severe(e.toString());
+            if (exchange.getResponseCode() == -1)
+                sendError(exchange, 500, "Error interno");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Checks an entity, saves it and returns it.
+     *
+     * @param exchange the request.
+     * @param entity   the entity.
+     * @param status   the status of a successful save.
+     * @throws IOException              if the response can't be written.
+     * @throws IllegalArgumentException if the entity fails the check.
+     */
+    private void save(HttpExchange exchange, S entity, int status) throws IOException {
+        check.accept(entity);
+        S saved = service.save(entity);
+        if (saved == null)
+            sendError(exchange, 500, "No se pudo guardar el registro con id " + codec.getId(entity));
+        else
+            sendEntity(exchange, status, saved);
+    }
+
+    /**
+     * @param exchange the request.
+     * @return the decoded path segments after the resource's path, or null if the path only starts like the
+     * resource's, such as {@code /staffing} for {@code /staff}.
+     */
+    private static List<String> segments(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getRawPath();
+        String rest = path.substring(Math.min(path.length(), exchange.getHttpContext().getPath().length()));
+        if (!rest.isEmpty() && rest.charAt(0) != '/')
+            return null;
+        List<String> segments = new ArrayList<>();
+        for (String segment : rest.split("/"))
+            if (!segment.isEmpty()) {
+                try {
+                    segments.add(URLDecoder.decode(segment, "UTF-8"));
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        return segments;
+    }
+
+    /**
+     * @param exchange the request.
+     * @return the request's body.
+     * @throws IOException              if the body can't be read.
+     * @throws IllegalArgumentException if the body is too large.
+     */
+    private static String body(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+                if (body.size() > MAX_BODY)
+                    throw new IllegalArgumentException("El cuerpo excede " + MAX_BODY + " bytes");
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sends an entity.
+     *
+     * @param exchange the request.
+     * @param status   the response status.
+     * @param entity   the entity.
+     * @throws IOException if the response can't be written.
+     */
+    private void sendEntity(HttpExchange exchange, int status, S entity) throws IOException {
+        StringBuilder json = new StringBuilder();
+        codec.write(entity, json);
+        send(exchange, status, json.toString());
+    }
+
+    /**
+     * Sends entities as a JSON array while they are read.
+     *
+     * @param exchange the request.
+     * @param entities the entities.
+     * @throws IOException if the response can't be written.
+     */
+    private void sendList(HttpExchange exchange, Stream<S> entities) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        // chunked, the length isn't known until every entity is written
+        exchange.sendResponseHeaders(200, 0);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(),
+                StandardCharsets.UTF_8), BUFFER);
+        StringBuilder json = new StringBuilder();
+        writer.write('[');
+        Iterator<S> iterator = entities.iterator();
+        while (iterator.hasNext()) {
+            json.setLength(0);
+            codec.write(iterator.next(), json);
+            writer.append(json);
+            if (iterator.hasNext())
+                writer.write(',');
+        }
+        writer.write(']');
+        writer.flush();
+    }
+
+    /**
+     * Sends an error.
+     *
+     * @param exchange the request.
+     * @param status   the response status.
+     * @param message  the error's description.
+     * @throws IOException if the response can't be written.
+     */
+    static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{");
+        Json.member(json, "error", message);
+        send(exchange, status, json.append('}').toString());
+    }
+
+    /**
+     * Rejects the request's method.
+     *
+     * @param exchange the request.
+     * @param allowed  the methods the path accepts.
+     * @throws IOException if the response can't be written.
+     */
+    private static void notAllowed(HttpExchange exchange, String allowed) throws IOException {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        sendError(exchange, 405, "Método no permitido " + exchange.getRequestMethod());
+    }
+
+    /**
+     * Sends a response with a known length.
+     *
+     * @param exchange the request.
+     * @param status   the response status.
+     * @param json     the body, or null for none.
+     * @throws IOException if the response can't be written.
+     */
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package mx.unam.ciencias.fbd.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import mx.unam.ciencias.fbd.domain.Staff;
+import mx.unam.ciencias.fbd.service.StaffService;
+import mx.unam.ciencias.fbd.service.VehicleService;
+import mx.unam.ciencias.fbd.service.WeaponService;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * HTTP server exposing the staff, vehicle and weapon services as JSON under {@code /staff}, {@code /vehicles} and
+ * {@code /weapons}, plus {@code /staff/id/subordinates}; see {@link ResourceHandler} for the operations.
+ * <p>
+ * Every request runs on its own virtual thread when the JVM has them (Java 21 and later), otherwise on a cached pool
+ * of platform threads. At most {@code maxRequests} requests run at once; further requests are answered right away
+ * with {@code 503 Service Unavailable} and a {@code Retry-After} header, so the thread dispatching the connections
+ * never waits for a running request.
+ */
+public final class Server {
+    /**
+     * Logger of the server.
+     */
+    private static final Logger LOGGER = Logger.getLogger(Server.class.getName());
+    /**
+     * Default port.
+     */
+    public static final int DEFAULT_PORT = 8080;
+    /**
+     * Default number of requests running at once.
+     */
+    public static final int DEFAULT_MAX_REQUESTS = 256;
+    /**
+     * Default number of connections waiting to be accepted.
+     */
+    public static final int DEFAULT_BACKLOG = 128;
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+    /**
+     * Runs the requests.
+     */
+    private final ExecutorService executor;
+
+    static {
+        // headers and body are written separately, with Nagle's algorithm every response waits for a delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * Creates a server, call {@link #start()} to accept requests.
+     *
+     * @param address     the address to listen on, port 0 picks a free port.
+     * @param maxRequests number of requests running at once.
+     * @param backlog     number of connections waiting to be accepted.
+     * @throws IOException if the address can't be bound.
+     */
+    public Server(InetSocketAddress address, int maxRequests, int backlog) throws IOException {
+        if (maxRequests < 1)
+            throw new IllegalArgumentException("El máximo de peticiones debe ser positivo");
+        server = HttpServer.create(address, backlog);
+        Filter limit = new RequestLimit(maxRequests);
+        server.createContext("/staff", new ResourceHandler<>(StaffService.getInstance(), new StaffCodec())
+                .relation("subordinates", StaffService.getInstance()::getSubordinates)
+                .check(Server::checkStaff)).getFilters().add(limit);
+        server.createContext("/vehicles", new ResourceHandler<>(VehicleService.getInstance(), new VehicleCodec())
+                .check(vehicle -> checkStaffExists(vehicle.getDriverId(), "el conductor"))).getFilters().add(limit);
+        server.createContext("/weapons", new ResourceHandler<>(WeaponService.getInstance(), new WeaponCodec())
+                .check(weapon -> checkStaffExists(weapon.getUserId(), "el elemento responsable")))
+                .getFilters().add(limit);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits up to the given time for the running ones.
+     *
+     * @param seconds the time to wait.
+     */
+    public void stop(int seconds) {
+        server.stop(seconds);
+        executor.shutdown();
+    }
+
+    /**
+     * @return the address the server listens on.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * @return an executor running every task on a new virtual thread, or a cached pool of platform threads.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // before Java 21, or a preview the JVM didn't enable
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "fbd-http-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Rejects an element whose supervisor doesn't exist or doesn't outrank it, as the staff wizard only offers
+     * elements with a higher role.
+     *
+     * @param staff the element.
+     * @throws IllegalArgumentException if the supervisor isn't valid.
+     */
+    private static void checkStaff(Staff staff) {
+        UUID supervisorId = staff.getSupervisorID();
+        if (supervisorId == null)
+            return;
+        if (supervisorId.equals(staff.getId()))
+            throw new IllegalArgumentException("Un elemento no puede ser su propio superior.");
+        Staff supervisor = checkStaffExists(supervisorId, "el superior");
+        if (supervisor.getRole().ordinal() <= staff.getRole().ordinal())
+            throw new IllegalArgumentException(String.format("El superior %s tiene rol %s, debe tener un rol "
+                    + "mayor a %s.", supervisorId, supervisor.getRole(), staff.getRole()));
+    }
+
+    /**
+     * @param id   the id of a referenced element, null if none.
+     * @param role what the element is to the referencing entity, to describe the error.
+     * @return the element, null if none is referenced.
+     * @throws IllegalArgumentException if there's no element with the given id.
+     */
+    private static Staff checkStaffExists(UUID id, String role) {
+        if (id == null)
+            return null;
+        return StaffService.getInstance().findById(id).orElseThrow(() -> new IllegalArgumentException(
+                String.format("No existe %s con matrícula %s.", role, id)));
+    }
+
+    /**
+     * Runs the server from the command line, an unknown option prints the accepted ones.
+     *
+     * @param args console arguments.
+     */
+    public static void main(String[] args) {
+        String host = "127.0.0.1";
+        int port = DEFAULT_PORT;
+        int maxRequests = DEFAULT_MAX_REQUESTS;
+        int backlog = DEFAULT_BACKLOG;
+        try {
+            if (args.length % 2 != 0)
+                throw new IllegalArgumentException("Falta el valor de una opción");
+            for (int i = 0; i < args.length; i += 2) {
+                String value = args[i + 1];
+                try {
+                    switch (args[i]) {
+                        case "--host":
+                            host = value;
+                            break;
+                        case "--port":
+                            port = Integer.parseInt(value);
+                            break;
+                        case "--max-requests":
+                            maxRequests = Integer.parseInt(value);
+                            break;
+                        case "--backlog":
+                            backlog = Integer.parseInt(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Opción desconocida " + args[i]);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Valor inválido para " + args[i] + ": " + value);
+                }
+            }
+            if (port < 0 || port > 65535)
+                throw new IllegalArgumentException("El puerto debe estar entre 0 y 65535");
+            if (maxRequests < 1)
+                throw new IllegalArgumentException("El máximo de peticiones debe ser positivo");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Uso: Server [--host HOST] [--port N] [--max-requests N] [--backlog N]");
+            System.exit(2);
+        }
+        Server server;
+        try {
+            server = new Server(new InetSocketAddress(host, port), maxRequests, backlog);
+        } catch (IOException e) {
+            LOGGER.severe(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        System.out.println("Escuchando en http://" + host + ":" + server.getAddress().getPort());
+    }
+
+    /**
+     * Filter that lets a limited number of requests run at once and turns the rest away with a 503, without waiting.
+     */
+    private static final class RequestLimit extends Filter {
+        /**
+         * Free slots.
+         */
+        private final Semaphore permits;
+
+        /**
+         * @param limit number of requests running at once.
+         */
+        private RequestLimit(int limit) {
+            this.permits = new Semaphore(limit);
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            if (!permits.tryAcquire()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                ResourceHandler.sendError(exchange, 503, "Servidor ocupado, intenta de nuevo.");
+                exchange.close();
+                return;
+            }
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                permits.release();
+            }
+        }
+
+        @Override
+        public String description() {
+            return "Limits the requests running at once";
+        }
+    }
+}
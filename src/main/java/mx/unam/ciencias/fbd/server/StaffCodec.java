@@ -0,0 +1,54 @@
+package mx.unam.ciencias.fbd.server;
+
+import mx.unam.ciencias.fbd.domain.Staff;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * JSON form of a staff element, dates use the ISO format.
+ */
+final class StaffCodec implements EntityCodec<Staff, UUID> {
+    @Override
+    public UUID parseId(String text) {
+        return UUID.fromString(text);
+    }
+
+    @Override
+    public UUID getId(Staff entity) {
+        return entity.getId();
+    }
+
+    @Override
+    public void write(Staff entity, StringBuilder json) {
+        json.append('{');
+        Json.member(json, "id", entity.getId());
+        Json.member(json, "name", entity.getName());
+        Json.member(json, "sex", entity.getSex());
+        Json.member(json, "dob", entity.getDob());
+        Json.member(json, "doh", entity.getDoh());
+        Json.member(json, "role", entity.getRole());
+        Json.member(json, "supervisorId", entity.getSupervisorID());
+        json.append('}');
+    }
+
+    @Override
+    public Staff read(Map<String, String> members) {
+        try {
+            Staff staff = new Staff(Json.required(members, "name"),
+                    Staff.Sex.valueOf(Json.required(members, "sex")),
+                    LocalDate.parse(Json.required(members, "dob")),
+                    LocalDate.parse(Json.required(members, "doh")),
+                    Staff.Role.valueOf(Json.required(members, "role")));
+            if (members.get("id") != null)
+                staff.setId(UUID.fromString(members.get("id")));
+            if (members.get("supervisorId") != null)
+                staff.setSupervisorID(UUID.fromString(members.get("supervisorId")));
+            return staff;
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha inválida: " + e.getParsedString());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package mx.unam.ciencias.fbd.server;
+
+import mx.unam.ciencias.fbd.domain.Vehicle;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * JSON form of a vehicle, identified by its plate.
+ */
+final class VehicleCodec implements EntityCodec<Vehicle, String> {
+    @Override
+    public String parseId(String text) {
+        if (text.isEmpty())
+            throw new IllegalArgumentException("Placa vacía");
+        return text;
+    }
+
+    @Override
+    public String getId(Vehicle entity) {
+        return entity.getId();
+    }
+
+    @Override
+    public void write(Vehicle entity, StringBuilder json) {
+        json.append('{');
+        Json.member(json, "id", entity.getId());
+        Json.member(json, "type", entity.getType());
+        Json.member(json, "model", entity.getModel());
+        Json.member(json, "description", entity.getDescription());
+        Json.member(json, "zone", entity.getZone());
+        Json.member(json, "driverId", entity.getDriverId());
+        json.append('}');
+    }
+
+    @Override
+    public Vehicle read(Map<String, String> members) {
+        Vehicle vehicle = new Vehicle(Json.required(members, "id"),
+                Vehicle.Type.valueOf(Json.required(members, "type")),
+                Json.required(members, "model"),
+                Json.required(members, "description"));
+        vehicle.setZone(members.get("zone"));
+        if (members.get("driverId") != null)
+            vehicle.setDriverId(UUID.fromString(members.get("driverId")));
+        return vehicle;
+    }
+}
@@ -0,0 +1,41 @@
+package mx.unam.ciencias.fbd.server;
+
+import mx.unam.ciencias.fbd.domain.Weapon;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * JSON form of a weapon.
+ */
+final class WeaponCodec implements EntityCodec<Weapon, UUID> {
+    @Override
+    public UUID parseId(String text) {
+        return UUID.fromString(text);
+    }
+
+    @Override
+    public UUID getId(Weapon entity) {
+        return entity.getId();
+    }
+
+    @Override
+    public void write(Weapon entity, StringBuilder json) {
+        json.append('{');
+        Json.member(json, "id", entity.getId());
+        Json.member(json, "type", entity.getType());
+        Json.member(json, "description", entity.getDescription());
+        Json.member(json, "userId", entity.getUserId());
+        json.append('}');
+    }
+
+    @Override
+    public Weapon read(Map<String, String> members) {
+        Weapon weapon = new Weapon(Weapon.Type.valueOf(Json.required(members, "type")),
+                Json.required(members, "description"),
+                UUID.fromString(Json.required(members, "userId")));
+        if (members.get("id") != null)
+            weapon.setId(UUID.fromString(members.get("id")));
+        return weapon;
+    }
+}
@@ -1,18 +1,26 @@
 package mx.unam.ciencias.fbd.service;
 
+import mx.unam.ciencias.fbd.repository.AsyncCrudRepository;
+import mx.unam.ciencias.fbd.repository.AsyncRepository;
+import mx.unam.ciencias.fbd.repository.ColumnFilter;
 import mx.unam.ciencias.fbd.repository.CrudRepository;
+import mx.unam.ciencias.fbd.repository.EnumFilter;
 import mx.unam.ciencias.fbd.util.Validate;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
-public abstract class AbstractResourceService<S, ID> implements CrudRepository<S, ID> {
+public abstract class AbstractResourceService<S, ID> implements CrudRepository<S, ID>, AsyncCrudRepository<S, ID> {
 
     private final CrudRepository<S, ID> repository;
+    private final AsyncCrudRepository<S, ID> asyncRepository;
 
     AbstractResourceService(CrudRepository<S, ID> repository) {
         Validate.notNull(repository);
         this.repository = repository;
+        this.asyncRepository = new AsyncRepository<>(repository);
     }
 
     @Override
@@ -20,6 +28,11 @@ public abstract class AbstractResourceService<S, ID> implements CrudRepository<S
         return repository.save(entity);
     }
 
+    @Override
+    public List<S> saveAll(Iterable<S> entities) {
+        return repository.saveAll(entities);
+    }
+
     @Override
     public Optional<S> findById(ID id) {
         return repository.findById(id);
@@ -30,8 +43,78 @@ public abstract class AbstractResourceService<S, ID> implements CrudRepository<S
         return repository.findAll();
     }
 
+    @Override
+    public Stream<S> findAllAfter(ID after, long limit) {
+        return repository.findAllAfter(after, limit);
+    }
+
+    @Override
+    public Stream<S> findAll(EnumFilter filter) {
+        return repository.findAll(filter);
+    }
+
+    @Override
+    public Stream<S> findAll(ColumnFilter filter) {
+        return repository.findAll(filter);
+    }
+
+    @Override
+    public Stream<String[]> findAllColumns(Enum<?>... columns) {
+        return repository.findAllColumns(columns);
+    }
+
+    @Override
+    public Stream<String[]> findAllColumns(ColumnFilter filter, Enum<?>... columns) {
+        return repository.findAllColumns(filter, columns);
+    }
+
+    @Override
+    public long count(EnumFilter filter) {
+        return repository.count(filter);
+    }
+
     @Override
     public boolean deleteById(ID id) {
         return repository.deleteById(id);
     }
+
+    @Override
+    public int deleteAllById(Iterable<ID> ids) {
+        return repository.deleteAllById(ids);
+    }
+
+    @Override
+    public CompletableFuture<S> saveAsync(S entity) {
+        return asyncRepository.saveAsync(entity);
+    }
+
+    @Override
+    public CompletableFuture<List<S>> saveAllAsync(Iterable<S> entities) {
+        return asyncRepository.saveAllAsync(entities);
+    }
+
+    @Override
+    public CompletableFuture<Optional<S>> findByIdAsync(ID id) {
+        return asyncRepository.findByIdAsync(id);
+    }
+
+    @Override
+    public CompletableFuture<List<S>> findAllAsync() {
+        return asyncRepository.findAllAsync();
+    }
+
+    @Override
+    public CompletableFuture<List<String[]>> findAllColumnsAsync(Enum<?>... columns) {
+        return asyncRepository.findAllColumnsAsync(columns);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteByIdAsync(ID id) {
+        return asyncRepository.deleteByIdAsync(id);
+    }
+
+    @Override
+    public CompletableFuture<Integer> deleteAllByIdAsync(Iterable<ID> ids) {
+        return asyncRepository.deleteAllByIdAsync(ids);
+    }
 }
@@ -3,14 +3,19 @@ package mx.unam.ciencias.fbd.service;
 import mx.unam.ciencias.fbd.domain.Staff;
 import mx.unam.ciencias.fbd.repository.StaffRepository;
 
+import java.time.DateTimeException;
+import java.time.LocalDate;
 import java.util.UUID;
 import java.util.stream.Stream;
 
 public class StaffService extends AbstractResourceService<Staff, UUID> {
     private static final StaffService singleton = new StaffService();
 
+    private final StaffRepository staffRepository;
+
     private StaffService() {
         super(StaffRepository.getInstance());
+        staffRepository = StaffRepository.getInstance();
     }
 
     public static StaffService getInstance() {
@@ -18,6 +23,66 @@ public class StaffService extends AbstractResourceService<Staff, UUID> {
     }
 
     public Stream<Staff> getSubordinates(Staff staff) {
-        return findAll().filter(s -> staff.getId().equals(s.getSupervisorID()));
+        return staffRepository.findBySupervisorId(staff.getId());
+    }
+
+    public int countSubordinates(Staff staff) {
+        return staffRepository.countBySupervisorId(staff.getId());
+    }
+
+    public Stream<Staff> getAllSubordinates(Staff staff) {
+        return staffRepository.findAllUnder(staff.getId());
+    }
+
+    public int getDepth(Staff staff) {
+        return staffRepository.depthOf(staff.getId());
+    }
+
+    public boolean isInChainOfCommand(Staff staff, Staff superior) {
+        return staffRepository.isUnder(staff.getId(), superior.getId());
+    }
+
+    /**
+     * @param years a number of years.
+     * @return the elements whose seniority, as given by {@link Staff#getSeniority()}, is greater than the given one,
+     * the most senior first.
+     */
+    public Stream<Staff> getBySeniorityOver(int years) {
+        // a seniority of years + 1 or more, whole years counted like Period does
+        return staffRepository.findByDohBetween(LocalDate.MIN, yearsBefore(LocalDate.now(), years + 1L));
+    }
+
+    /**
+     * @param min the youngest age.
+     * @param max the oldest age.
+     * @return the elements whose age, as given by {@link Staff#getAge()}, is within the given ones, the oldest first.
+     */
+    public Stream<Staff> getByAgeBetween(int min, int max) {
+        LocalDate today = LocalDate.now();
+        // born after the day an element turning max + 1 today was born, up to the day one turning min was
+        return staffRepository.findByDobBetween(yearsBefore(today, max + 1L).plusDays(1), yearsBefore(today, min));
+    }
+
+    /**
+     * @param text  words of a name, the last one may be incomplete.
+     * @param limit the maximum number of elements.
+     * @return the elements whose name matches the text regardless of case, accents and small typos, the closest
+     * matches first.
+     */
+    public Stream<Staff> searchByName(String text, long limit) {
+        return staffRepository.findByName(text, limit);
+    }
+
+    /**
+     * @param date  a date.
+     * @param years a number of years.
+     * @return the date the given number of years before, or {@link LocalDate#MIN} if that is out of range.
+     */
+    private static LocalDate yearsBefore(LocalDate date, long years) {
+        try {
+            return date.minusYears(years);
+        } catch (DateTimeException e) {
+            return LocalDate.MIN;
+        }
     }
 }
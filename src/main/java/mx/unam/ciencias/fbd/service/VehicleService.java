@@ -1,16 +1,26 @@
 package mx.unam.ciencias.fbd.service;
 
+import mx.unam.ciencias.fbd.domain.Staff;
 import mx.unam.ciencias.fbd.domain.Vehicle;
 import mx.unam.ciencias.fbd.repository.VehicleRepository;
 
+import java.util.stream.Stream;
+
 public class VehicleService extends AbstractResourceService<Vehicle, String> {
     private static final VehicleService singleton = new VehicleService();
 
+    private final VehicleRepository vehicleRepository;
+
     private VehicleService() {
         super(VehicleRepository.getInstance());
+        vehicleRepository = VehicleRepository.getInstance();
     }
 
     public static VehicleService getInstance() {
         return singleton;
     }
+
+    public Stream<Vehicle> getAssignedTo(Staff staff) {
+        return vehicleRepository.findByDriverId(staff.getId());
+    }
 }
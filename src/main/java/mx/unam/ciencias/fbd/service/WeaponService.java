@@ -1,18 +1,27 @@
 package mx.unam.ciencias.fbd.service;
 
+import mx.unam.ciencias.fbd.domain.Staff;
 import mx.unam.ciencias.fbd.domain.Weapon;
 import mx.unam.ciencias.fbd.repository.WeaponRepository;
 
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public class WeaponService extends AbstractResourceService<Weapon, UUID> {
     private static WeaponService singleton = new WeaponService();
 
+    private final WeaponRepository weaponRepository;
+
     private WeaponService() {
         super(WeaponRepository.getInstance());
+        weaponRepository = WeaponRepository.getInstance();
     }
 
     public static WeaponService getInstance() {
         return singleton;
     }
+
+    public Stream<Weapon> getAssignedTo(Staff staff) {
+        return weaponRepository.findByUserId(staff.getId());
+    }
 }
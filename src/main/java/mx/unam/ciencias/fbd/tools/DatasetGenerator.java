@@ -0,0 +1,428 @@
+package mx.unam.ciencias.fbd.tools;
+
+import mx.unam.ciencias.fbd.domain.Staff;
+import mx.unam.ciencias.fbd.domain.Vehicle;
+import mx.unam.ciencias.fbd.domain.Weapon;
+import mx.unam.ciencias.fbd.repository.AbstractCSVCrudRepository;
+import mx.unam.ciencias.fbd.repository.StaffRepository;
+import mx.unam.ciencias.fbd.repository.VehicleRepository;
+import mx.unam.ciencias.fbd.repository.WeaponRepository;
+import mx.unam.ciencias.fbd.util.Validate;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Generates consistent staff, vehicle and weapon files of arbitrary size for scale testing. Rows are encoded by the
+ * repositories themselves and written as they are generated, so the tables can be much larger than the heap.
+ * <p>
+ * Staff form a three level tree following the roles: lieutenants at the top, officers reporting to a lieutenant and
+ * policemen reporting to an officer. Every weapon belongs to a generated element and most vehicles have one as their
+ * driver. The skew controls how unevenly subordinates and assets are spread: with no skew every supervisor and every
+ * element is equally likely to be picked, with a skew of 1 picks follow Zipf's law.
+ * <p>
+ * The same seed and settings always produce the same files.
+ */
+public class DatasetGenerator {
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(DatasetGenerator.class.getName());
+    /**
+     * Date the generated ages and hiring dates are relative to, fixed so that the output doesn't depend on the clock.
+     */
+    private static final LocalDate REFERENCE_DATE = LocalDate.of(2018, 1, 1);
+    /**
+     * Share of the vehicles that have a driver.
+     */
+    private static final double DRIVEN_VEHICLES = 0.9;
+    /**
+     * Given names.
+     */
+    private static final String[] NAMES = {"Ana", "Carla", "Daniel", "Diego", "Elena", "Fernando", "Gabriela",
+            "Hugo", "Isabel", "Jorge", "Laura", "Luis", "María", "Mario", "Patricia", "Ricardo", "Rosa", "Sofía"};
+    /**
+     * Family names.
+     */
+    private static final String[] SURNAMES = {"Aragón", "Castillo", "Díaz", "Flores", "García", "Hernández",
+            "López", "Martínez", "Morales", "Pérez", "Ramírez", "Reyes", "Rodríguez", "Sánchez", "Torres", "Vargas"};
+    /**
+     * Vehicle models.
+     */
+    private static final String[] MODELS = {"NISSAN VERSA 2018", "DODGE CHARGER 2017", "FORD F-150 2016",
+            "CHEVROLET TAHOE 2018", "HONDA CB500 2017", "BELL 407 2012"};
+    /**
+     * Vehicle zones.
+     */
+    private static final String[] ZONES = {"CENTRO", "NORTE", "SUR", "ORIENTE", "PONIENTE", "MX"};
+    /**
+     * Weapon descriptions.
+     */
+    private static final String[] CALIBERS = {"9 mm", ".40", ".45", "5.56 mm", "7.62 mm"};
+    /**
+     * Seed of every random choice.
+     */
+    private final long seed;
+    /**
+     * Number of staff elements.
+     */
+    private int staff = 1000;
+    /**
+     * Number of weapons, by default one per element.
+     */
+    private int weapons = -1;
+    /**
+     * Number of vehicles, by default one per four elements.
+     */
+    private int vehicles = -1;
+    /**
+     * Average number of direct subordinates of a supervisor.
+     */
+    private int fanOut = 8;
+    /**
+     * Zipf exponent of supervisor and asset holder picks.
+     */
+    private double skew = 0.5;
+
+    /**
+     * Creates a generator.
+     *
+     * @param seed the seed of every random choice.
+     */
+    public DatasetGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the data set from the command line, run without arguments to print the options.
+     *
+     * @param args console arguments.
+     */
+    public static void main(String[] args) {
+        Path directory = null;
+        DatasetGenerator generator;
+        try {
+            long seed = 42;
+            for (int i = 0; i + 1 < args.length; i += 2)
+                if (args[i].equals("--seed"))
+                    seed = Long.parseLong(args[i + 1]);
+            generator = new DatasetGenerator(seed);
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--out":
+                        directory = Paths.get(value);
+                        break;
+                    case "--staff":
+                        generator.setStaff(Integer.parseInt(value));
+                        break;
+                    case "--weapons":
+                        generator.setWeapons(Integer.parseInt(value));
+                        break;
+                    case "--vehicles":
+                        generator.setVehicles(Integer.parseInt(value));
+                        break;
+                    case "--fan-out":
+                        generator.setFanOut(Integer.parseInt(value));
+                        break;
+                    case "--skew":
+                        generator.setSkew(Double.parseDouble(value));
+                        break;
+                    case "--seed":
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (directory == null || args.length % 2 != 0)
+                throw new IllegalArgumentException("Missing output directory or option value");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Uso: DatasetGenerator --out DIR [--staff N] [--weapons N] [--vehicles N] "
+                    + "[--fan-out N] [--skew S] [--seed N]");
+            return;
+        }
+        try {
+            generator.generate(directory);
+        } catch (IOException e) {
+            LOGGER.severe(e.getMessage());
+        }
+    }
+
+    /**
+     * @param staff the number of staff elements, at least one.
+     */
+    public void setStaff(int staff) {
+        if (staff < 1)
+            throw new IllegalArgumentException("Staff must be positive");
+        this.staff = staff;
+    }
+
+    /**
+     * @param weapons the number of weapons.
+     */
+    public void setWeapons(int weapons) {
+        if (weapons < 0)
+            throw new IllegalArgumentException("Weapons must not be negative");
+        this.weapons = weapons;
+    }
+
+    /**
+     * @param vehicles the number of vehicles, at most 175,760,000 so that every plate is unique.
+     */
+    public void setVehicles(int vehicles) {
+        if (vehicles < 0 || vehicles > 26 * 26 * 26 * 10000)
+            throw new IllegalArgumentException("Vehicles out of range");
+        this.vehicles = vehicles;
+    }
+
+    /**
+     * @param fanOut the average number of direct subordinates of a supervisor, at least one.
+     */
+    public void setFanOut(int fanOut) {
+        if (fanOut < 1)
+            throw new IllegalArgumentException("Fan-out must be positive");
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * @param skew the Zipf exponent of supervisor and asset holder picks, 0 for uniform picks.
+     */
+    public void setSkew(double skew) {
+        if (skew < 0)
+            throw new IllegalArgumentException("Skew must not be negative");
+        this.skew = skew;
+    }
+
+    /**
+     * Writes the staff, vehicle and weapon files to the given directory, replacing any previous ones.
+     *
+     * @param directory the destination, created if needed.
+     * @throws IOException if a file cannot be written.
+     */
+    public void generate(Path directory) throws IOException {
+        Validate.notNull(directory);
+        Files.createDirectories(directory);
+        Random random = new Random(seed);
+        UUID[] ids = generateStaff(StaffRepository.at(directory), directory.resolve("staff.csv"), random);
+        generateWeapons(WeaponRepository.at(directory), directory.resolve("weapon.csv"), ids, random);
+        generateVehicles(VehicleRepository.at(directory), directory.resolve("vehicle.csv"), ids, random);
+    }
+
+    /**
+     * Writes the staff file: lieutenants first, then officers and then policemen.
+     *
+     * @param repository encoder of the rows.
+     * @param file       the staff file.
+     * @param random     source of randomness.
+     * @return the ids of the elements in file order.
+     * @throws IOException if the file cannot be written.
+     */
+    private UUID[] generateStaff(StaffRepository repository, Path file, Random random) throws IOException {
+        // size the levels so that every supervisor has fanOut subordinates on average
+        int lieutenants = (int) Math.max(1, Math.ceil(staff / (1 + fanOut + (double) fanOut * fanOut)));
+        int officers = (int) Math.min(staff - lieutenants, (long) lieutenants * fanOut);
+        UUID[] ids = new UUID[staff];
+        Zipf lieutenantPicks = new Zipf(lieutenants, skew, random);
+        Zipf officerPicks = new Zipf(Math.max(officers, 1), skew, random);
+        try (CSVPrinter printer = open(file)) {
+            for (int i = 0; i < staff; i++) {
+                ids[i] = uuid(random);
+                Staff.Role role;
+                UUID supervisor = null;
+                if (i < lieutenants) {
+                    role = Staff.Role.LIEUTENANT;
+                } else if (i < lieutenants + officers) {
+                    role = Staff.Role.OFFICER;
+                    supervisor = ids[lieutenantPicks.next()];
+                } else {
+                    role = Staff.Role.POLICEMAN;
+                    supervisor = ids[officers == 0 ? lieutenantPicks.next() : lieutenants + officerPicks.next()];
+                }
+                // hired at 18 or later
+                LocalDate dob = REFERENCE_DATE.minusYears(20 + random.nextInt(40)).minusDays(random.nextInt(365));
+                LocalDate adulthood = dob.plusYears(18);
+                LocalDate doh = adulthood.plusDays(random.nextInt(
+                        (int) adulthood.until(REFERENCE_DATE, ChronoUnit.DAYS) + 1));
+                Staff entity = new Staff(pick(NAMES, random) + " " + pick(SURNAMES, random),
+                        random.nextBoolean() ? Staff.Sex.FEMALE : Staff.Sex.MALE, dob, doh, role);
+                entity.setId(ids[i]);
+                entity.setSupervisorID(supervisor);
+                write(printer, repository, entity);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Writes the weapon file, every weapon belongs to a generated element.
+     *
+     * @param repository encoder of the rows.
+     * @param file       the weapon file.
+     * @param ids        the ids of the elements.
+     * @param random     source of randomness.
+     * @throws IOException if the file cannot be written.
+     */
+    private void generateWeapons(WeaponRepository repository, Path file, UUID[] ids, Random random)
+            throws IOException {
+        int count = weapons < 0 ? staff : weapons;
+        Zipf holders = new Zipf(ids.length, skew, random);
+        Weapon.Type[] types = Weapon.Type.values();
+        try (CSVPrinter printer = open(file)) {
+            for (int i = 0; i < count; i++) {
+                Weapon entity = new Weapon(types[random.nextInt(types.length)], pick(CALIBERS, random),
+                        ids[holders.next()]);
+                entity.setId(uuid(random));
+                write(printer, repository, entity);
+            }
+        }
+    }
+
+    /**
+     * Writes the vehicle file, most vehicles have a generated element as their driver.
+     *
+     * @param repository encoder of the rows.
+     * @param file       the vehicle file.
+     * @param ids        the ids of the elements.
+     * @param random     source of randomness.
+     * @throws IOException if the file cannot be written.
+     */
+    private void generateVehicles(VehicleRepository repository, Path file, UUID[] ids, Random random)
+            throws IOException {
+        int count = vehicles < 0 ? staff / 4 : vehicles;
+        Zipf drivers = new Zipf(ids.length, skew, random);
+        Vehicle.Type[] types = Vehicle.Type.values();
+        try (CSVPrinter printer = open(file)) {
+            for (int i = 0; i < count; i++) {
+                Vehicle entity = new Vehicle(plates(i), types[random.nextInt(types.length)], pick(MODELS, random),
+                        "Unidad " + (i + 1));
+                entity.setZone(pick(ZONES, random));
+                if (random.nextDouble() < DRIVEN_VEHICLES)
+                    entity.setDriverId(ids[drivers.next()]);
+                write(printer, repository, entity);
+            }
+        }
+    }
+
+    /**
+     * Opens a file for writing, replacing its contents.
+     *
+     * @param file the file.
+     * @return a printer over the file.
+     * @throws IOException if the file cannot be opened.
+     */
+    private static CSVPrinter open(Path file) throws IOException {
+        return new CSVPrinter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), CSVFormat.DEFAULT);
+    }
+
+    /**
+     * Encodes an entity with its repository and writes it as a row.
+     *
+     * @param printer    the destination.
+     * @param repository the entity's repository.
+     * @param entity     the entity.
+     * @throws IOException if the row cannot be written.
+     */
+    private static <S> void write(CSVPrinter printer, AbstractCSVCrudRepository<S, ?> repository, S entity)
+            throws IOException {
+        printer.printRecord(repository.asRecord(entity));
+    }
+
+    /**
+     * @param random source of randomness.
+     * @return a version 4 UUID drawn from the given source.
+     */
+    private static UUID uuid(Random random) {
+        long most = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long least = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+        return new UUID(most, least);
+    }
+
+    /**
+     * @param number a vehicle's number.
+     * @return unique plates for the given number, from AAA-0000 to ZZZ-9999.
+     */
+    private static String plates(int number) {
+        int letters = number / 10000;
+        char[] prefix = new char[3];
+        for (int i = 2; i >= 0; i--) {
+            prefix[i] = (char) ('A' + letters % 26);
+            letters /= 26;
+        }
+        return String.format("%s-%04d", new String(prefix), number % 10000);
+    }
+
+    /**
+     * @param values the candidates.
+     * @param random source of randomness.
+     * @return a random candidate.
+     */
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Draws positions from 0 to n - 1 with probability proportional to 1 / (rank + 1)^skew, ranks being a random
+     * permutation of the positions so that the favored ones are spread over the file.
+     */
+    private static final class Zipf {
+        /**
+         * Cumulative weight of every rank.
+         */
+        private final double[] cumulative;
+        /**
+         * Position of every rank.
+         */
+        private final int[] positions;
+        /**
+         * Source of randomness.
+         */
+        private final Random random;
+
+        /**
+         * Creates a distribution over n positions.
+         *
+         * @param n      the number of positions.
+         * @param skew   the exponent, 0 for a uniform distribution.
+         * @param random source of randomness.
+         */
+        Zipf(int n, double skew, Random random) {
+            this.random = random;
+            cumulative = new double[n];
+            positions = new int[n];
+            double total = 0;
+            for (int rank = 0; rank < n; rank++) {
+                total += skew == 0 ? 1 : 1 / Math.pow(rank + 1, skew);
+                cumulative[rank] = total;
+                positions[rank] = rank;
+            }
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = positions[i];
+                positions[i] = positions[j];
+                positions[j] = swap;
+            }
+        }
+
+        /**
+         * @return the next drawn position.
+         */
+        int next() {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int rank = Arrays.binarySearch(cumulative, target);
+            rank = rank < 0 ? -rank - 1 : rank;
+            return positions[Math.min(rank, positions.length - 1)];
+        }
+    }
+}
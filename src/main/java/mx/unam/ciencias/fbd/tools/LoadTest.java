@@ -0,0 +1,278 @@
+package mx.unam.ciencias.fbd.tools;
+
+import mx.unam.ciencias.fbd.server.Server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load test of the HTTP server: a number of clients send requests back to back over kept-alive connections, looking
+ * up random staff elements and, for a fraction of the requests, their subordinates. Without {@code --url} the server is
+ * started in this process over the data directory, listening on localhost.
+ * <p>
+ * Prints the requests per second and the latency percentiles measured after the warm-up. The process exits with
+ * status 1 if any request fails.
+ */
+public class LoadTest {
+    /**
+     * Matches the id of a staff element in a JSON response.
+     */
+    private static final Pattern ID = Pattern.compile("\"id\":\"([0-9a-fA-F-]{36})\"");
+    /**
+     * Base URL of the server, null to start one.
+     */
+    private String url;
+    /**
+     * Number of clients.
+     */
+    private int clients = 32;
+    /**
+     * Seconds measured.
+     */
+    private int seconds = 10;
+    /**
+     * Seconds before the measure starts.
+     */
+    private int warmup = 2;
+    /**
+     * Fraction of requests listing subordinates instead of looking up an element.
+     */
+    private double subordinates = 0.2;
+    /**
+     * Seed of the clients' choices.
+     */
+    private long seed = 42;
+
+    /**
+     * Runs the load test.
+     *
+     * @param args options, see the usage message.
+     */
+    public static void main(String[] args) {
+        LoadTest test = new LoadTest();
+        try {
+            if (args.length % 2 != 0)
+                throw new IllegalArgumentException("Falta el valor de una opción");
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                try {
+                    switch (args[i]) {
+                        case "--url":
+                            test.url = value.replaceAll("/+$", "");
+                            break;
+                        case "--clients":
+                            test.clients = Integer.parseInt(value);
+                            break;
+                        case "--seconds":
+                            test.seconds = Integer.parseInt(value);
+                            break;
+                        case "--warmup":
+                            test.warmup = Integer.parseInt(value);
+                            break;
+                        case "--subordinates":
+                            test.subordinates = Double.parseDouble(value);
+                            break;
+                        case "--seed":
+                            test.seed = Long.parseLong(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Opción desconocida " + args[i]);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Valor inválido para " + args[i] + ": " + value);
+                }
+            }
+            if (test.clients < 1 || test.seconds < 1 || test.warmup < 0)
+                throw new IllegalArgumentException("Los clientes y los segundos deben ser positivos y el calentamiento "
+                        + "no puede ser negativo");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Uso: LoadTest [--url URL] [--clients N] [--seconds N] [--warmup N] "
+                    + "[--subordinates FRACCIÓN] [--seed N]");
+            return;
+        }
+        try {
+            if (!test.run())
+                System.exit(1);
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Error: " + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the load test and prints the results.
+     *
+     * @return whether every request succeeded.
+     * @throws IOException          if the server can't be started or the staff can't be listed.
+     * @throws InterruptedException if interrupted while waiting for the clients.
+     */
+    private boolean run() throws IOException, InterruptedException {
+        // keep a connection per client alive between requests
+        System.setProperty("http.maxConnections", String.valueOf(clients));
+        Server server = null;
+        if (url == null) {
+            server = new Server(new InetSocketAddress("127.0.0.1", 0), Server.DEFAULT_MAX_REQUESTS,
+                    Server.DEFAULT_BACKLOG);
+            server.start();
+            url = "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+        try {
+            List<String> ids = new ArrayList<>();
+            Matcher matcher = ID.matcher(get(url + "/staff"));
+            while (matcher.find())
+                ids.add(matcher.group(1));
+            if (ids.isEmpty())
+                throw new IOException("No hay elementos que consultar en " + url);
+
+            long start = System.nanoTime();
+            long measureFrom = start + warmup * 1_000_000_000L;
+            long end = measureFrom + seconds * 1_000_000_000L;
+            Client[] workers = new Client[clients];
+            Thread[] threads = new Thread[clients];
+            for (int i = 0; i < clients; i++) {
+                workers[i] = new Client(ids, new Random(seed + i), measureFrom, end);
+                threads[i] = new Thread(workers[i], "load-" + i);
+                threads[i].start();
+            }
+            long requests = 0;
+            long errors = 0;
+            long[] latencies = new long[0];
+            for (int i = 0; i < clients; i++) {
+                threads[i].join();
+                errors += workers[i].errors;
+                long[] measured = Arrays.copyOf(workers[i].latencies, workers[i].count);
+                requests += measured.length;
+                long[] merged = Arrays.copyOf(latencies, latencies.length + measured.length);
+                System.arraycopy(measured, 0, merged, latencies.length, measured.length);
+                latencies = merged;
+            }
+            Arrays.sort(latencies);
+            System.out.println(String.format("%s: %d clientes, %d s, %d elementos", url, clients, seconds,
+                    ids.size()));
+            System.out.println(String.format("%d peticiones, %d errores, %.1f peticiones/s", requests, errors,
+                    requests / (double) seconds));
+            System.out.println(String.format("latencia (ms): p50 %.3f  p90 %.3f  p99 %.3f  p99.9 %.3f  máx %.3f",
+                    percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                    percentile(latencies, 99.9), percentile(latencies, 100)));
+            return errors == 0;
+        } finally {
+            if (server != null)
+                server.stop(0);
+        }
+    }
+
+    /**
+     * @param sorted     sorted latencies in nanoseconds.
+     * @param percentile a percentile between 0 and 100.
+     * @return the percentile in milliseconds, zero if there are no latencies.
+     */
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0)
+            return 0;
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+
+    /**
+     * Sends a GET request and reads the whole response, so the connection can be reused.
+     *
+     * @param url the request's URL.
+     * @return the response's body.
+     * @throws IOException if the request fails or its status isn't 200.
+     */
+    private static String get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        int status = connection.getResponseCode();
+        InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (stream != null) {
+            try (InputStream in = stream) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1)
+                    body.write(buffer, 0, read);
+            }
+        }
+        if (status != 200)
+            throw new IOException("Estado " + status + " al consultar " + url);
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A client sending requests back to back.
+     */
+    private class Client implements Runnable {
+        /**
+         * Ids of the staff elements to look up.
+         */
+        private final List<String> ids;
+        /**
+         * Source of the client's choices.
+         */
+        private final Random random;
+        /**
+         * Time the measure starts, as given by {@link System#nanoTime()}.
+         */
+        private final long measureFrom;
+        /**
+         * Time the client stops.
+         */
+        private final long end;
+        /**
+         * Failed requests.
+         */
+        private long errors;
+        /**
+         * Measured latencies in nanoseconds.
+         */
+        private long[] latencies = new long[1024];
+        /**
+         * Number of measured latencies.
+         */
+        private int count;
+
+        /**
+         * @param ids         ids of the staff elements to look up.
+         * @param random      source of the client's choices.
+         * @param measureFrom time the measure starts.
+         * @param end         time the client stops.
+         */
+        private Client(List<String> ids, Random random, long measureFrom, long end) {
+            this.ids = ids;
+            this.random = random;
+            this.measureFrom = measureFrom;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                String id = ids.get(random.nextInt(ids.size()));
+                String path = random.nextDouble() < subordinates ? "/staff/" + id + "/subordinates" : "/staff/" + id;
+                try {
+                    get(url + path);
+                } catch (IOException e) {
+                    errors++;
+                }
+                if (now >= measureFrom) {
+                    if (count == latencies.length)
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    latencies[count++] = System.nanoTime() - now;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package mx.unam.ciencias.fbd.tools;
+
+import mx.unam.ciencias.fbd.domain.Staff;
+import mx.unam.ciencias.fbd.repository.FsyncPolicy;
+import mx.unam.ciencias.fbd.repository.ReadMode;
+import mx.unam.ciencias.fbd.repository.StaffRepository;
+import mx.unam.ciencias.fbd.repository.StorageMode;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Hammers a staff repository with parallel saves and deletions while other threads read it, under every storage and
+ * access configuration, and checks that no write was lost.
+ * <p>
+ * Every writer owns a disjoint set of elements and keeps its own model of them, so every result it gets back can be
+ * checked exactly: a save must be readable right away, a deletion must only succeed if the element existed. Readers
+ * check that full scans never return an element twice. Once the writers are done, both the repository and a fresh
+ * repository reading the same file must hold exactly the union of the models. The process exits with status 1 if any
+ * check fails.
+ */
+public class StressTest {
+    /**
+     * Number of writer threads.
+     */
+    private int writers = 8;
+    /**
+     * Number of reader threads.
+     */
+    private int readers = 2;
+    /**
+     * Operations per writer.
+     */
+    private int operations = 500;
+    /**
+     * Elements owned by every writer.
+     */
+    private int elements = 16;
+    /**
+     * Seed of the writers' choices.
+     */
+    private long seed = 42;
+    /**
+     * When the write-ahead log is forced.
+     */
+    private FsyncPolicy fsync = FsyncPolicy.ALWAYS;
+
+    /**
+     * Runs the stress test under every configuration.
+     *
+     * @param args options, see the usage message.
+     */
+    public static void main(String[] args) {
+        StressTest test = new StressTest();
+        try {
+            if (args.length % 2 != 0)
+                throw new IllegalArgumentException("Falta el valor de una opción");
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                try {
+                    switch (args[i]) {
+                        case "--writers":
+                            test.setWriters(Integer.parseInt(value));
+                            break;
+                        case "--readers":
+                            test.setReaders(Integer.parseInt(value));
+                            break;
+                        case "--operations":
+                            test.setOperations(Integer.parseInt(value));
+                            break;
+                        case "--elements":
+                            test.setElements(Integer.parseInt(value));
+                            break;
+                        case "--seed":
+                            test.seed = Long.parseLong(value);
+                            break;
+                        case "--fsync":
+                            test.fsync = Arrays.stream(FsyncPolicy.values())
+                                    .filter(policy -> policy.name().equals(value))
+                                    .findFirst()
+                                    .orElseThrow(() -> new IllegalArgumentException("Política de fsync inválida "
+                                            + value));
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Opción desconocida " + args[i]);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Valor inválido para " + args[i] + ": " + value);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Uso: StressTest [--writers N] [--readers N] [--operations N] [--elements N] "
+                    + "[--seed N] [--fsync ALWAYS|INTERVAL|OS]");
+            return;
+        }
+        boolean passed = true;
+        for (Configuration configuration : Configuration.values()) {
+            try {
+                passed &= test.run(configuration);
+            } catch (Exception e) {
+                System.out.println(configuration + ": " + e);
+                passed = false;
+            }
+        }
+        if (!passed)
+            System.exit(1);
+    }
+
+    /**
+     * Runs the stress test under a single configuration over a fresh file and prints the outcome.
+     *
+     * @param configuration how the repository stores and reaches its rows.
+     * @return whether every check passed.
+     * @throws Exception if the file cannot be set up or a thread is interrupted.
+     */
+    boolean run(Configuration configuration) throws Exception {
+        Path directory = Files.createTempDirectory("fbd-stress");
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(writers + readers);
+        try {
+            Files.createFile(directory.resolve("staff.csv"));
+            StaffRepository repository = configuration.open(directory, fsync);
+            Queue<String> failures = new ConcurrentLinkedQueue<>();
+            List<Map<UUID, Staff>> models = new ArrayList<>();
+            long start = System.nanoTime();
+            List<Future<?>> writes = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                Map<UUID, Staff> model = new HashMap<>();
+                models.add(model);
+                int writer = i;
+                writes.add(pool.submit(() -> write(repository, writer, model, failures)));
+            }
+            List<Future<?>> reads = new ArrayList<>();
+            for (int i = 0; i < readers; i++)
+                reads.add(pool.submit(() -> read(repository, writing, failures)));
+            for (Future<?> write : writes)
+                write.get();
+            long millis = (System.nanoTime() - start) / 1000000;
+            writing.set(false);
+            for (Future<?> read : reads)
+                read.get();
+
+            Map<UUID, String> expected = new HashMap<>();
+            models.forEach(model -> model.forEach((id, staff) -> expected.put(id, staff.getName())));
+            check("repositorio", repository, expected, failures);
+            check("archivo", configuration.open(directory, fsync), expected, failures);
+            for (int i = 0; i < writers; i++) {
+                int count = repository.countBySupervisorId(supervisor(i));
+                if (count != models.get(i).size())
+                    failures.add("índice de supervisor " + i + ": " + count + " en vez de " + models.get(i).size());
+            }
+
+            if (failures.isEmpty()) {
+                System.out.println(String.format("%s: %d operaciones en %d ms, OK", configuration,
+                        writers * operations, millis));
+                return true;
+            }
+            System.out.println(String.format("%s: %d fallas", configuration, failures.size()));
+            failures.stream().limit(10).forEach(failure -> System.out.println("\t" + failure));
+            return false;
+        } finally {
+            writing.set(false);
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                    Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Saves and deletes the elements owned by a writer at random, checking every result against its model.
+     *
+     * @param repository the repository.
+     * @param writer     the writer's number.
+     * @param model      the live elements owned by the writer, updated as it goes.
+     * @param failures   receives the failed checks.
+     */
+    private void write(StaffRepository repository, int writer, Map<UUID, Staff> model, Queue<String> failures) {
+        Random random = new Random(seed + writer);
+        List<Staff> owned = new ArrayList<>();
+        for (int i = 0; i < elements; i++) {
+            Staff staff = new Staff("w" + writer, Staff.Sex.FEMALE, LocalDate.of(1990, 1, 1), LocalDate.of(2010, 1, 1),
+                    Staff.Role.POLICEMAN);
+            staff.setSupervisorID(supervisor(writer));
+            owned.add(staff);
+        }
+        for (int operation = 0; operation < operations; operation++) {
+            Staff staff = owned.get(random.nextInt(owned.size()));
+            int choice = random.nextInt(100);
+            if (choice < 55) {
+                staff.setName(String.format("w%d-v%d", writer, operation));
+                if (repository.save(staff) == null)
+                    failures.add("save falló: " + staff.getId());
+                model.put(staff.getId(), staff);
+                Optional<Staff> found = repository.findById(staff.getId());
+                if (!found.isPresent() || !found.get().getName().equals(staff.getName()))
+                    failures.add("save perdido: " + staff.getId() + " " + staff.getName());
+            } else if (choice < 85) {
+                boolean existed = model.remove(staff.getId()) != null;
+                if (repository.deleteById(staff.getId()) != existed)
+                    failures.add("delete inesperado: " + staff.getId() + ", existía " + existed);
+                if (repository.findById(staff.getId()).isPresent())
+                    failures.add("delete perdido: " + staff.getId());
+            } else {
+                List<Staff> batch = new ArrayList<>();
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    Staff member = owned.get(random.nextInt(owned.size()));
+                    member.setName(String.format("w%d-v%d-%d", writer, operation, i));
+                    batch.add(member);
+                    model.put(member.getId(), member);
+                }
+                if (repository.saveAll(batch).size() != batch.size())
+                    failures.add("saveAll falló");
+            }
+        }
+    }
+
+    /**
+     * Scans the repository and looks random elements up until the writers are done.
+     *
+     * @param repository the repository.
+     * @param writing    whether the writers are still running.
+     * @param failures   receives the failed checks.
+     */
+    private static void read(StaffRepository repository, AtomicBoolean writing, Queue<String> failures) {
+        while (writing.get()) {
+            List<UUID> ids;
+            try (Stream<Staff> all = repository.findAll()) {
+                ids = all.map(Staff::getId).collect(Collectors.toList());
+            }
+            if (new HashSet<>(ids).size() != ids.size())
+                failures.add("findAll devolvió elementos repetidos");
+            for (int i = 0; i < ids.size(); i += 7)
+                repository.findById(ids.get(i));
+        }
+    }
+
+    /**
+     * Checks that a repository holds exactly the expected elements.
+     *
+     * @param name       name of the repository in the failure messages.
+     * @param repository the repository.
+     * @param expected   names of the expected elements, keyed by id.
+     * @param failures   receives the failed checks.
+     */
+    private static void check(String name, StaffRepository repository, Map<UUID, String> expected,
+                              Queue<String> failures) {
+        Map<UUID, String> actual = new HashMap<>();
+        try (Stream<Staff> all = repository.findAll()) {
+            all.forEach(staff -> actual.put(staff.getId(), staff.getName()));
+        }
+        Set<UUID> ids = new HashSet<>(expected.keySet());
+        ids.addAll(actual.keySet());
+        for (UUID id : ids)
+            if (!String.valueOf(expected.get(id)).equals(String.valueOf(actual.get(id))))
+                failures.add(name + ": " + id + " es " + actual.get(id) + " en vez de " + expected.get(id));
+    }
+
+    /**
+     * @param writer a writer's number.
+     * @return the supervisor of every element owned by the writer.
+     */
+    private static UUID supervisor(int writer) {
+        return new UUID(0, writer);
+    }
+
+    /**
+     * @param writers the number of writer threads, at least one.
+     */
+    public void setWriters(int writers) {
+        if (writers < 1)
+            throw new IllegalArgumentException("El número de escritores debe ser positivo");
+        this.writers = writers;
+    }
+
+    /**
+     * @param readers the number of reader threads.
+     */
+    public void setReaders(int readers) {
+        if (readers < 0)
+            throw new IllegalArgumentException("El número de lectores no puede ser negativo");
+        this.readers = readers;
+    }
+
+    /**
+     * @param operations the number of operations per writer, at least one.
+     */
+    public void setOperations(int operations) {
+        if (operations < 1)
+            throw new IllegalArgumentException("El número de operaciones debe ser positivo");
+        this.operations = operations;
+    }
+
+    /**
+     * @param elements the number of elements owned by every writer, at least one.
+     */
+    public void setElements(int elements) {
+        if (elements < 1)
+            throw new IllegalArgumentException("El número de elementos debe ser positivo");
+        this.elements = elements;
+    }
+
+    /**
+     * How the repository under test stores and reaches its rows.
+     */
+    enum Configuration {
+        CACHE(true, true, StorageMode.IN_PLACE, ReadMode.STREAM),
+        CACHE_LOG(true, true, StorageMode.LOG, ReadMode.STREAM),
+        INDEX(false, true, StorageMode.IN_PLACE, ReadMode.STREAM),
+        INDEX_LOG(false, true, StorageMode.LOG, ReadMode.MAPPED),
+        SCAN(false, false, StorageMode.IN_PLACE, ReadMode.STREAM),
+        MAPPED_SCAN(false, false, StorageMode.IN_PLACE, ReadMode.MAPPED);
+
+        /**
+         * Whether the resident cache is enabled.
+         */
+        private final boolean cache;
+        /**
+         * Whether the primary key index is enabled.
+         */
+        private final boolean index;
+        /**
+         * How updates are applied.
+         */
+        private final StorageMode storage;
+        /**
+         * How raw rows are scanned.
+         */
+        private final ReadMode read;
+
+        Configuration(boolean cache, boolean index, StorageMode storage, ReadMode read) {
+            this.cache = cache;
+            this.index = index;
+            this.storage = storage;
+            this.read = read;
+        }
+
+        /**
+         * Opens a repository over a directory with this configuration.
+         *
+         * @param directory the directory holding the staff file.
+         * @param fsync     when the write-ahead log is forced.
+         * @return the repository.
+         */
+        StaffRepository open(Path directory, FsyncPolicy fsync) {
+            StaffRepository repository = StaffRepository.at(directory);
+            repository.setCacheEnabled(cache);
+            repository.setIndexEnabled(index);
+            repository.setStorageMode(storage);
+            repository.setReadMode(read);
+            repository.setFsyncPolicy(fsync);
+            return repository;
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package mx.unam.ciencias.fbd.util;
 
+import java.io.BufferedOutputStream;
+import java.io.PrintStream;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.Scanner;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public class ConsoleUtils {
+    /**
+     * Size of the buffer lists are printed through.
+     */
+    private static final int LIST_BUFFER = 1 << 16;
+
     /**
      * Method that asks the user for a valid string using a custom message and
      * only admits String's that match the provided regular expression. It then
@@ -34,8 +43,24 @@ public class ConsoleUtils {
      * @return the string provided by the user that matches {@code regex}.
      */
     public static String getValidString(String regex, Scanner scan, String prefix, String errorMsg) {
+        Pattern pattern = Pattern.compile(regex);
+        return getValid(scan, prefix, errorMsg, str -> pattern.matcher(str).matches() ? str : null);
+    }
+
+    /**
+     * Method that asks the user for lines until one of them can be parsed with the given function, and returns the
+     * parsed value.
+     *
+     * @param scan     The scanner that's been used to retrieve the user input.
+     * @param prefix   The prefix to be put on the input prompt.
+     * @param errorMsg Error message.
+     * @param parser   Parses a line, returns null if the line is invalid.
+     * @param <T>      Type of the parsed value.
+     * @return the first value parsed from the user input.
+     */
+    public static <T> T getValid(Scanner scan, String prefix, String errorMsg, Function<String, T> parser) {
         boolean seen = false;
-        String str;
+        T result;
         do {
             if (seen) {
                 error(errorMsg);
@@ -46,10 +71,10 @@ public class ConsoleUtils {
             while (!scan.hasNextLine()) {
                 scan.next();
             }
-            str = scan.nextLine();
+            result = parser.apply(scan.nextLine());
             seen = true;
-        } while (!str.matches(regex));
-        return str;
+        } while (result == null);
+        return result;
     }
 
     /**
@@ -148,7 +173,31 @@ public class ConsoleUtils {
      * @param message the String to be decorated.
      */
     public static void error(String message) {
-        System.out.println("ERROR: " + message);
+        error(System.out, message);
+    }
+
+    /**
+     * Prints an adorned version of a message using the prefix "ERROR: " to the given stream.
+     *
+     * @param out     the stream.
+     * @param message the String to be decorated.
+     */
+    public static void error(PrintStream out, String message) {
+        out.println("ERROR: " + message);
+    }
+
+    /**
+     * Prints every element of a stream on its own line. The lines are gathered in a large buffer and handed to the
+     * given stream a buffer at a time, so an auto-flushing stream like {@link System#out} isn't flushed once per line.
+     *
+     * @param out      the stream.
+     * @param elements the elements, the stream is consumed but not closed.
+     */
+    public static void printAll(PrintStream out, Stream<?> elements) {
+        // not closed, that would close the given stream
+        PrintStream buffered = new PrintStream(new BufferedOutputStream(out, LIST_BUFFER), false);
+        elements.forEach(buffered::println);
+        buffered.flush();
     }
 
     public static void input() {
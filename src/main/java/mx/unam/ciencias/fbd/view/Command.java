@@ -0,0 +1,73 @@
+package mx.unam.ciencias.fbd.view;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed command: the operation named by its first word, its arguments and its named options, without quotes.
+ */
+public final class Command {
+    /**
+     * The command's operation.
+     */
+    private final Enum<?> operation;
+    /**
+     * The command's arguments.
+     */
+    private final List<String> arguments;
+    /**
+     * The values of the command's options, by name.
+     */
+    private final Map<String, String> options;
+
+    /**
+     * @param operation the command's operation.
+     * @param arguments the command's arguments.
+     * @param options   the values of the command's options, by name.
+     */
+    Command(Enum<?> operation, List<String> arguments, Map<String, String> options) {
+        this.operation = operation;
+        this.arguments = Collections.unmodifiableList(arguments);
+        this.options = Collections.unmodifiableMap(options);
+    }
+
+    /**
+     * @return the command's operation.
+     */
+    public Enum<?> getOperation() {
+        return operation;
+    }
+
+    /**
+     * @param index the argument's position, starting at zero.
+     * @return the argument.
+     */
+    public String getArgument(int index) {
+        return arguments.get(index);
+    }
+
+    /**
+     * @return the command's arguments.
+     */
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    /**
+     * @param name the option's name.
+     * @return the option's value, or null if the command doesn't have it.
+     */
+    public String getOption(String name) {
+        return options.get(name);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(operation.name());
+        for (String argument : arguments)
+            result.append(" \"").append(argument).append('"');
+        options.forEach((name, value) -> result.append(' ').append(name).append(" \"").append(value).append('"'));
+        return result.toString();
+    }
+}
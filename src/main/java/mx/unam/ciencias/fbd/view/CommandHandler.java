@@ -1,5 +1,7 @@
 package mx.unam.ciencias.fbd.view;
 
+import java.io.PrintStream;
+
 public interface CommandHandler {
-    void handle(String command);
+    void handle(Command command, PrintStream out);
 }
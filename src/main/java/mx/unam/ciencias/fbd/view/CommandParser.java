@@ -0,0 +1,189 @@
+package mx.unam.ciencias.fbd.view;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses the commands of a panel. A command is a keyword, the name of an operation, followed by its arguments: either a
+ * number of quoted strings, like {@code GET "ID"}, a number of words, like {@code AGE_BETWEEN 20 30}, or a single word
+ * out of a fixed set, like {@code USE STAFF}. The arguments may be followed by named options in any order, each a word
+ * followed by its value, like {@code LIST LIMIT 10 AFTER "ID"}. The keywords are looked up in a table built once, and
+ * every line is split into words and quoted strings in a single pass, without regular expressions.
+ */
+final class CommandParser {
+    /**
+     * Syntax of every operation, by keyword.
+     */
+    private final Map<String, Syntax> syntaxes = new HashMap<>();
+
+    /**
+     * Accepts an operation followed by a number of quoted arguments.
+     *
+     * @param operation the operation, its name is the keyword.
+     * @param arguments the number of quoted arguments.
+     */
+    void add(Enum<?> operation, int arguments) {
+        add(operation, arguments, true);
+    }
+
+    /**
+     * Accepts an operation followed by a number of quoted arguments or of words.
+     *
+     * @param operation the operation, its name is the keyword.
+     * @param arguments the number of arguments.
+     * @param quoted    whether the arguments are quoted strings instead of words.
+     */
+    void add(Enum<?> operation, int arguments, boolean quoted) {
+        syntaxes.put(operation.name(), new Syntax(operation, arguments, quoted, null));
+    }
+
+    /**
+     * Accepts an operation followed by a single unquoted word.
+     *
+     * @param operation the operation, its name is the keyword.
+     * @param choices   the accepted words.
+     */
+    void add(Enum<?> operation, Collection<String> choices) {
+        syntaxes.put(operation.name(), new Syntax(operation, 1, false, new HashSet<>(choices)));
+    }
+
+    /**
+     * Accepts a named option after the arguments of an operation, the operation must have been added.
+     *
+     * @param operation the operation.
+     * @param name      the option's name.
+     * @param quoted    whether the option's value is a quoted string instead of a single word.
+     */
+    void option(Enum<?> operation, String name, boolean quoted) {
+        syntaxes.get(operation.name()).options.put(name, quoted);
+    }
+
+    /**
+     * @param line a line of input.
+     * @return the command in the line, or null if the line isn't a valid command.
+     */
+    Command parse(String line) {
+        int length = line.length();
+        int position = skipWhitespace(line, 0);
+        int start = position;
+        position = skipWord(line, position);
+        Syntax syntax = syntaxes.get(line.substring(start, position));
+        if (syntax == null)
+            return null;
+        List<String> arguments = new ArrayList<>(syntax.arguments);
+        Map<String, String> options = new HashMap<>();
+        while ((position = skipWhitespace(line, position)) < length) {
+            if (arguments.size() < syntax.arguments) {
+                boolean quoted = line.charAt(position) == '"';
+                if (quoted != syntax.quoted)
+                    return null;
+                start = position;
+                position = quoted ? skipQuoted(line, position) : skipWord(line, position);
+                if (position < 0)
+                    return null;
+                String argument = quoted ? line.substring(start + 1, position - 1) : line.substring(start, position);
+                if (syntax.choices != null && !syntax.choices.contains(argument))
+                    return null;
+                arguments.add(argument);
+            } else {
+                // an option's name followed by its value
+                start = position;
+                position = skipWord(line, position);
+                String name = line.substring(start, position);
+                Boolean quoted = syntax.options.get(name);
+                if (quoted == null || options.containsKey(name))
+                    return null;
+                position = skipWhitespace(line, position);
+                if (position == length || (line.charAt(position) == '"') != quoted)
+                    return null;
+                start = position;
+                position = quoted ? skipQuoted(line, position) : skipWord(line, position);
+                if (position < 0)
+                    return null;
+                options.put(name, quoted ? line.substring(start + 1, position - 1) : line.substring(start, position));
+            }
+            // arguments and options are separated by whitespace
+            if (position < length && !Character.isWhitespace(line.charAt(position)))
+                return null;
+        }
+        if (arguments.size() != syntax.arguments)
+            return null;
+        return new Command(syntax.operation, arguments, options);
+    }
+
+    /**
+     * @param line     a line.
+     * @param position a position in the line.
+     * @return the position of the first whitespace character at or after the given position, or the line's length.
+     */
+    private static int skipWord(String line, int position) {
+        while (position < line.length() && !Character.isWhitespace(line.charAt(position)))
+            position++;
+        return position;
+    }
+
+    /**
+     * @param line     a line.
+     * @param position the position of an opening quote in the line.
+     * @return the position past the closing quote, or -1 if there's none.
+     */
+    private static int skipQuoted(String line, int position) {
+        int end = line.indexOf('"', position + 1);
+        return end < 0 ? -1 : end + 1;
+    }
+
+    /**
+     * @param line     a line.
+     * @param position a position in the line.
+     * @return the position of the first character at or after the given position that isn't whitespace.
+     */
+    private static int skipWhitespace(String line, int position) {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position)))
+            position++;
+        return position;
+    }
+
+    /**
+     * What may follow a keyword.
+     */
+    private static final class Syntax {
+        /**
+         * The operation named by the keyword.
+         */
+        private final Enum<?> operation;
+        /**
+         * Number of arguments.
+         */
+        private final int arguments;
+        /**
+         * Whether the arguments are quoted strings instead of words.
+         */
+        private final boolean quoted;
+        /**
+         * Accepted words, or null if any word or quoted string is accepted.
+         */
+        private final Set<String> choices;
+        /**
+         * Whether the value of every option is quoted, by name.
+         */
+        private final Map<String, Boolean> options = new HashMap<>();
+
+        /**
+         * @param operation the operation named by the keyword.
+         * @param arguments number of arguments.
+         * @param quoted    whether the arguments are quoted strings instead of words.
+         * @param choices   accepted words, or null if any word or quoted string is accepted.
+         */
+        private Syntax(Enum<?> operation, int arguments, boolean quoted, Set<String> choices) {
+            this.operation = operation;
+            this.arguments = arguments;
+            this.quoted = quoted;
+            this.choices = choices;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package mx.unam.ciencias.fbd.view;
+
+import mx.unam.ciencias.fbd.util.ConsoleUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs a sequence of commands writing their output in the order they were submitted. With more than one thread,
+ * commands that only read run in parallel, each one printing into its own buffer; a command that writes waits for every
+ * earlier command and then runs alone, so it never overlaps a read submitted before or after it.
+ */
+public final class CommandPipeline implements AutoCloseable {
+    /**
+     * Size of the output buffer.
+     */
+    private static final int BUFFER = 1 << 16;
+    /**
+     * Number of commands that may be running or waiting for their output to be written, per thread.
+     */
+    private static final int WINDOW_PER_THREAD = 64;
+    /**
+     * Buffered output shared by every command.
+     */
+    private final PrintStream output;
+    /**
+     * Threads running the reads, null when commands run one at a time.
+     */
+    private final ExecutorService executor;
+    /**
+     * Output of the reads not yet written, in submission order.
+     */
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    /**
+     * Largest number of pending reads.
+     */
+    private final int window;
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param output  where the output of the commands is written, it's flushed but not closed by the pipeline.
+     * @param threads number of threads running reads, with one thread every command runs on the caller's thread.
+     */
+    public CommandPipeline(OutputStream output, int threads) {
+        this.output = new PrintStream(new BufferedOutputStream(output, BUFFER), false);
+        this.window = Math.max(threads, 1) * WINDOW_PER_THREAD;
+        if (threads > 1) {
+            AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "fbd-batch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Submits a command that doesn't modify any table.
+     *
+     * @param command the command, prints its result to the given stream.
+     */
+    public void read(Consumer<PrintStream> command) {
+        if (executor == null) {
+            run(command, output);
+            return;
+        }
+        if (pending.size() >= window)
+            emit();
+        pending.add(executor.submit(() -> {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (PrintStream out = new PrintStream(buffer, false)) {
+                run(command, out);
+            }
+            return buffer.toByteArray();
+        }));
+    }
+
+    /**
+     * Submits a command that may modify a table, it runs on the caller's thread once every earlier command is done.
+     *
+     * @param command the command, prints its result to the given stream.
+     */
+    public void write(Consumer<PrintStream> command) {
+        drain();
+        run(command, output);
+    }
+
+    /**
+     * Waits for every submitted command and writes the remaining output.
+     */
+    @Override
+    public void close() {
+        drain();
+        output.flush();
+        if (executor != null)
+            executor.shutdown();
+    }
+
+    /**
+     * Runs a command, errors are reported in its output so the following commands still run.
+     *
+     * @param command the command.
+     * @param out     the command's output.
+     */
+    private static void run(Consumer<PrintStream> command, PrintStream out) {
+        try {
+            command.accept(out);
+        } catch (RuntimeException e) {
+            ConsoleUtils.error(out, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Writes the output of every pending read.
+     */
+    private void drain() {
+        while (!pending.isEmpty())
+            emit();
+    }
+
+    /**
+     * Waits for the oldest pending read and writes its output.
+     */
+    private void emit() {
+        Future<byte[]> next = pending.remove();
+        try {
+            byte[] bytes = next.get();
+            output.write(bytes, 0, bytes.length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ConsoleUtils.error(output, "Ejecución interrumpida");
+        } catch (ExecutionException e) {
+            ConsoleUtils.error(output, String.valueOf(e.getCause().getMessage()));
+        }
+    }
+}
@@ -1,20 +1,23 @@
 package mx.unam.ciencias.fbd.view;
 
+import mx.unam.ciencias.fbd.common.BasicOperation;
 import mx.unam.ciencias.fbd.util.ConsoleUtils;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 
 /**
- * A command line panel.
+ * A command line panel. Every operation the panel accepts is registered together with its handler, commands are then
+ * parsed once and dispatched through a table keyed by their operation.
  */
 public class Panel {
     /**
      * Command that signals end of execution (EOE).
      */
-    static final String EOE = "EXIT";
+    static final String EOE = BasicOperation.EXIT.name();
     /**
      * The panel's title. It precedes all user input.
      */
@@ -24,57 +27,120 @@ public class Panel {
      */
     private Scanner scanner;
     /**
-     * The handler that handles user input.
+     * Parser of the commands the panel accepts.
      */
-    private CommandHandler handler;
+    private final CommandParser parser = new CommandParser();
     /**
-     * All regex sequences the panel recognizes as commands.
+     * The handler of every operation.
      */
-    private List<String> commands;
+    private final Map<Enum<?>, CommandHandler> handlers = new HashMap<>();
     /**
      * The panel's help printer.
      */
     private IPrintHelp help;
 
     /**
-     * Constructs a new panel with the given title and commands. By default the help printer and the handler are
-     * null. All panels accept "EXIT" as a command to terminate execution.
+     * Constructs a new panel with the given title and no operations. By default the help printer is null. All panels
+     * accept "EXIT" as a command to terminate execution.
      *
-     * @param title    The panel's title
-     * @param commands All regex sequences the panel recognizes as commands.
+     * @param title   The panel's title
+     * @param scanner The scanner used to recieve all user input.
      */
-    public Panel(String title, Scanner scanner, String... commands) {
+    public Panel(String title, Scanner scanner) {
         this.title = title;
         this.scanner = scanner;
-        ArrayList<String> temp = new ArrayList<>();
-        temp.add(EOE);
-        temp.addAll(Arrays.asList(commands));
-        this.commands = temp;
+        parser.add(BasicOperation.EXIT, 0);
     }
 
-    public void setHandler(CommandHandler handler) {
-        this.handler = handler;
+    /**
+     * Accepts an operation without arguments.
+     *
+     * @param operation the operation, its name is the command.
+     * @param handler   the operation's handler.
+     */
+    public void on(Enum<?> operation, CommandHandler handler) {
+        on(operation, 0, handler);
+    }
+
+    /**
+     * Accepts an operation followed by quoted arguments, like {@code GET "ID"}.
+     *
+     * @param operation the operation, its name is the command.
+     * @param arguments the number of arguments.
+     * @param handler   the operation's handler.
+     */
+    public void on(Enum<?> operation, int arguments, CommandHandler handler) {
+        on(operation, arguments, true, handler);
+    }
+
+    /**
+     * Accepts an operation followed by quoted arguments or by words, like {@code AGE_BETWEEN 20 30}.
+     *
+     * @param operation the operation, its name is the command.
+     * @param arguments the number of arguments.
+     * @param quoted    whether the arguments are quoted strings instead of words.
+     * @param handler   the operation's handler.
+     */
+    public void on(Enum<?> operation, int arguments, boolean quoted, CommandHandler handler) {
+        parser.add(operation, arguments, quoted);
+        handlers.put(operation, handler);
+    }
+
+    /**
+     * Accepts an operation followed by one word out of a set, like {@code USE STAFF}.
+     *
+     * @param operation the operation, its name is the command.
+     * @param choices   the accepted words.
+     * @param handler   the operation's handler.
+     */
+    public void on(Enum<?> operation, Collection<String> choices, CommandHandler handler) {
+        parser.add(operation, choices);
+        handlers.put(operation, handler);
+    }
+
+    /**
+     * Accepts a named option after the arguments of an accepted operation, like {@code LIMIT 10} or
+     * {@code AFTER "ID"}. Its value is read with {@link Command#getOption(String)}.
+     *
+     * @param operation the operation.
+     * @param name      the option's name.
+     * @param quoted    whether the option's value is a quoted string instead of a single word.
+     */
+    public void option(Enum<?> operation, String name, boolean quoted) {
+        parser.option(operation, name, quoted);
     }
 
     public void setHelp(IPrintHelp help) {
         this.help = help;
     }
 
+    /**
+     * @param line a line of input.
+     * @return the command in the line, or null if the panel doesn't accept it.
+     */
+    public Command parse(String line) {
+        return parser.parse(line);
+    }
+
+    /**
+     * Handles a single command without prompting the user, "EXIT" is not handled.
+     *
+     * @param command a command parsed by the panel.
+     * @param out     where the command prints its result.
+     */
+    public void handle(Command command, PrintStream out) {
+        handlers.get(command.getOperation()).handle(command, out);
+    }
+
     /**
      * Runs the panel.
      */
     public void run() {
-        boolean close = false;
-        String userInput;
-        String regex = String.join("|", commands);
         help.printHelp();
-        do {
-            userInput = ConsoleUtils.getValidString(regex, scanner, title);
-            if (userInput.matches(EOE)) {
-                close = true;
-            } else {
-                handler.handle(userInput);
-            }
-        } while (!close);
+        Command command;
+        while ((command = ConsoleUtils.getValid(scanner, title, "Invalid input.", parser::parse)).getOperation()
+                != BasicOperation.EXIT) {
+            handle(command, System.out);
+        }
     }
-}
\ No newline at end of file
+}
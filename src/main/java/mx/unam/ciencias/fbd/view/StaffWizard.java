@@ -7,6 +7,8 @@ import mx.unam.ciencias.fbd.util.ConsoleUtils;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 public class StaffWizard implements Wizard<Staff> {
@@ -18,11 +20,8 @@ public class StaffWizard implements Wizard<Staff> {
 
     @Override
     public Optional<Staff> edit(Staff entity) {
-        // Obtain entity schema and create regex
-        String staffSchemaRegex =
-                Arrays.stream(StaffRepository.Schema.values()).map(Enum::toString).collect(Collectors.joining("|"));
         // Create edit panel
-        Panel editor = new Panel("STAFF:EDIT", scanner, staffSchemaRegex);
+        Panel editor = new Panel("STAFF:EDIT", scanner);
         // Create help information
         editor.setHelp(() -> {
             System.out.println("\nUso:");
@@ -42,45 +41,47 @@ public class StaffWizard implements Wizard<Staff> {
             System.out.println("\t  Regresa al menú anterior.\n");
         });
         // Handle commands
-        editor.setHandler(command -> {
-            if (!command.equals(Panel.EOE)) {
-                StaffRepository.Schema routine = StaffRepository.Schema.valueOf(command);
-                switch (routine) {
-                    case NAME:
-                        System.out.println("Nombre actual: " + entity.getName());
-                        entity.setName(getValidName());
-                        break;
-                    case SEX:
-                        System.out.println("Sexo actual: " + entity.getSex());
-                        entity.setSex(getValidSex());
-                        break;
-                    case DOB:
-                        System.out.println("Fecha de nacimiento actual: " + entity.getDob());
-                        entity.setDob(ConsoleUtils.getValidDate(scanner, "Fecha de nacimiento"));
-                        break;
-                    case DOH:
-                        System.out.println("Fecha de contratación actual: " + entity.getDoh());
-                        entity.setDob(ConsoleUtils.getValidDate(scanner, "Fecha de contratación"));
-                        break;
-                    case ROLE:
-                        System.out.println("Rol actual: " + entity.getRole());
-                        entity.setRole(getValidRole());
-                        break;
-                    case SUPERVISOR_ID:
-                        System.out.println("Supervisor actual: " + entity.getSupervisorID());
-                        Optional<String> supervisorIdStr = getValidSupervisorID(entity.getRole());
-                        if (supervisorIdStr.isPresent()) {
-                            entity.setSupervisorID(UUID.fromString(supervisorIdStr.get()));
-                        } else {
-                            System.out.println("Ningún elemento puede asigarse como superior.");
-                        }
-                        break;
-                    case ID:
-                        System.out.println("Se está editando al elemento " + entity.getId());
-                        break;
-                }
+        CommandHandler handler = (command, out) -> {
+            StaffRepository.Schema routine = (StaffRepository.Schema) command.getOperation();
+            switch (routine) {
+                case NAME:
+                    System.out.println("Nombre actual: " + entity.getName());
+                    entity.setName(getValidName());
+                    break;
+                case SEX:
+                    System.out.println("Sexo actual: " + entity.getSex());
+                    entity.setSex(getValidSex());
+                    break;
+                case DOB:
+                    System.out.println("Fecha de nacimiento actual: " + entity.getDob());
+                    entity.setDob(ConsoleUtils.getValidDate(scanner, "Fecha de nacimiento"));
+                    break;
+                case DOH:
+                    System.out.println("Fecha de contratación actual: " + entity.getDoh());
+                    entity.setDob(ConsoleUtils.getValidDate(scanner, "Fecha de contratación"));
+                    break;
+                case ROLE:
+                    System.out.println("Rol actual: " + entity.getRole());
+                    entity.setRole(getValidRole());
+                    break;
+                case SUPERVISOR_ID:
+                    System.out.println("Supervisor actual: " + entity.getSupervisorID());
+                    Optional<String> supervisorIdStr = getValidSupervisorID(entity.getRole(),
+                            StaffService.getInstance().findAllColumnsAsync(StaffRepository.Schema.ID,
+                                    StaffRepository.Schema.ROLE));
+                    if (supervisorIdStr.isPresent()) {
+                        entity.setSupervisorID(UUID.fromString(supervisorIdStr.get()));
+                    } else {
+                        System.out.println("Ningún elemento puede asigarse como superior.");
+                    }
+                    break;
+                case ID:
+                    System.out.println("Se está editando al elemento " + entity.getId());
+                    break;
             }
-        });
+        };
+        for (StaffRepository.Schema field : StaffRepository.Schema.values())
+            editor.on(field, handler);
         // Run editor panel
         editor.run();
         // return entity
@@ -90,6 +91,9 @@ public class StaffWizard implements Wizard<Staff> {
     @Override
     public Optional<Staff> create() {
         System.out.println("Se intentará crear un nuevo elemento en la base de datos.");
+        // read the candidate supervisors while the user types
+        CompletableFuture<List<String[]>> candidates = StaffService.getInstance().findAllColumnsAsync(
+                StaffRepository.Schema.ID, StaffRepository.Schema.ROLE);
         String name = getValidName();
         Staff.Sex sex = getValidSex();
         LocalDate dob = ConsoleUtils.getValidDate(scanner, "Fecha de nacimiento");
@@ -100,7 +104,7 @@ public class StaffWizard implements Wizard<Staff> {
         String addSupervisor = ConsoleUtils.getValidString("[yY][eE][sS]|[nN][oO]|[sS][iI]", scanner,
                 "Agregar superior?", "Por favor usa el formato si|no");
         if (addSupervisor.toLowerCase().charAt(0) != 'n') {
-            Optional<String> supervisorIdStr = getValidSupervisorID(role);
+            Optional<String> supervisorIdStr = getValidSupervisorID(role, candidates);
             if (supervisorIdStr.isPresent()) {
                 result.setSupervisorID(UUID.fromString(supervisorIdStr.get()));
             } else {
@@ -110,11 +114,19 @@ public class StaffWizard implements Wizard<Staff> {
         return Optional.of(result);
     }
 
-    private Optional<String> getValidSupervisorID(Staff.Role role) {
+    private Optional<String> getValidSupervisorID(Staff.Role role, CompletableFuture<List<String[]>> candidates) {
         String result = null;
-        List<String> canBeSuperior = StaffService.getInstance().findAll()
-                .filter(staff -> staff.getRole().ordinal() > role.ordinal())
-                .map(staff -> staff.getId().toString())
+        List<String[]> all;
+        try {
+            all = candidates.join();
+        } catch (CompletionException e) {
+            // the I/O queue may be full
+            System.out.println("No se pudieron leer los candidatos a superior.");
+            return Optional.empty();
+        }
+        List<String> canBeSuperior = all.stream()
+                .filter(staff -> Staff.Role.valueOf(staff[1]).ordinal() > role.ordinal())
+                .map(staff -> staff[0])
                 .collect(Collectors.toList());
         if (!canBeSuperior.isEmpty()) {
             System.out.println("Selecciona la matrícula del superior de la siguiente lista usando el índice:");
@@ -1,13 +1,14 @@
 package mx.unam.ciencias.fbd.view;
 
-import mx.unam.ciencias.fbd.domain.Staff;
 import mx.unam.ciencias.fbd.domain.Vehicle;
+import mx.unam.ciencias.fbd.repository.StaffRepository;
 import mx.unam.ciencias.fbd.repository.VehicleRepository;
 import mx.unam.ciencias.fbd.service.StaffService;
 import mx.unam.ciencias.fbd.util.ConsoleUtils;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class VehicleWizard implements Wizard<Vehicle> {
     private final Scanner scanner;
@@ -39,11 +40,8 @@ public class VehicleWizard implements Wizard<Vehicle> {
 
     @Override
     public Optional<Vehicle> edit(Vehicle entity) {
-        // Obtain entity schema and create regex
-        String vehicleSchemaRegex =
-                Arrays.stream(VehicleRepository.Schema.values()).map(Enum::toString).collect(Collectors.joining("|"));
         // Create edit panel
-        Panel editor = new Panel("VEHICLE:EDIT", scanner, vehicleSchemaRegex);
+        Panel editor = new Panel("VEHICLE:EDIT", scanner);
         // Create help information
         editor.setHelp(() -> {
             System.out.println("\nUso:");
@@ -61,41 +59,41 @@ public class VehicleWizard implements Wizard<Vehicle> {
             System.out.println("\t  Regresa al menú anterior.\n");
         });
         // Handle commands
-        editor.setHandler(command -> {
-            if (!command.equals(Panel.EOE)) {
-                VehicleRepository.Schema routine = VehicleRepository.Schema.valueOf(command);
-                switch (routine) {
-                    case TYPE:
-                        System.out.println("Tipo actual: " + entity.getType());
-                        entity.setType(getValidType());
-                        break;
-                    case MODEL:
-                        System.out.println("Modelo actual: " + entity.getModel());
-                        entity.setModel(getValidModel());
-                        break;
-                    case ZONE:
-                        System.out.println("Zona actual: " + entity.getZone());
-                        entity.setZone(getValidZone());
-                        break;
-                    case DESCRIPTION:
-                        System.out.println("Descripción actual: " + entity.getDescription());
-                        entity.setDescription(getValidDescription());
-                        break;
-                    case DRIVER_ID:
-                        System.out.println("Conductor actual: " + entity.getDriverId());
-                        Optional<UUID> driverId = getValidDriverID();
-                        if (driverId.isPresent()) {
-                            entity.setDriverId(driverId.get());
-                        } else {
-                            System.out.println("Ningún elemento puede asignarse como conductor.");
-                        }
-                        break;
-                    case ID:
-                        System.out.println("Placas del elemento actual: " + entity.getId());
-                        break;
-                }
+        CommandHandler handler = (command, out) -> {
+            VehicleRepository.Schema routine = (VehicleRepository.Schema) command.getOperation();
+            switch (routine) {
+                case TYPE:
+                    System.out.println("Tipo actual: " + entity.getType());
+                    entity.setType(getValidType());
+                    break;
+                case MODEL:
+                    System.out.println("Modelo actual: " + entity.getModel());
+                    entity.setModel(getValidModel());
+                    break;
+                case ZONE:
+                    System.out.println("Zona actual: " + entity.getZone());
+                    entity.setZone(getValidZone());
+                    break;
+                case DESCRIPTION:
+                    System.out.println("Descripción actual: " + entity.getDescription());
+                    entity.setDescription(getValidDescription());
+                    break;
+                case DRIVER_ID:
+                    System.out.println("Conductor actual: " + entity.getDriverId());
+                    Optional<UUID> driverId = getValidDriverID();
+                    if (driverId.isPresent()) {
+                        entity.setDriverId(driverId.get());
+                    } else {
+                        System.out.println("Ningún elemento puede asignarse como conductor.");
+                    }
+                    break;
+                case ID:
+                    System.out.println("Placas del elemento actual: " + entity.getId());
+                    break;
             }
-        });
+        };
+        for (VehicleRepository.Schema field : VehicleRepository.Schema.values())
+            editor.on(field, handler);
         // Run editor panel
         editor.run();
         // return entity
@@ -109,16 +107,19 @@ public class VehicleWizard implements Wizard<Vehicle> {
 
     private Optional<UUID> getValidDriverID() {
         UUID result = null;
-        List<UUID> drivers = StaffService.getInstance().findAll()
-                .map(Staff::getId)
-                .collect(Collectors.toList());
+        List<String> drivers;
+        try (Stream<String[]> all = StaffService.getInstance().findAllColumns(StaffRepository.Schema.ID)) {
+            drivers = all
+                    .map(staff -> staff[0])
+                    .collect(Collectors.toList());
+        }
         if (!drivers.isEmpty()) {
             System.out.println("Selecciona el ID del conductor de la siguiente lista usando el índice:");
             for (int i = 0; i < drivers.size(); i++)
                 System.out.println(String.format("%d\t%s", i, drivers.get(i)));
             int validIndex = ConsoleUtils.getValidInt(scanner, "Conductor",
                     integer -> integer >= 0 && integer < drivers.size());
-            result = drivers.get(validIndex);
+            result = UUID.fromString(drivers.get(validIndex));
         }
         return Optional.ofNullable(result);
     }
@@ -1,13 +1,14 @@
 package mx.unam.ciencias.fbd.view;
 
-import mx.unam.ciencias.fbd.domain.Staff;
 import mx.unam.ciencias.fbd.domain.Weapon;
+import mx.unam.ciencias.fbd.repository.StaffRepository;
 import mx.unam.ciencias.fbd.repository.WeaponRepository;
 import mx.unam.ciencias.fbd.service.StaffService;
 import mx.unam.ciencias.fbd.util.ConsoleUtils;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class WeaponWizard implements Wizard<Weapon> {
     private final Scanner scanner;
@@ -31,11 +32,8 @@ public class WeaponWizard implements Wizard<Weapon> {
 
     @Override
     public Optional<Weapon> edit(Weapon entity) {
-        // Obtain entity schema and create regex
-        String vehicleSchemaRegex =
-                Arrays.stream(WeaponRepository.Schema.values()).map(Enum::toString).collect(Collectors.joining("|"));
         // Create edit panel
-        Panel editor = new Panel("WEAPON:EDIT", scanner, vehicleSchemaRegex);
+        Panel editor = new Panel("WEAPON:EDIT", scanner);
         // Create help information
         editor.setHelp(() -> {
             System.out.println("\nUso:");
@@ -49,33 +47,33 @@ public class WeaponWizard implements Wizard<Weapon> {
             System.out.println("\t  Regresa al menú anterior.\n");
         });
         // Handle commands
-        editor.setHandler(command -> {
-            if (!command.equals(Panel.EOE)) {
-                WeaponRepository.Schema routine = WeaponRepository.Schema.valueOf(command);
-                switch (routine) {
-                    case TYPE:
-                        System.out.println("Tipo actual: " + entity.getType());
-                        entity.setType(getValidType());
-                        break;
-                    case DESCRIPTION:
-                        System.out.println("Descripción actual: " + entity.getDescription());
-                        entity.setDescription(getValidDescription());
-                        break;
-                    case USER_ID:
-                        System.out.println("Responsable actual: " + entity.getUserId());
-                        Optional<UUID> driverId = getValidUserID();
-                        if (driverId.isPresent()) {
-                            entity.setUserId(driverId.get());
-                        } else {
-                            System.out.println("Ningún elemento puede asignarse como responsable.");
-                        }
-                        break;
-                    case ID:
-                        System.out.println("ID del elemento actual: " + entity.getId());
-                        break;
-                }
+        CommandHandler handler = (command, out) -> {
+            WeaponRepository.Schema routine = (WeaponRepository.Schema) command.getOperation();
+            switch (routine) {
+                case TYPE:
+                    System.out.println("Tipo actual: " + entity.getType());
+                    entity.setType(getValidType());
+                    break;
+                case DESCRIPTION:
+                    System.out.println("Descripción actual: " + entity.getDescription());
+                    entity.setDescription(getValidDescription());
+                    break;
+                case USER_ID:
+                    System.out.println("Responsable actual: " + entity.getUserId());
+                    Optional<UUID> driverId = getValidUserID();
+                    if (driverId.isPresent()) {
+                        entity.setUserId(driverId.get());
+                    } else {
+                        System.out.println("Ningún elemento puede asignarse como responsable.");
+                    }
+                    break;
+                case ID:
+                    System.out.println("ID del elemento actual: " + entity.getId());
+                    break;
             }
-        });
+        };
+        for (WeaponRepository.Schema field : WeaponRepository.Schema.values())
+            editor.on(field, handler);
         // Run editor panel
         editor.run();
         // return entity
@@ -94,16 +92,19 @@ public class WeaponWizard implements Wizard<Weapon> {
 
     private Optional<UUID> getValidUserID() {
         UUID result = null;
-        List<UUID> drivers = StaffService.getInstance().findAll()
-                .map(Staff::getId)
-                .collect(Collectors.toList());
+        List<String> drivers;
+        try (Stream<String[]> all = StaffService.getInstance().findAllColumns(StaffRepository.Schema.ID)) {
+            drivers = all
+                    .map(staff -> staff[0])
+                    .collect(Collectors.toList());
+        }
         if (!drivers.isEmpty()) {
             System.out.println("Selecciona el ID del responsable de la siguiente lista usando el índice:");
             for (int i = 0; i < drivers.size(); i++)
                 System.out.println(String.format("%d\t%s", i, drivers.get(i)));
             int validIndex = ConsoleUtils.getValidInt(scanner, "Usuario",
                     integer -> integer >= 0 && integer < drivers.size());
-            result = drivers.get(validIndex);
+            result = UUID.fromString(drivers.get(validIndex));
         }
         return Optional.ofNullable(result);
     }
@@ -0,0 +1,196 @@
+package mx.unam.ciencias.fbd.repository;
+
+import mx.unam.ciencias.fbd.domain.Staff;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recovery of a repository from failed and interrupted writes, and streams consumed while the repository is written.
+ */
+public class AbstractCSVCrudRepositoryTest {
+    /**
+     * Number of staff elements in the repository when a test starts.
+     */
+    private static final int ROWS = 200;
+    /**
+     * The repository's directory.
+     */
+    private Path directory;
+    /**
+     * The repository's file.
+     */
+    private Path file;
+    /**
+     * The repository under test.
+     */
+    private StaffRepository repository;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("fbd-test");
+        file = Files.createFile(directory.resolve("staff.csv"));
+        repository = StaffRepository.at(directory);
+        repository.setFsyncPolicy(FsyncPolicy.ALWAYS);
+        List<Staff> staff = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++)
+            staff.add(TestData.staff("Elemento " + i));
+        repository.saveAll(staff);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestData.delete(directory);
+    }
+
+    /**
+     * A batch whose application to the file fails is dropped from the log, so it is neither replayed later nor seen,
+     * and the next write succeeds.
+     */
+    @Test
+    public void rollsBackFailedApply() throws IOException {
+        Path wal = directory.resolve("staff.csv.wal");
+        Path kept = directory.resolve("kept.csv");
+        long logged = Files.exists(wal) ? Files.size(wal) : 0;
+        // the batch is logged, but the repository file can't be read or written while it is a directory
+        Files.move(file, kept);
+        Files.createDirectory(file);
+        Staff failed = TestData.staff("Fallido");
+        assertNull(repository.save(failed));
+        assertEquals(logged, Files.exists(wal) ? Files.size(wal) : 0);
+        Files.delete(file);
+        Files.move(kept, file);
+
+        assertFalse(repository.findById(failed.getId()).isPresent());
+        assertEquals(ROWS, TestData.count(repository));
+        StaffRepository reopened = StaffRepository.at(directory);
+        assertFalse(reopened.findById(failed.getId()).isPresent());
+        assertEquals(ROWS, TestData.count(reopened));
+
+        Staff saved = TestData.staff("Guardado");
+        assertNotNull(repository.save(saved));
+        assertTrue(reopened.findById(saved.getId()).isPresent());
+        assertEquals(ROWS + 1, TestData.count(reopened));
+    }
+
+    /**
+     * A batch logged by a writer that died before applying it is applied by the next read, once.
+     */
+    @Test
+    public void replaysUnappliedBatch() throws IOException {
+        UUID id = UUID.randomUUID();
+        logUnapplied(id);
+        assertTrue(repository.findById(id).isPresent());
+        assertEquals(ROWS + 1, TestData.count(repository));
+        StaffRepository reopened = StaffRepository.at(directory);
+        assertTrue(reopened.findById(id).isPresent());
+        assertEquals(ROWS + 1, TestData.count(reopened));
+    }
+
+    /**
+     * A batch logged by a writer that died before applying it is applied before the next write.
+     */
+    @Test
+    public void replaysUnappliedBatchBeforeWrite() throws IOException {
+        UUID id = UUID.randomUUID();
+        logUnapplied(id);
+        assertNotNull(repository.save(TestData.staff("Siguiente")));
+        StaffRepository reopened = StaffRepository.at(directory);
+        assertTrue(reopened.findById(id).isPresent());
+        assertEquals(ROWS + 2, TestData.count(reopened));
+    }
+
+    /**
+     * A stream sees the rows of the file when it was opened, whatever is saved and deleted while it is consumed, with
+     * every way of reading and storing the file.
+     */
+    @Test
+    public void streamsIgnoreConcurrentWrites() throws Exception {
+        for (ReadMode read : ReadMode.values())
+            for (StorageMode storage : StorageMode.values())
+                for (boolean cache : new boolean[]{false, true}) {
+                    StaffRepository reader = StaffRepository.at(directory);
+                    reader.setReadMode(read);
+                    reader.setStorageMode(storage);
+                    reader.setCacheEnabled(cache);
+                    assertStreamIgnoresConcurrentWrites(reader);
+                }
+    }
+
+    /**
+     * Reads the ids of the repository while another thread saves and deletes staff elements.
+     *
+     * @param reader the repository to read from, over the same file as the tested one.
+     * @throws Exception if the writes fail.
+     */
+    private void assertStreamIgnoresConcurrentWrites(StaffRepository reader) throws Exception {
+        Set<String> expected;
+        try (Stream<String[]> ids = reader.findAllColumns(StaffRepository.Schema.ID)) {
+            expected = ids.map(row -> row[0]).collect(Collectors.toSet());
+        }
+        List<String> seen = new ArrayList<>();
+        try (Stream<String[]> ids = reader.findAllColumns(StaffRepository.Schema.ID)) {
+            Iterator<String[]> rows = ids.iterator();
+            seen.add(rows.next()[0]);
+            CompletableFuture<Void> writes = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 20; i++) {
+                    Staff staff = repository.save(TestData.staff("Nuevo " + i));
+                    if (i % 2 == 0)
+                        repository.deleteById(staff.getId());
+                }
+                // an existing row, a deletion rewrites the file
+                repository.deleteById(UUID.fromString(seen.get(0)));
+            });
+            while (rows.hasNext()) {
+                seen.add(rows.next()[0]);
+                if (seen.size() == expected.size() / 2)
+                    writes.get(30, TimeUnit.SECONDS);
+            }
+            writes.get(30, TimeUnit.SECONDS);
+        }
+        assertEquals(expected.size(), seen.size());
+        assertEquals(expected, new HashSet<>(seen));
+    }
+
+    /**
+     * Logs a batch saving a staff element without applying it, as a writer that dies in between would.
+     *
+     * @param id the staff element's id.
+     * @throws IOException if the batch cannot be logged.
+     */
+    private void logUnapplied(UUID id) throws IOException {
+        List<String> rows = Files.readAllLines(file, StandardCharsets.UTF_8);
+        String row = rows.get(0);
+        row = id + row.substring(row.indexOf(',')) + "\r\n";
+        InterProcessLock lock = new InterProcessLock(directory.resolve("staff.csv.lock"), 1000, TestData.LOGGER);
+        WriteAheadLog log = new WriteAheadLog(directory.resolve("staff.csv.wal"), FsyncPolicy.ALWAYS, 1000,
+                TestData.LOGGER);
+        lock.lockExclusive();
+        try {
+            log.commit(log.append(row.getBytes(StandardCharsets.UTF_8)));
+        } finally {
+            lock.unlockExclusive();
+        }
+    }
+}
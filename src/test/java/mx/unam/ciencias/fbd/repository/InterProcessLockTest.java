@@ -0,0 +1,239 @@
+package mx.unam.ciencias.fbd.repository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Shared and exclusive locking among the threads of a process, and the counters kept in the lock file.
+ */
+public class InterProcessLockTest {
+    /**
+     * Milliseconds a lock expected to block is given before it times out.
+     */
+    private static final long SHORT_TIMEOUT = 100;
+    /**
+     * Milliseconds a lock expected to be taken is given.
+     */
+    private static final long LONG_TIMEOUT = 10000;
+    /**
+     * The lock file's directory.
+     */
+    private Path directory;
+    /**
+     * The lock file.
+     */
+    private Path path;
+    /**
+     * Threads taking the lock besides the test's.
+     */
+    private ExecutorService threads;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("fbd-test");
+        path = directory.resolve("staff.csv.lock");
+        threads = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        threads.shutdownNow();
+        TestData.delete(directory);
+    }
+
+    /**
+     * Readers hold the lock at the same time.
+     */
+    @Test
+    public void readersShareLock() throws Exception {
+        InterProcessLock lock = lock(SHORT_TIMEOUT);
+        lock.lockShared();
+        try {
+            threads.submit(() -> {
+                lock.lockShared();
+                lock.unlockShared();
+                return null;
+            }).get(LONG_TIMEOUT, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlockShared();
+        }
+    }
+
+    /**
+     * A writer waits for the readers and gives up after the timeout.
+     */
+    @Test
+    public void writerWaitsForReaders() throws Exception {
+        InterProcessLock lock = lock(SHORT_TIMEOUT);
+        lock.lockShared();
+        try {
+            assertTimesOut(threads.submit(() -> {
+                lock.lockExclusive();
+                lock.unlockExclusive();
+                return null;
+            }));
+        } finally {
+            lock.unlockShared();
+        }
+        // the lock is free once the reader leaves
+        lock.lockExclusive();
+        lock.unlockExclusive();
+    }
+
+    /**
+     * Readers and other writers wait for a writer.
+     */
+    @Test
+    public void writerHoldsLockAlone() throws Exception {
+        InterProcessLock lock = lock(SHORT_TIMEOUT);
+        lock.lockExclusive();
+        try {
+            assertTimesOut(threads.submit(() -> {
+                lock.lockShared();
+                lock.unlockShared();
+                return null;
+            }));
+            assertTimesOut(threads.submit(() -> {
+                lock.lockExclusive();
+                lock.unlockExclusive();
+                return null;
+            }));
+        } finally {
+            lock.unlockExclusive();
+        }
+        lock.lockShared();
+        lock.unlockShared();
+    }
+
+    /**
+     * New readers queue behind a waiting writer, which takes the lock as soon as the current readers leave.
+     */
+    @Test
+    public void waitingWriterBlocksNewReaders() throws Exception {
+        InterProcessLock reader = lock(SHORT_TIMEOUT);
+        InterProcessLock writer = lock(LONG_TIMEOUT);
+        reader.lockShared();
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        Future<?> waiting;
+        try {
+            waiting = threads.submit(() -> {
+                writer.lockExclusive();
+                try {
+                    return written.get();
+                } finally {
+                    writer.unlockExclusive();
+                }
+            });
+            awaitWaitingWriter();
+            assertTimesOut(threads.submit(() -> {
+                reader.lockShared();
+                reader.unlockShared();
+                return null;
+            }));
+        } finally {
+            reader.unlockShared();
+        }
+        // the writer now holds the lock
+        assertTimesOut(threads.submit(() -> {
+            reader.lockShared();
+            reader.unlockShared();
+            return null;
+        }));
+        written.complete(null);
+        waiting.get(LONG_TIMEOUT, TimeUnit.MILLISECONDS);
+        reader.lockShared();
+        reader.unlockShared();
+    }
+
+    /**
+     * A negative timeout is refused.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesNegativeTimeout() {
+        lock(SHORT_TIMEOUT).setTimeout(-1);
+    }
+
+    /**
+     * The counters start at zero, are kept apart and are seen by every lock over the file.
+     */
+    @Test
+    public void keepsCounters() throws IOException {
+        InterProcessLock lock = lock(SHORT_TIMEOUT);
+        lock.lockExclusive();
+        try {
+            assertEquals(0, lock.generation());
+            assertEquals(0, lock.appliedLog());
+            lock.nextGeneration();
+            lock.nextGeneration();
+            lock.setAppliedLog(42);
+        } finally {
+            lock.unlockExclusive();
+        }
+        InterProcessLock other = lock(SHORT_TIMEOUT);
+        assertEquals(2, other.generation());
+        assertEquals(42, other.appliedLog());
+    }
+
+    /**
+     * @param timeout milliseconds to wait for the lock.
+     * @return a new lock over the test's lock file.
+     */
+    private InterProcessLock lock(long timeout) {
+        return new InterProcessLock(path, timeout, TestData.LOGGER);
+    }
+
+    /**
+     * Waits until a writer queues for the lock, which then turns a new reader away.
+     *
+     * @throws Exception if the writer doesn't queue in time.
+     */
+    private void awaitWaitingWriter() throws Exception {
+        // the test thread holds the shared lock, so a reader that doesn't wait only fails once the writer queues
+        InterProcessLock probe = lock(0);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LONG_TIMEOUT);
+        while (System.nanoTime() < deadline) {
+            try {
+                probe.lockShared();
+            } catch (IOException e) {
+                return;
+            }
+            probe.unlockShared();
+            Thread.sleep(10);
+        }
+        fail("The writer didn't queue for the lock");
+    }
+
+    /**
+     * Checks that an attempt to take a lock fails with a timeout.
+     *
+     * @param attempt the attempt.
+     * @throws Exception if the attempt doesn't finish in time.
+     */
+    private static void assertTimesOut(Future<?> attempt) throws Exception {
+        try {
+            attempt.get(LONG_TIMEOUT, TimeUnit.MILLISECONDS);
+            fail("The lock was taken");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+            assertTrue(e.getCause().getMessage().startsWith("Timed out"));
+        } catch (TimeoutException e) {
+            fail("The attempt didn't give up");
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package mx.unam.ciencias.fbd.repository;
+
+import mx.unam.ciencias.fbd.domain.Staff;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Data shared by the repository tests.
+ */
+final class TestData {
+    /**
+     * Logger of the logs and locks under test.
+     */
+    static final Logger LOGGER = Logger.getLogger(TestData.class.getName());
+
+    private TestData() {
+    }
+
+    /**
+     * @param name the staff element's name.
+     * @return a new staff element.
+     */
+    static Staff staff(String name) {
+        return new Staff(name, Staff.Sex.FEMALE, LocalDate.of(1980, 1, 1), LocalDate.of(2000, 1, 1),
+                Staff.Role.OFFICER);
+    }
+
+    /**
+     * @param repository a repository.
+     * @return the number of entities in the repository.
+     */
+    static long count(AbstractCSVCrudRepository<?, ?> repository) {
+        try (Stream<?> all = repository.findAll()) {
+            return all.count();
+        }
+    }
+
+    /**
+     * Deletes a temporary directory and its contents.
+     *
+     * @param directory the directory.
+     * @throws IOException if a file cannot be deleted.
+     */
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(file);
+        }
+    }
+}
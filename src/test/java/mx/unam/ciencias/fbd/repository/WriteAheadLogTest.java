@@ -0,0 +1,174 @@
+package mx.unam.ciencias.fbd.repository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replay of the write-ahead log, in particular of a log whose last entry was torn by a crash.
+ */
+public class WriteAheadLogTest {
+    /**
+     * The log's directory.
+     */
+    private Path directory;
+    /**
+     * The log file.
+     */
+    private Path path;
+    /**
+     * The log under test.
+     */
+    private WriteAheadLog log;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("fbd-test");
+        path = directory.resolve("staff.csv.wal");
+        log = new WriteAheadLog(path, FsyncPolicy.ALWAYS, 1000, TestData.LOGGER);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestData.delete(directory);
+    }
+
+    /**
+     * Every committed entry is replayed in order.
+     */
+    @Test
+    public void replaysCommittedEntries() throws IOException {
+        append("first", "second", "third");
+        List<byte[]> entries = log.replay();
+        assertEquals(3, entries.size());
+        assertEquals("first", text(entries.get(0)));
+        assertEquals("third", text(entries.get(2)));
+    }
+
+    /**
+     * A missing log has nothing to replay.
+     */
+    @Test
+    public void replaysNothingWithoutLog() throws IOException {
+        assertTrue(log.replay().isEmpty());
+        assertEquals(0, log.size());
+    }
+
+    /**
+     * An entry cut short by a crash is discarded along with the rest of the file.
+     */
+    @Test
+    public void discardsTornTail() throws IOException {
+        append("first", "second");
+        long size = Files.size(path);
+        // the header of a 100 byte entry, followed by only part of it
+        writeRaw(ByteBuffer.allocate(18).putInt(100).putInt(0).put("partial...".getBytes(StandardCharsets.UTF_8)));
+        List<byte[]> entries = log.replay();
+        assertEquals(2, entries.size());
+        assertEquals("second", text(entries.get(1)));
+        assertEquals(size, Files.size(path));
+    }
+
+    /**
+     * A header cut short by a crash is discarded.
+     */
+    @Test
+    public void discardsTornHeader() throws IOException {
+        append("first");
+        long size = Files.size(path);
+        writeRaw(ByteBuffer.allocate(3));
+        assertEquals(1, log.replay().size());
+        assertEquals(size, Files.size(path));
+    }
+
+    /**
+     * Replay stops at an entry whose checksum doesn't match, even if complete entries follow it.
+     */
+    @Test
+    public void stopsAtCorruptEntry() throws IOException {
+        append("first");
+        long size = Files.size(path);
+        append("second", "third");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            // the first byte of the second entry's payload
+            channel.write(ByteBuffer.wrap(new byte[]{'S'}), size + 8);
+        }
+        List<byte[]> entries = log.replay();
+        assertEquals(1, entries.size());
+        assertEquals("first", text(entries.get(0)));
+        assertEquals(size, Files.size(path));
+    }
+
+    /**
+     * Entries appended after a torn tail was discarded are replayed.
+     */
+    @Test
+    public void appendsAfterTornTail() throws IOException {
+        append("first");
+        writeRaw(ByteBuffer.allocate(6).putInt(50));
+        log.replay();
+        append("second");
+        List<byte[]> entries = log.replay();
+        assertEquals(2, entries.size());
+        assertEquals("second", text(entries.get(1)));
+    }
+
+    /**
+     * Truncating the log to a size drops the entries past it.
+     */
+    @Test
+    public void truncatesToSize() throws IOException {
+        append("first");
+        long size = log.size();
+        append("second");
+        log.truncate(size);
+        assertEquals(1, log.replay().size());
+        log.truncate();
+        assertTrue(log.replay().isEmpty());
+    }
+
+    /**
+     * Appends and commits entries to the log.
+     *
+     * @param payloads the entries' contents.
+     * @throws IOException if the log cannot be written.
+     */
+    private void append(String... payloads) throws IOException {
+        for (String payload : payloads)
+            log.commit(log.append(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Writes bytes at the end of the log file, bypassing the log.
+     *
+     * @param bytes the bytes, from the start of the buffer to its position.
+     * @throws IOException if the file cannot be written.
+     */
+    private void writeRaw(ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+        }
+    }
+
+    /**
+     * @param payload an entry's contents.
+     * @return the contents as text.
+     */
+    private static String text(byte[] payload) {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
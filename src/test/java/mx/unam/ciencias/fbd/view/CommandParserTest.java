@@ -0,0 +1,145 @@
+package mx.unam.ciencias.fbd.view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Parsing of well formed and malformed command lines.
+ */
+public class CommandParserTest {
+    /**
+     * The parser under test.
+     */
+    private CommandParser parser;
+
+    /**
+     * Operations of the parser under test.
+     */
+    private enum Operation {
+        GET, SWAP, BETWEEN, USE, LIST, EXIT
+    }
+
+    @Before
+    public void setUp() {
+        parser = new CommandParser();
+        parser.add(Operation.GET, 1);
+        parser.add(Operation.SWAP, 2);
+        parser.add(Operation.BETWEEN, 2, false);
+        parser.add(Operation.USE, Arrays.asList("STAFF", "WEAPON"));
+        parser.add(Operation.LIST, 0);
+        parser.option(Operation.LIST, "LIMIT", false);
+        parser.option(Operation.LIST, "AFTER", true);
+        parser.add(Operation.EXIT, 0);
+    }
+
+    /**
+     * Quoted arguments keep their whitespace and may be empty.
+     */
+    @Test
+    public void parsesQuotedArguments() {
+        Command command = parser.parse("SWAP \"a  b\" \"\"");
+        assertNotNull(command);
+        assertEquals(Operation.SWAP, command.getOperation());
+        assertEquals(Arrays.asList("a  b", ""), command.getArguments());
+    }
+
+    /**
+     * Whitespace around the keyword and between the arguments is ignored.
+     */
+    @Test
+    public void ignoresSurroundingWhitespace() {
+        Command command = parser.parse(" \tBETWEEN  20\t30  ");
+        assertNotNull(command);
+        assertEquals(Arrays.asList("20", "30"), command.getArguments());
+        assertNotNull(parser.parse("EXIT "));
+    }
+
+    /**
+     * Unknown or miscapitalized keywords and empty lines are refused.
+     */
+    @Test
+    public void refusesUnknownKeywords() {
+        assertNull(parser.parse(""));
+        assertNull(parser.parse("   "));
+        assertNull(parser.parse("DELETE \"id\""));
+        assertNull(parser.parse("get \"id\""));
+        assertNull(parser.parse("GET\"id\""));
+    }
+
+    /**
+     * The number of arguments must match.
+     */
+    @Test
+    public void refusesWrongArgumentCount() {
+        assertNull(parser.parse("GET"));
+        assertNull(parser.parse("SWAP \"a\""));
+        assertNull(parser.parse("GET \"a\" \"b\""));
+        assertNull(parser.parse("EXIT now"));
+    }
+
+    /**
+     * Arguments must be quoted or not as the operation asks.
+     */
+    @Test
+    public void refusesWrongQuoting() {
+        assertNull(parser.parse("GET id"));
+        assertNull(parser.parse("BETWEEN \"20\" 30"));
+        assertNull(parser.parse("USE \"STAFF\""));
+    }
+
+    /**
+     * A quoted string must be closed and followed by whitespace or the end of the line.
+     */
+    @Test
+    public void refusesMalformedQuotes() {
+        assertNull(parser.parse("GET \"id"));
+        assertNull(parser.parse("GET \"id\"x"));
+        assertNull(parser.parse("SWAP \"a\"\"b\""));
+    }
+
+    /**
+     * A single word argument must be one of the accepted choices.
+     */
+    @Test
+    public void checksChoices() {
+        assertEquals(Collections.singletonList("WEAPON"), parser.parse("USE WEAPON").getArguments());
+        assertNull(parser.parse("USE VEHICLE"));
+        assertNull(parser.parse("USE staff"));
+    }
+
+    /**
+     * Options may be given in any order, or not at all.
+     */
+    @Test
+    public void parsesOptionsInAnyOrder() {
+        Command command = parser.parse("LIST LIMIT 10 AFTER \"some id\"");
+        assertEquals("10", command.getOption("LIMIT"));
+        assertEquals("some id", command.getOption("AFTER"));
+        command = parser.parse("LIST AFTER \"some id\" LIMIT 10");
+        assertEquals("10", command.getOption("LIMIT"));
+        assertEquals("some id", command.getOption("AFTER"));
+        command = parser.parse("LIST");
+        assertNull(command.getOption("LIMIT"));
+    }
+
+    /**
+     * Unknown, repeated, valueless and wrongly quoted options are refused, as are options of another operation.
+     */
+    @Test
+    public void refusesMalformedOptions() {
+        assertNull(parser.parse("LIST OFFSET 10"));
+        assertNull(parser.parse("LIST LIMIT 10 LIMIT 20"));
+        assertNull(parser.parse("LIST LIMIT"));
+        assertNull(parser.parse("LIST LIMIT \"10\""));
+        assertNull(parser.parse("LIST AFTER id"));
+        assertNull(parser.parse("LIST AFTER \"id"));
+        assertNull(parser.parse("GET \"id\" LIMIT 10"));
+    }
+}